@@ -1,71 +1,188 @@
 package com.moneytransfer.reactive;
 
+import com.moneytransfer.reactive.diagnostics.EventLoopMonitor;
 import com.moneytransfer.reactive.enums.AccountOperation;
 import com.moneytransfer.reactive.enums.TransactionStatus;
 import com.moneytransfer.reactive.handlers.AccountsHandler;
+import com.moneytransfer.reactive.handlers.AdminHandler;
+import com.moneytransfer.reactive.handlers.HoldsHandler;
+import com.moneytransfer.reactive.handlers.StatsHandler;
 import com.moneytransfer.reactive.handlers.impl.AccountsHandlerImpl;
-import com.moneytransfer.reactive.handlers.TransactionsHandler;
+import com.moneytransfer.reactive.handlers.impl.AdminHandlerImpl;
+import com.moneytransfer.reactive.handlers.impl.HoldsHandlerImpl;
+import com.moneytransfer.reactive.handlers.impl.StatsHandlerImpl;
 import com.moneytransfer.reactive.handlers.impl.TransactionsHandlerImpl;
+import com.moneytransfer.reactive.holds.HoldBook;
+import com.moneytransfer.reactive.ids.IdGenerator;
+import com.moneytransfer.reactive.limits.VelocityLimits;
 import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.CurrencyBalance;
 import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.ring.JournalHandler;
+import com.moneytransfer.reactive.ring.ReplicationHandler;
+import com.moneytransfer.reactive.ring.ResponseDispatcher;
+import com.moneytransfer.reactive.ring.TransferProcessor;
+import com.moneytransfer.reactive.ring.TransferRingBuffer;
+import com.moneytransfer.reactive.startup.CodecWarmup;
+import com.moneytransfer.reactive.startup.LedgerImage;
+import com.moneytransfer.reactive.startup.StartupReport;
+import com.moneytransfer.reactive.startup.TrainingRun;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import com.moneytransfer.reactive.tracing.Tracer;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 
 import java.math.BigDecimal;
 import java.util.Currency;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * MainVerticle
  */
 public class MainVerticle extends AbstractVerticle {
-    private final Map<Integer, Account> accounts = new LinkedHashMap<>();
-    private final Map<Integer, Transaction> transactions = new LinkedHashMap<>();
+    /* Account and transaction bodies are a few hundred bytes, anything above this limit is not a valid request */
+    private static final long MAX_BODY_SIZE = 16 * 1024;
+    private LedgerStore ledgerStore;
+    private Tracer tracer;
+    private EventLoopMonitor monitor;
+    private TransferRingBuffer transferRingBuffer;
+    private HoldBook holdBook;
+    private LedgerStats ledgerStats;
+    private StartupReport startupReport;
 
     @Override
     public void start(Promise<Void> startPromise) {
-        insertSampleData();
+        startupReport = StartupReport.create(config());
+        /* Before the store opens, it continues the ids after the stored ones */
+        Transaction.useIdGenerator(IdGenerator.create(config()));
+        ledgerStore = LedgerStore.create(vertx, config());
+        ledgerStats = LedgerStats.create(config());
+        ledgerStore.open()
+            .compose(v -> ledgerStore.accounts().isEmpty())
+            .compose(empty -> empty ? insertInitialState() : Future.<Void>succeededFuture())
+            .compose(v -> ledgerStore.accounts().balancesByCurrency())
+            .onSuccess(balances -> {
+                /* The aggregates start from the stored balances, the volumes only count the transactions from now on */
+                for (CurrencyBalance balance : balances) {
+                    ledgerStats.accountsOpened(balance);
+                }
+                startServer(startPromise);
+            })
+            .onFailure(startPromise::fail);
+    }
 
+    private void startServer(Promise<Void> startPromise) {
+        final AccountStore accountStore = ledgerStore.accounts();
+        final TransactionStore transactionStore = ledgerStore.transactions();
         /* Endpoints are exposed through a Router that will map a route to a handler which is basically the business code */
         Router router = Router.router(vertx);
-        /* Enables the reading of the request body for all routes under /accounts */
-        router.route("/accounts").handler(BodyHandler.create());
-        /* Enables the reading of the request body for all routes under /transactions */
-        router.route("/transactions").handler(BodyHandler.create());
+        /* Time to the first response and to the steady state, reported by /admin/diagnostics/startup */
+        router.route().handler(startupReport::track);
+        monitor = EventLoopMonitor.create(config());
+        monitor.start(vertx);
+        tracer = Tracer.create(config());
+        if (tracer.isEnabled()) {
+            /* Root span of every sampled request and span of the request body buffering */
+            router.route().handler(tracer::traceRequest);
+            router.route("/accounts").handler(tracer::startBodySpan);
+            router.route("/transactions").handler(tracer::startBodySpan);
+        }
+        /* Enables the reading of the request body for all routes under /accounts, bigger bodies are rejected with 413 */
+        router.route("/accounts").handler(BodyHandler.create().setBodyLimit(MAX_BODY_SIZE));
+        /* Enables the reading of the request body for all routes under /transactions, bigger bodies are rejected with 413 */
+        router.route("/transactions").handler(BodyHandler.create().setBodyLimit(MAX_BODY_SIZE));
+        /* Enables the reading of the request body for the hold requests */
+        router.route("/accounts/:id/holds").handler(BodyHandler.create().setBodyLimit(MAX_BODY_SIZE));
+        router.route("/holds/*").handler(BodyHandler.create().setBodyLimit(MAX_BODY_SIZE));
+        if (tracer.isEnabled()) {
+            router.route("/accounts").handler(tracer::endBodySpan);
+            router.route("/transactions").handler(tracer::endBodySpan);
+        }
 
-        AccountsHandler accountsHandler = new AccountsHandlerImpl();
-        TransactionsHandler transactionsHandler = new TransactionsHandlerImpl();
+        /* Open holds reserve part of the balance of their accounts, expired by a single periodic timer */
+        holdBook = HoldBook.create(config());
+        holdBook.start(vertx);
+        StatsHandler statsHandler = new StatsHandlerImpl(ledgerStore, ledgerStats);
+        TransactionsHandlerImpl transactionsHandler = new TransactionsHandlerImpl(tracer, ledgerStore);
+        /* Transfers, deposits, withdrawals and hold captures go through the ring buffer: applied in batches on the event loop,
+           then journaled and replicated on their own threads */
+        VelocityLimits velocityLimits = VelocityLimits.create(config());
+        transferRingBuffer = new TransferRingBuffer(config().getInteger("ring.size", 4096),
+            new TransferProcessor(accountStore, transactionStore, holdBook, velocityLimits, ledgerStats, tracer),
+            new ResponseDispatcher(transactionsHandler));
+        transferRingBuffer.addConsumer("transfer-journal",
+            new JournalHandler(config().getString("ring.journalFile", "target/transfers.journal")), true);
+        transferRingBuffer.addConsumer("transfer-replication",
+            new ReplicationHandler(vertx.eventBus(), config().getString("ring.replicationAddress", "ledger.transfers")), false);
+        transferRingBuffer.start(context);
+        transactionsHandler.setTransferRingBuffer(transferRingBuffer);
+        AccountsHandler accountsHandler = new AccountsHandlerImpl(tracer, ledgerStore, holdBook, velocityLimits, ledgerStats,
+            transferRingBuffer);
+        HoldsHandler holdsHandler = new HoldsHandlerImpl(tracer, ledgerStore, holdBook, ledgerStats, transferRingBuffer);
+        AdminHandler adminHandler = new AdminHandlerImpl(monitor, ledgerStore, startupReport, transferRingBuffer);
 
+        /* Search accounts, registered before the account number validation which would reject "search" */
+        router.get("/accounts/search").handler(monitor.wrap("GET /accounts/search", accountsHandler::searchAccounts));
+        /* Bulk import and export, streamed without the body handler and also registered before the account number validation */
+        router.post("/accounts/import").handler(monitor.wrap("POST /accounts/import", accountsHandler::importAccounts));
+        router.get("/accounts/export").handler(monitor.wrap("GET /accounts/export", accountsHandler::exportAccounts));
         /* Validate account number (id) before proceeding with any other endpoint which needs an id as a parameter */
         router.route("/accounts/:id").handler(accountsHandler::parseAccountNumber);
         /* Get all accounts */
-        router.get("/accounts").handler(routingContext -> accountsHandler.getAllAccounts(routingContext, accounts));
+        router.get("/accounts").handler(monitor.wrap("GET /accounts", accountsHandler::getAllAccounts));
         /* Post a new account */
-        router.post("/accounts").handler(routingContext -> accountsHandler.newAccount(routingContext, accounts));
+        router.post("/accounts").handler(monitor.wrap("POST /accounts", accountsHandler::newAccount));
         /* Get account by Id */
-        router.get("/accounts/:id").handler(routingContext -> accountsHandler.getAccount(routingContext, accounts));
+        router.get("/accounts/:id").handler(monitor.wrap("GET /accounts/:id", accountsHandler::getAccount));
         /* Delete an account */
-        router.delete("/accounts/:id").handler(routingContext -> accountsHandler.deleteAccount(routingContext, accounts));
+        router.delete("/accounts/:id").handler(monitor.wrap("DELETE /accounts/:id", accountsHandler::deleteAccount));
         /* Deposit or Withdraw */
-        router.put("/accounts/:id/deposit/:amount").handler(
-            routingContext -> accountsHandler.accountOperation(routingContext, AccountOperation.DEPOSIT, accounts));
-        router.put("/accounts/:id/withdraw/:amount").handler(
-            routingContext -> accountsHandler.accountOperation(routingContext, AccountOperation.WITHDRAW, accounts));
+        router.put("/accounts/:id/deposit/:amount").handler(monitor.wrap("PUT /accounts/:id/deposit/:amount",
+            routingContext -> accountsHandler.accountOperation(routingContext, AccountOperation.DEPOSIT)));
+        router.put("/accounts/:id/withdraw/:amount").handler(monitor.wrap("PUT /accounts/:id/withdraw/:amount",
+            routingContext -> accountsHandler.accountOperation(routingContext, AccountOperation.WITHDRAW)));
+
+        /* Reserve an amount on an account */
+        router.post("/accounts/:id/holds").handler(monitor.wrap("POST /accounts/:id/holds", holdsHandler::reserve));
+        /* Ledger balance, held amount and available balance of an account */
+        router.get("/accounts/:id/balance").handler(monitor.wrap("GET /accounts/:id/balance", holdsHandler::getBalance));
+        /* Get an open hold by Id */
+        router.get("/holds/:holdId").handler(monitor.wrap("GET /holds/:holdId", holdsHandler::getHold));
+        /* Capture a hold as a transaction, or release it */
+        router.post("/holds/:holdId/capture").handler(monitor.wrap("POST /holds/:holdId/capture", holdsHandler::capture));
+        router.post("/holds/:holdId/release").handler(monitor.wrap("POST /holds/:holdId/release", holdsHandler::release));
 
         /* Get all transactions */
-        router.get("/transactions").handler(routingContext -> transactionsHandler.getAllTransactions(routingContext,transactions));
+        router.get("/transactions").handler(monitor.wrap("GET /transactions", transactionsHandler::getAllTransactions));
         /* Post a new transaction */
-        router.post("/transactions").handler(routingContext -> transactionsHandler.newTransaction(routingContext,accounts,transactions));
+        router.post("/transactions").handler(monitor.wrap("POST /transactions", transactionsHandler::newTransaction));
         /* Get transaction by Id */
-        router.get("/transactions/:id").handler(routingContext -> transactionsHandler.getTransaction(routingContext,transactions));
+        router.get("/transactions/:id").handler(monitor.wrap("GET /transactions/:id", transactionsHandler::getTransaction));
         /* Get all transactions of a certain account identified with the provided Id */
-        router.get("/transactions/account/:id").handler(routingContext -> transactionsHandler.getTransactionOfAccount(routingContext,accounts,transactions));
+        router.get("/transactions/account/:id").handler(monitor.wrap("GET /transactions/account/:id", transactionsHandler::getTransactionOfAccount));
+
+        /* Money held and transaction volumes per currency, inflow and outflow of an account */
+        router.get("/stats").handler(monitor.wrap("GET /stats", statsHandler::getStats));
+        router.get("/stats/accounts/:id").handler(monitor.wrap("GET /stats/accounts/:id", statsHandler::getAccountStats));
+
+        /* Reconcile all account balances against the transactions */
+        router.get("/admin/reconciliation").handler(monitor.wrap("GET /admin/reconciliation", adminHandler::reconcile));
+        /* Event loop lag and the slowest route handlers with their stack samples */
+        router.get("/admin/diagnostics/event-loop").handler(adminHandler::eventLoopReport);
+        router.get("/admin/diagnostics/account-cache").handler(adminHandler::accountCacheReport);
+        router.get("/admin/diagnostics/startup").handler(adminHandler::startupReport);
+        router.get("/admin/diagnostics/ring").handler(adminHandler::ringReport);
 
         /* Just a simple endpoint to check whether the server is responding or not */
         router.get("/health").handler(rc -> rc.response().end("OK"));
+        if (config().getBoolean("startup.warmup", false)) {
+            CodecWarmup.run();
+        }
         /* Start the HTTP server on port 8080 */
         vertx.createHttpServer()
             .requestHandler(router)
@@ -73,7 +190,11 @@ public class MainVerticle extends AbstractVerticle {
                 8080,
                 result -> {
                     if (result.succeeded()) {
+                        startupReport.ready();
                         startPromise.complete();
+                        if (config().getBoolean("startup.training", false)) {
+                            train();
+                        }
                     }
                     else {
                         startPromise.fail(result.cause());
@@ -82,29 +203,80 @@ public class MainVerticle extends AbstractVerticle {
             );
     }
 
-    /* Insert some sample data on server start */
-    private void insertSampleData() {
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        if (holdBook != null) {
+            holdBook.stop();
+        }
+        if (monitor != null) {
+            monitor.stop();
+        }
+        /* Waiting for the ring consumers and the span exporter to drain blocks, it must not run on the event loop */
+        vertx.<Void>executeBlocking(() -> {
+            if (transferRingBuffer != null) {
+                transferRingBuffer.stop();
+            }
+            if (tracer != null) {
+                tracer.close();
+            }
+            return null;
+        }, false).onComplete(stopped -> {
+            if (ledgerStore != null) {
+                ledgerStore.close();
+            }
+            stopPromise.handle(stopped);
+        });
+    }
+
+    /* Load the ledger image into an empty store when there is one, otherwise insert the sample data */
+    private Future<Void> insertInitialState() {
+        final String image = config().getString("startup.ledgerImage");
+        if (image == null || config().getBoolean("startup.training", false)) {
+            return insertSampleData();
+        }
+        return LedgerImage.load(vertx, image, ledgerStore)
+            .compose(loaded -> loaded ? Future.succeededFuture() : insertSampleData());
+    }
+
+    /*
+     * Build run of the fast-start profile: write the image of the initial ledger, send the training workload
+     * then exit, so the JVM writes the classes it loaded to the class data sharing archive
+     */
+    private void train() {
+        final String image = config().getString("startup.ledgerImage");
+        (image == null ? Future.<Void>succeededFuture() : LedgerImage.write(vertx, image, ledgerStore))
+            .compose(v -> TrainingRun.run(vertx, 8080, config().getInteger("startup.trainingRequests", 1000)))
+            .onComplete(trained -> vertx.close(closed -> System.exit(trained.succeeded() ? 0 : 1)));
+    }
+
+    /* Insert some sample data in an empty store, the sample transactions are applied to the opening balances like transfers */
+    private Future<Void> insertSampleData() {
         Account account1 = Account.builder()
             .id(1111)
             .name("account 1")
-            .balance(BigDecimal.valueOf(100))
+            .balance(BigDecimal.valueOf(54))
+            .openingBalance(BigDecimal.valueOf(54))
             .currency(Currency.getInstance("EUR"))
             .build();
         Account account2 = Account.builder()
             .id(2222)
             .name("account 2")
-            .balance(BigDecimal.valueOf(200))
+            .balance(BigDecimal.valueOf(212))
+            .openingBalance(BigDecimal.valueOf(212))
             .currency(Currency.getInstance("USD"))
             .build();
         Account account3 = Account.builder()
             .id(3333)
             .name("account 3")
-            .balance(BigDecimal.valueOf(300))
+            .balance(BigDecimal.valueOf(334))
+            .openingBalance(BigDecimal.valueOf(334))
             .currency(Currency.getInstance("GBP"))
             .build();
-        accounts.put(1111, account1);
-        accounts.put(2222, account2);
-        accounts.put(3333, account3);
+        final AccountStore accountStore = ledgerStore.accounts();
+        final TransactionStore transactionStore = ledgerStore.transactions();
+        accountStore.insert(account1);
+        accountStore.insert(account2);
+        accountStore.insert(account3);
 
         Transaction transaction1 = new Transaction(2222, 1111, BigDecimal.valueOf(12), Currency.getInstance("EUR"));
         Transaction transaction2 = new Transaction(3333, 1111, BigDecimal.valueOf(34), Currency.getInstance("USD"));
@@ -112,7 +284,12 @@ public class MainVerticle extends AbstractVerticle {
         transaction2.setStatus(TransactionStatus.SUCCESSFUL);
         transaction1.setDescription("test transaction 1");
         transaction2.setDescription("test transaction 2");
-        transactions.put(transaction1.getId(), transaction1);
-        transactions.put(transaction2.getId(), transaction2);
+        account2.withdraw(transaction1.getAmount());
+        account1.deposit(transaction1.getAmount());
+        account3.withdraw(transaction2.getAmount());
+        account1.deposit(transaction2.getAmount());
+        transactionStore.record(transaction1);
+        /* Writes are applied in order, the last one completes when all the sample data is stored */
+        return transactionStore.record(transaction2);
     }
 }
@@ -0,0 +1,52 @@
+package com.moneytransfer.reactive;
+
+import io.vertx.core.json.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Command line client of the reconciliation endpoint of a running server.
+ * Prints the report and exits with 0 when the ledger is consistent, 1 when it is not and 2 on errors.
+ *
+ * Usage: java -cp moneytransfer.jar com.moneytransfer.reactive.ReconciliationCli [host] [port]
+ */
+public class ReconciliationCli {
+    public static void main(String[] args) {
+        final String host = args.length > 0 ? args[0] : "localhost";
+        final int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http", host, port, "/admin/reconciliation").openConnection();
+            connection.setRequestMethod("GET");
+            final int status = connection.getResponseCode();
+            final String body = read(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            System.out.println(body);
+            if (status != 200) {
+                System.exit(2);
+            }
+            System.exit(new JsonObject(body).getBoolean("consistent", false) ? 0 : 1);
+        } catch (IOException exception) {
+            System.err.println("Unable to reach the server on " + host + ":" + port + " Cause: " + exception.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return "";
+        }
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
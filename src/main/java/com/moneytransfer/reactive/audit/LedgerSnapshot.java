@@ -0,0 +1,217 @@
+package com.moneytransfer.reactive.audit;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point in time copy of the ledger which can be scanned outside of the event loop.
+ * It is either taken at once where the accounts and transactions do not change, inside a database transaction
+ * for the JDBC store, or copied a chunk at a time on the event loop with a Copy so live traffic is not stopped.
+ * Balances are immutable BigDecimal references and transactions are never modified once stored,
+ * so copying the references is enough.
+ *
+ * @author Julian Vasa
+ */
+public class LedgerSnapshot {
+    private final long time;
+    private final int[] accountIds;
+    private final BigDecimal[] openingBalances;
+    private final BigDecimal[] balances;
+    private final Currency[] currencies;
+    private final Transaction[] transactions;
+
+    private LedgerSnapshot(long time, int[] accountIds, BigDecimal[] openingBalances, BigDecimal[] balances,
+                           Currency[] currencies, Transaction[] transactions) {
+        this.time = time;
+        this.accountIds = accountIds;
+        this.openingBalances = openingBalances;
+        this.balances = balances;
+        this.currencies = currencies;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Copy the current state of the ledger at once
+     * @param accounts all the accounts
+     * @param transactions all the transactions
+     * @return the snapshot
+     */
+    public static LedgerSnapshot of(Collection<Account> accounts, Collection<Transaction> transactions) {
+        final Copy copy = new Copy(transactions.size());
+        for (Account account : accounts) {
+            copy.addAccount(account, transactions.size());
+        }
+        copy.transactions = transactions.toArray(new Transaction[0]);
+        return copy.build();
+    }
+
+    /**
+     * Start a copy of a ledger whose transactions are kept in a list in the order they were recorded
+     * @param transactionCount number of transactions recorded when the copy starts, those of the snapshot
+     * @return the copy, filled by the caller a chunk at a time
+     */
+    public static Copy copy(int transactionCount) {
+        return new Copy(transactionCount);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int accountCount() {
+        return accountIds.length;
+    }
+
+    public int accountId(int index) {
+        return accountIds[index];
+    }
+
+    public BigDecimal openingBalance(int index) {
+        return openingBalances[index];
+    }
+
+    public BigDecimal balance(int index) {
+        return balances[index];
+    }
+
+    public Currency currency(int index) {
+        return currencies[index];
+    }
+
+    public int transactionCount() {
+        return transactions.length;
+    }
+
+    public Transaction transaction(int index) {
+        return transactions[index];
+    }
+
+    /**
+     * Snapshot copied in several steps while the ledger keeps changing between them, each step on the event loop.
+     * Every account is copied with the number of transactions recorded at that time: its balance includes the
+     * transactions recorded after the start of the copy up to that number, build() takes them out again
+     * so the balances match the transactions recorded when the copy started.
+     */
+    public static class Copy {
+        private final long time = System.currentTimeMillis();
+        private final int transactionCount;
+        private Transaction[] transactions;
+        private Transaction[] laterTransactions = new Transaction[0];
+        private int copiedTransactions;
+        private int accountCount;
+        private int[] accountIds = new int[16];
+        private BigDecimal[] openingBalances = new BigDecimal[16];
+        private BigDecimal[] balances = new BigDecimal[16];
+        private Currency[] currencies = new Currency[16];
+        private int[] transactionsSeen = new int[16];
+
+        private Copy(int transactionCount) {
+            this.transactionCount = transactionCount;
+        }
+
+        /**
+         * @return number of transactions of the snapshot
+         */
+        public int transactionCount() {
+            return transactionCount;
+        }
+
+        /**
+         * @return number of transactions of the snapshot copied so far
+         */
+        public int copiedTransactions() {
+            return copiedTransactions;
+        }
+
+        /**
+         * Copy the next transactions of the snapshot
+         * @param log the transactions in the order they were recorded
+         * @param limit maximum number of transactions copied by this call
+         */
+        public void copyTransactions(List<Transaction> log, int limit) {
+            if (transactions == null) {
+                transactions = new Transaction[transactionCount];
+            }
+            final int end = Math.min(transactionCount, copiedTransactions + limit);
+            for (int i = copiedTransactions; i < end; i++) {
+                transactions[i] = log.get(i);
+            }
+            copiedTransactions = end;
+        }
+
+        /**
+         * Copy an account
+         * @param account the account
+         * @param recordedTransactions number of transactions recorded now, all of them are applied to its balance
+         */
+        public void addAccount(Account account, int recordedTransactions) {
+            if (accountCount == accountIds.length) {
+                final int capacity = accountCount * 2;
+                accountIds = Arrays.copyOf(accountIds, capacity);
+                openingBalances = Arrays.copyOf(openingBalances, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+                currencies = Arrays.copyOf(currencies, capacity);
+                transactionsSeen = Arrays.copyOf(transactionsSeen, capacity);
+            }
+            accountIds[accountCount] = account.getId();
+            openingBalances[accountCount] = account.getOpeningBalance() == null ? BigDecimal.ZERO : account.getOpeningBalance();
+            balances[accountCount] = account.getBalance();
+            currencies[accountCount] = account.getCurrency();
+            transactionsSeen[accountCount] = recordedTransactions;
+            accountCount++;
+        }
+
+        /**
+         * Copy the transactions recorded since the start of the copy, once every account is copied.
+         * There are only as many as the transfers received meanwhile.
+         * @param log the transactions in the order they were recorded
+         */
+        public void copyLaterTransactions(List<Transaction> log) {
+            laterTransactions = log.subList(transactionCount, log.size()).toArray(new Transaction[0]);
+        }
+
+        /**
+         * Take out of the balances the transactions recorded after the start of the copy,
+         * scans them so it must not run on the event loop
+         * @return the snapshot
+         */
+        public LedgerSnapshot build() {
+            if (laterTransactions.length > 0) {
+                final Map<Integer, Integer> indexes = new HashMap<>(accountCount * 2);
+                for (int i = 0; i < accountCount; i++) {
+                    indexes.put(accountIds[i], i);
+                }
+                for (int k = 0; k < laterTransactions.length; k++) {
+                    final Transaction transaction = laterTransactions[k];
+                    if (transaction.getStatus() != TransactionStatus.SUCCESSFUL || transaction.getAmount() == null) {
+                        continue;
+                    }
+                    final int position = transactionCount + k;
+                    final Integer from = indexes.get(transaction.getFromAccount());
+                    final Integer to = indexes.get(transaction.getToAccount());
+                    if (from != null && balances[from] != null && position < transactionsSeen[from]) {
+                        balances[from] = balances[from].add(transaction.getAmount());
+                    }
+                    if (to != null && balances[to] != null && position < transactionsSeen[to]) {
+                        balances[to] = balances[to].subtract(transaction.getAmount());
+                    }
+                }
+            }
+            return new LedgerSnapshot(time,
+                Arrays.copyOf(accountIds, accountCount),
+                Arrays.copyOf(openingBalances, accountCount),
+                Arrays.copyOf(balances, accountCount),
+                Arrays.copyOf(currencies, accountCount),
+                transactions == null ? new Transaction[0] : transactions);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.moneytransfer.reactive.audit;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.ReconciliationReport;
+import com.moneytransfer.reactive.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Checks that every account balance equals its opening balance plus credits minus debits
+ * and that the money of every currency is conserved. The transactions are scanned in parallel with fork-join.
+ *
+ * Transfers between accounts of different currencies are accepted at face value, so the money of a currency
+ * is conserved when its balances equal its opening balances plus its flows with the external account, with the
+ * accounts of other currencies and with the deleted accounts. The accounts with transactions in another currency
+ * than theirs are reported.
+ *
+ * @author Julian Vasa
+ */
+public class Reconciler {
+    /* Number of transactions scanned sequentially by a single fork-join task */
+    private static final int SEQUENTIAL_THRESHOLD = 50_000;
+    /* Maximum number of mismatches listed in the report, the count is always exact */
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+    private static final String NO_CURRENCY = "none";
+
+    private final ForkJoinPool pool;
+
+    public Reconciler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reconcile a snapshot of the ledger, blocks the calling thread so it must not run on the event loop
+     * @param snapshot consistent copy of accounts and transactions
+     * @return the reconciliation report
+     */
+    public ReconciliationReport reconcile(LedgerSnapshot snapshot) {
+        final long start = System.currentTimeMillis();
+        final int accountCount = snapshot.accountCount();
+        /* Position of the accounts in the snapshot, to find the currency of both sides of a transaction */
+        final Map<Integer, Integer> indexes = new HashMap<>(accountCount * 2);
+        for (int i = 0; i < accountCount; i++) {
+            indexes.put(snapshot.accountId(i), i);
+        }
+        final Flows flows = pool.invoke(new FlowTask(snapshot, indexes, 0, snapshot.transactionCount()));
+
+        List<ReconciliationReport.Mismatch> mismatches = pool.submit(() -> IntStream.range(0, accountCount)
+            .parallel()
+            .mapToObj(i -> check(snapshot, i, flows.netFlows))
+            .filter(mismatch -> mismatch != null)
+            .collect(Collectors.toList()))
+            .join();
+
+        int orphans = 0;
+        for (Integer accountId : flows.netFlows.keySet()) {
+            if (accountId != Account.EXTERNAL_ACCOUNT && !indexes.containsKey(accountId)) {
+                orphans++;
+            }
+        }
+
+        /* Sorted by currency code */
+        final Map<String, ReconciliationReport.CurrencyTotals> currencies = new TreeMap<>();
+        for (int i = 0; i < accountCount; i++) {
+            final ReconciliationReport.CurrencyTotals totals = currencies.computeIfAbsent(code(snapshot.currency(i)),
+                code -> new ReconciliationReport.CurrencyTotals(0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                    BigDecimal.ZERO, BigDecimal.ZERO, false));
+            totals.setAccounts(totals.getAccounts() + 1);
+            totals.setOpeningBalance(totals.getOpeningBalance().add(snapshot.openingBalance(i)));
+            /* An account without balance is reported as a mismatch, it holds no money here */
+            if (snapshot.balance(i) != null) {
+                totals.setBalance(totals.getBalance().add(snapshot.balance(i)));
+            }
+        }
+        boolean moneyConserved = true;
+        for (Map.Entry<String, ReconciliationReport.CurrencyTotals> entry : currencies.entrySet()) {
+            final ReconciliationReport.CurrencyTotals totals = entry.getValue();
+            totals.setExternalFlow(flows.externalFlows.getOrDefault(entry.getKey(), BigDecimal.ZERO));
+            totals.setCrossCurrencyFlow(flows.crossCurrencyFlows.getOrDefault(entry.getKey(), BigDecimal.ZERO));
+            totals.setClosedAccountsFlow(flows.closedAccountFlows.getOrDefault(entry.getKey(), BigDecimal.ZERO));
+            totals.setMoneyConserved(totals.getOpeningBalance()
+                .add(totals.getExternalFlow())
+                .add(totals.getCrossCurrencyFlow())
+                .add(totals.getClosedAccountsFlow())
+                .compareTo(totals.getBalance()) == 0);
+            moneyConserved &= totals.isMoneyConserved();
+        }
+
+        final List<Integer> currencyMismatches = new ArrayList<>(flows.currencyMismatches);
+        currencyMismatches.sort(null);
+        return ReconciliationReport.builder()
+            .snapshotTime(snapshot.getTime())
+            .durationMillis(System.currentTimeMillis() - start)
+            .accountsChecked(accountCount)
+            .transactionsScanned(snapshot.transactionCount())
+            .orphanAccounts(orphans)
+            .mismatchCount(mismatches.size())
+            .mismatches(new ArrayList<>(mismatches.subList(0, Math.min(mismatches.size(), MAX_REPORTED_MISMATCHES))))
+            .currencyMismatchCount(currencyMismatches.size())
+            .currencyMismatchAccounts(new ArrayList<>(currencyMismatches.subList(0,
+                Math.min(currencyMismatches.size(), MAX_REPORTED_MISMATCHES))))
+            .currencies(currencies)
+            .moneyConserved(moneyConserved)
+            .consistent(moneyConserved && mismatches.isEmpty())
+            .build();
+    }
+
+    private static ReconciliationReport.Mismatch check(LedgerSnapshot snapshot, int index, Map<Integer, BigDecimal> netFlows) {
+        BigDecimal expected = snapshot.openingBalance(index)
+            .add(netFlows.getOrDefault(snapshot.accountId(index), BigDecimal.ZERO));
+        BigDecimal actual = snapshot.balance(index);
+        if (actual == null) {
+            return new ReconciliationReport.Mismatch(snapshot.accountId(index), expected, null, null);
+        }
+        if (expected.compareTo(actual) == 0) {
+            return null;
+        }
+        return new ReconciliationReport.Mismatch(snapshot.accountId(index), expected, actual, actual.subtract(expected));
+    }
+
+    private static String code(Currency currency) {
+        return currency == null ? NO_CURRENCY : currency.getCurrencyCode();
+    }
+
+    /**
+     * Net flows of a range of the snapshot transactions: credits - debits per account,
+     * and per currency the flows of its accounts with the external account, other currencies and deleted accounts
+     */
+    private static class Flows {
+        private final Map<Integer, BigDecimal> netFlows = new HashMap<>();
+        private final Map<String, BigDecimal> externalFlows = new HashMap<>();
+        private final Map<String, BigDecimal> crossCurrencyFlows = new HashMap<>();
+        private final Map<String, BigDecimal> closedAccountFlows = new HashMap<>();
+        private final Set<Integer> currencyMismatches = new HashSet<>();
+
+        /* Merge the smaller maps into the larger ones */
+        Flows merge(Flows other) {
+            if (netFlows.size() < other.netFlows.size()) {
+                return other.merge(this);
+            }
+            for (Map.Entry<Integer, BigDecimal> entry : other.netFlows.entrySet()) {
+                netFlows.merge(entry.getKey(), entry.getValue(), BigDecimal::add);
+            }
+            other.externalFlows.forEach((code, flow) -> externalFlows.merge(code, flow, BigDecimal::add));
+            other.crossCurrencyFlows.forEach((code, flow) -> crossCurrencyFlows.merge(code, flow, BigDecimal::add));
+            other.closedAccountFlows.forEach((code, flow) -> closedAccountFlows.merge(code, flow, BigDecimal::add));
+            currencyMismatches.addAll(other.currencyMismatches);
+            return this;
+        }
+    }
+
+    /**
+     * Computes the flows over a range of the snapshot transactions
+     */
+    private static class FlowTask extends RecursiveTask<Flows> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient LedgerSnapshot snapshot;
+        private final transient Map<Integer, Integer> indexes;
+        private final int from;
+        private final int to;
+
+        FlowTask(LedgerSnapshot snapshot, Map<Integer, Integer> indexes, int from, int to) {
+            this.snapshot = snapshot;
+            this.indexes = indexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Flows compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                Flows flows = new Flows();
+                for (int i = from; i < to; i++) {
+                    Transaction transaction = snapshot.transaction(i);
+                    if (transaction.getStatus() == TransactionStatus.SUCCESSFUL && transaction.getAmount() != null) {
+                        final BigDecimal amount = transaction.getAmount();
+                        flows.netFlows.merge(transaction.getFromAccount(), amount.negate(), BigDecimal::add);
+                        flows.netFlows.merge(transaction.getToAccount(), amount, BigDecimal::add);
+                        final Integer fromIndex = indexes.get(transaction.getFromAccount());
+                        final Integer toIndex = indexes.get(transaction.getToAccount());
+                        side(flows, transaction, fromIndex, transaction.getToAccount(), toIndex, amount.negate());
+                        side(flows, transaction, toIndex, transaction.getFromAccount(), fromIndex, amount);
+                    }
+                }
+                return flows;
+            }
+            final int middle = (from + to) >>> 1;
+            FlowTask left = new FlowTask(snapshot, indexes, from, middle);
+            FlowTask right = new FlowTask(snapshot, indexes, middle, to);
+            left.fork();
+            Flows rightFlows = right.compute();
+            return left.join().merge(rightFlows);
+        }
+
+        /* Count the flow of one existing account of a transaction in the flows of its currency */
+        private void side(Flows flows, Transaction transaction, Integer index, int counterparty, Integer counterpartyIndex,
+                          BigDecimal amount) {
+            if (index == null) {
+                return;
+            }
+            final Currency currency = snapshot.currency(index);
+            final String code = code(currency);
+            if (counterparty == Account.EXTERNAL_ACCOUNT) {
+                flows.externalFlows.merge(code, amount, BigDecimal::add);
+            }
+            else if (counterpartyIndex == null) {
+                flows.closedAccountFlows.merge(code, amount, BigDecimal::add);
+            }
+            else if (!Objects.equals(snapshot.currency(counterpartyIndex), currency)) {
+                flows.crossCurrencyFlows.merge(code, amount, BigDecimal::add);
+                flows.currencyMismatches.add(snapshot.accountId(index));
+            }
+            if (!Objects.equals(transaction.getCurrency(), currency)) {
+                flows.currencyMismatches.add(snapshot.accountId(index));
+            }
+        }
+    }
+}
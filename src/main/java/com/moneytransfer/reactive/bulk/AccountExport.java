@@ -0,0 +1,115 @@
+package com.moneytransfer.reactive.bulk;
+
+import com.moneytransfer.reactive.enums.BulkFormat;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.parser.AccountRecordParser;
+import com.moneytransfer.reactive.store.AccountStore;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.RoutingContext;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+/**
+ * Export of all the accounts as a chunked response, one line per account in account number order.
+ * The accounts are read from the store a page at a time and the next page is only read once the connection
+ * has taken the previous one, so memory use does not depend on the number of accounts.
+ * Each page is encoded as soon as it is read, an account changed during the export appears with its balance at that time.
+ *
+ * @author Julian Vasa
+ */
+public class AccountExport {
+    private static final int PAGE_SIZE = 1000;
+
+    private final RoutingContext routingContext;
+    private final AccountStore accountStore;
+    private final BulkFormat format;
+
+    private AccountExport(RoutingContext routingContext, AccountStore accountStore, BulkFormat format) {
+        this.routingContext = routingContext;
+        this.accountStore = accountStore;
+        this.format = format;
+    }
+
+    /**
+     * Start streaming the accounts
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     * @param accountStore storage of the accounts
+     * @param format format of the response body
+     */
+    public static void start(RoutingContext routingContext, AccountStore accountStore, BulkFormat format) {
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, format.getContentType() + "; charset=utf-8")
+            .setChunked(true);
+        new AccountExport(routingContext, accountStore, format).nextPage(Integer.MIN_VALUE);
+    }
+
+    private void nextPage(int afterId) {
+        final HttpServerResponse response = routingContext.response();
+        if (response.closed()) {
+            return;
+        }
+        accountStore.getPage(afterId, PAGE_SIZE)
+            .onSuccess(accounts -> {
+                if (response.closed()) {
+                    return;
+                }
+                final Buffer chunk = Buffer.buffer(accounts.size() * 64 + 64);
+                if (format == BulkFormat.CSV && afterId == Integer.MIN_VALUE) {
+                    chunk.appendString(AccountRecordParser.CSV_HEADER).appendString("\n");
+                }
+                for (Account account : accounts) {
+                    append(chunk, account);
+                }
+                if (accounts.size() < PAGE_SIZE) {
+                    response.end(chunk);
+                    return;
+                }
+                response.write(chunk);
+                final int lastId = accounts.get(accounts.size() - 1).getId();
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> nextPage(lastId));
+                }
+                else {
+                    /* Let the other requests run between two pages */
+                    routingContext.vertx().runOnContext(v -> nextPage(lastId));
+                }
+            })
+            .onFailure(cause -> {
+                if (response.headWritten()) {
+                    /* The status is already sent, only an incomplete body tells the client the export failed */
+                    response.reset();
+                }
+                else {
+                    error(routingContext, 500, "Unable to export the accounts! Cause: " + cause.getMessage());
+                }
+            });
+    }
+
+    private void append(Buffer chunk, Account account) {
+        if (format == BulkFormat.NDJSON) {
+            chunk.appendString(Json.encode(account)).appendString("\n");
+            return;
+        }
+        chunk.appendString(Integer.toString(account.getId())).appendString(",");
+        appendCsvField(chunk, account.getName());
+        chunk.appendString(",")
+            .appendString(account.getBalance() == null ? "" : account.getBalance().toPlainString())
+            .appendString(",")
+            .appendString(account.getCurrency() == null ? "" : account.getCurrency().getCurrencyCode())
+            .appendString("\n");
+    }
+
+    private static void appendCsvField(Buffer chunk, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            chunk.appendString(value);
+            return;
+        }
+        chunk.appendString("\"").appendString(value.replace("\"", "\"\"")).appendString("\"");
+    }
+}
@@ -0,0 +1,178 @@
+package com.moneytransfer.reactive.bulk;
+
+import com.moneytransfer.reactive.enums.BulkFormat;
+import com.moneytransfer.reactive.exception.MalformedRequestException;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.ImportError;
+import com.moneytransfer.reactive.model.ImportReport;
+import com.moneytransfer.reactive.parser.AccountRecordParser;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.Json;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+/**
+ * Import of the accounts of one request body, read line by line as it arrives: the body is never buffered.
+ * The parsed accounts are inserted in batches, the request is paused while a batch is stored
+ * so memory use does not depend on the size of the import. Invalid and duplicate rows are reported, the others imported.
+ *
+ * @author Julian Vasa
+ */
+public class AccountImport {
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final RoutingContext routingContext;
+    private final AccountStore accountStore;
+    private final LedgerStats ledgerStats;
+    private final AccountRecordParser parser;
+    private final RecordParser records;
+    private List<Account> batch = new ArrayList<>(BATCH_SIZE);
+    private long[] batchLines = new long[BATCH_SIZE];
+    private final List<ImportError> errors = new ArrayList<>();
+    private long line;
+    private long imported;
+    private long failed;
+    private boolean storing;
+    private boolean ended;
+    private boolean done;
+
+    private AccountImport(RoutingContext routingContext, AccountStore accountStore, LedgerStats ledgerStats, BulkFormat format) {
+        this.routingContext = routingContext;
+        this.accountStore = accountStore;
+        this.ledgerStats = ledgerStats;
+        this.parser = new AccountRecordParser(format);
+        this.records = RecordParser.newDelimited("\n", routingContext.request());
+    }
+
+    /**
+     * Start reading the request body, the import report is sent once the whole body is imported
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     * @param accountStore storage of the accounts
+     * @param ledgerStats aggregates counting the imported accounts
+     * @param format format of the body
+     */
+    public static void start(RoutingContext routingContext, AccountStore accountStore, LedgerStats ledgerStats, BulkFormat format) {
+        new AccountImport(routingContext, accountStore, ledgerStats, format).start();
+    }
+
+    private void start() {
+        records.maxRecordSize(MAX_LINE_LENGTH);
+        records.exceptionHandler(this::abort);
+        records.endHandler(v -> onEnd());
+        records.handler(this::onLine);
+        /* The request may have been paused while it was routed */
+        routingContext.request().resume();
+    }
+
+    private void onLine(Buffer record) {
+        line++;
+        final Buffer row = record.length() > 0 && record.getByte(record.length() - 1) == '\r'
+            ? record.slice(0, record.length() - 1) : record;
+        if (row.length() == 0 || (line == 1 && parser.isHeader(row))) {
+            return;
+        }
+        try {
+            batchLines[batch.size()] = line;
+            batch.add(parser.parse(row));
+        } catch (MalformedRequestException exception) {
+            reject(line, exception.getMessage());
+            return;
+        }
+        if (batch.size() == BATCH_SIZE) {
+            store();
+        }
+    }
+
+    private void onEnd() {
+        ended = true;
+        if (storing || done) {
+            return;
+        }
+        if (batch.isEmpty()) {
+            finish();
+        }
+        else {
+            store();
+        }
+    }
+
+    /* Insert the batch while the body is paused, the inserts of a batch are written together by the JDBC store */
+    private void store() {
+        final List<Account> accounts = batch;
+        final long[] lines = batchLines;
+        batch = new ArrayList<>(BATCH_SIZE);
+        batchLines = new long[BATCH_SIZE];
+        storing = true;
+        records.pause();
+
+        final List<Future<Boolean>> inserts = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            inserts.add(accountStore.insert(account));
+        }
+        Future.join(inserts).onComplete(result -> {
+            for (int i = 0; i < inserts.size(); i++) {
+                final Future<Boolean> insert = inserts.get(i);
+                if (insert.failed()) {
+                    reject(lines[i], "Unable to store the account! Cause: " + insert.cause().getMessage());
+                }
+                else if (!insert.result()) {
+                    reject(lines[i], "Account number already exists in the DB!");
+                }
+                else {
+                    ledgerStats.accountOpened(accounts.get(i));
+                    imported++;
+                }
+            }
+            storing = false;
+            if (done) {
+                return;
+            }
+            if (ended) {
+                onEnd();
+            }
+            else {
+                records.resume();
+            }
+        });
+    }
+
+    private void reject(long line, String error) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new ImportError(line, error));
+        }
+    }
+
+    private void finish() {
+        done = true;
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(Json.encodePrettily(new ImportReport(imported, failed, errors)));
+    }
+
+    /* A line too long or a broken connection, the accounts of the stored batches stay imported */
+    private void abort(Throwable cause) {
+        if (done) {
+            return;
+        }
+        done = true;
+        records.handler(null);
+        if (!routingContext.response().closed()) {
+            error(routingContext, 400, "Import aborted at line " + (line + 1) + " after " + imported
+                + " accounts! Cause: " + cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.moneytransfer.reactive.cache;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.CacheStats;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the account instances of a store, with the W-TinyLFU eviction policy.
+ *
+ * New entries go to a small LRU window (1% of the capacity). An entry leaving the window competes with the
+ * least recently used entry of the main space: the one with the higher access frequency, estimated by a count-min
+ * sketch, stays. The main space is a segmented LRU: entries hit a second time move from probation to protected
+ * (80% of the main space). One-off reads of a long tail of accounts therefore cannot push the hot accounts out.
+ *
+ * Pinned entries, accounts with changes not yet written to the database, are never evicted.
+ * Evicted instances are kept weakly until nobody uses them, so an operation still holding an evicted account
+ * and a new lookup of the same account always share one instance.
+ *
+ * Like the store it is only accessed from the event loop.
+ *
+ * @author Julian Vasa
+ */
+public class AccountCache {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private final FrequencySketch sketch;
+    private final Map<Integer, EvictedAccount> evicted = new HashMap<>();
+    private final ReferenceQueue<Account> collected = new ReferenceQueue<>();
+    private int protectedSize;
+    private int pinned;
+
+    private long hits;
+    private long misses;
+    private long resurrections;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param capacity maximum number of accounts kept, pinned accounts excepted
+     */
+    public AccountCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Look up an account and record the access
+     * @param id account number
+     * @return the cached instance, null on a miss
+     */
+    public Account get(int id) {
+        sketch.increment(id);
+        Node node = nodes.get(id);
+        if (node != null) {
+            hits++;
+            onHit(node);
+            return node.account;
+        }
+        final Account resurrected = takeEvicted(id);
+        if (resurrected != null) {
+            hits++;
+            resurrections++;
+            add(resurrected);
+            return resurrected;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Look up an account without recording the access
+     * @param id account number
+     * @return the instance in use for the account, cached or evicted but still referenced, null if there is none
+     */
+    public Account peek(int id) {
+        final Node node = nodes.get(id);
+        if (node != null) {
+            return node.account;
+        }
+        final EvictedAccount reference = evicted.get(id);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Add a loaded or new account, unless an instance is already in use for it
+     * @param account the account
+     * @return the instance to use: the one already in use, or the account given
+     */
+    public Account putIfAbsent(Account account) {
+        final Account existing = peek(account.getId());
+        if (existing != null) {
+            return existing;
+        }
+        add(account);
+        return account;
+    }
+
+    /**
+     * Remove a deleted account
+     * @param id account number
+     */
+    public void remove(int id) {
+        evicted.remove(id);
+        final Node node = nodes.remove(id);
+        if (node == null) {
+            return;
+        }
+        queueOf(node).unlink(node);
+        if (node.queue == PROTECTED) {
+            protectedSize--;
+        }
+        if (node.pins > 0) {
+            pinned--;
+        }
+    }
+
+    /**
+     * Keep an account in the cache until unpinned, called for every write of the account not yet in the database
+     * @param id account number
+     * @return false if the account is not in use anymore
+     */
+    public boolean pin(int id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            final Account account = takeEvicted(id);
+            if (account == null) {
+                return false;
+            }
+            node = add(account);
+        }
+        if (node.pins++ == 0) {
+            pinned++;
+        }
+        return true;
+    }
+
+    /**
+     * Release one pin, the account may be evicted again once all its writes are in the database
+     * @param id account number
+     */
+    public void unpin(int id) {
+        final Node node = nodes.get(id);
+        if (node != null && node.pins > 0 && --node.pins == 0) {
+            pinned--;
+            evict();
+        }
+    }
+
+    public CacheStats stats() {
+        final long lookups = hits + misses;
+        return CacheStats.builder()
+            .capacity(capacity)
+            .size(nodes.size())
+            .pinned(pinned)
+            .hits(hits)
+            .misses(misses)
+            .hitRate(lookups == 0 ? 0.0 : (double) hits / lookups)
+            .resurrections(resurrections)
+            .evictions(evictions)
+            .rejections(rejections)
+            .build();
+    }
+
+    private void onHit(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToTail(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedQueue.append(node);
+                protectedSize++;
+                /* Demote the least recently used protected entries back to probation */
+                while (protectedSize > protectedCapacity) {
+                    Node demoted = protectedQueue.head();
+                    protectedQueue.unlink(demoted);
+                    protectedSize--;
+                    demoted.queue = PROBATION;
+                    probation.append(demoted);
+                }
+                break;
+            default:
+                protectedQueue.moveToTail(node);
+                break;
+        }
+    }
+
+    private Node add(Account account) {
+        Node node = new Node(account);
+        nodes.put(account.getId(), node);
+        window.append(node);
+        evict();
+        return node;
+    }
+
+    /* Move the window overflow to probation, then evict from the main space while the cache is over capacity */
+    private void evict() {
+        expungeCollected();
+        int windowSize = window.size;
+        while (windowSize > windowCapacity) {
+            Node candidate = window.head();
+            window.unlink(candidate);
+            candidate.queue = PROBATION;
+            probation.append(candidate);
+            windowSize--;
+            if (nodes.size() - pinned > capacity) {
+                admit(candidate);
+            }
+        }
+        while (nodes.size() - pinned > capacity) {
+            Node victim = firstUnpinned(probation);
+            if (victim == null) {
+                victim = firstUnpinned(protectedQueue);
+            }
+            if (victim == null) {
+                return;
+            }
+            evictNode(victim);
+        }
+    }
+
+    /* TinyLFU admission: the candidate from the window replaces the probation victim only if it is more popular */
+    private void admit(Node candidate) {
+        final Node victim = firstUnpinned(probation);
+        if (victim == null || victim == candidate) {
+            return;
+        }
+        if (candidate.pins == 0 && sketch.frequency(candidate.account.getId()) <= sketch.frequency(victim.account.getId())) {
+            rejections++;
+            evictNode(candidate);
+        }
+        else {
+            evictNode(victim);
+        }
+    }
+
+    private void evictNode(Node node) {
+        queueOf(node).unlink(node);
+        if (node.queue == PROTECTED) {
+            protectedSize--;
+        }
+        nodes.remove(node.account.getId());
+        evicted.put(node.account.getId(), new EvictedAccount(node.account, collected));
+        evictions++;
+    }
+
+    private Account takeEvicted(int id) {
+        final EvictedAccount reference = evicted.remove(id);
+        return reference == null ? null : reference.get();
+    }
+
+    /* Drop the references to the evicted accounts the garbage collector reclaimed */
+    private void expungeCollected() {
+        EvictedAccount reference;
+        while ((reference = (EvictedAccount) collected.poll()) != null) {
+            evicted.remove(reference.id, reference);
+        }
+    }
+
+    private static Node firstUnpinned(AccessQueue queue) {
+        Node node = queue.head();
+        while (node != null && node.pins > 0) {
+            node = queue.next(node);
+        }
+        return node;
+    }
+
+    private AccessQueue queueOf(Node node) {
+        return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue;
+    }
+
+    private static class Node {
+        private final Account account;
+        private int queue = WINDOW;
+        private int pins;
+        private Node previous;
+        private Node next;
+
+        Node(Account account) {
+            this.account = account;
+        }
+    }
+
+    private static class EvictedAccount extends WeakReference<Account> {
+        private final int id;
+
+        EvictedAccount(Account account, ReferenceQueue<Account> queue) {
+            super(account, queue);
+            this.id = account.getId();
+        }
+    }
+
+    /* Doubly linked list in access order, least recently used first */
+    private static class AccessQueue {
+        private final Node sentinel = new Node(null);
+        private int size;
+
+        AccessQueue() {
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        Node head() {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+
+        Node next(Node node) {
+            return node.next == sentinel ? null : node.next;
+        }
+
+        void append(Node node) {
+            node.previous = sentinel.previous;
+            node.next = sentinel;
+            sentinel.previous.next = node;
+            sentinel.previous = node;
+            size++;
+        }
+
+        void unlink(Node node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToTail(Node node) {
+            unlink(node);
+            append(node);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.moneytransfer.reactive.cache;
+
+/**
+ * Count-min sketch of the access frequency of the account numbers, the popularity estimate of the TinyLFU admission.
+ * Four 4-bit counters per key packed 16 per long, so the sketch takes 8 bytes per cached entry.
+ * All counters are halved once the number of increments reaches 10 times the cache size,
+ * so the frequencies follow changes in the traffic.
+ *
+ * @author Julian Vasa
+ */
+class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param maximumSize number of entries of the cache
+     */
+    FrequencySketch(int maximumSize) {
+        final int tableSize = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+
+    /**
+     * @param key account number
+     * @return estimated number of accesses, at most 15
+     */
+    int frequency(int key) {
+        final int hash = spread(key);
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an access
+     * @param key account number
+     */
+    void increment(int key) {
+        final int hash = spread(key);
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    /* Increment the j-th counter of the slot unless it is already at its maximum */
+    private boolean incrementAt(int index, int j) {
+        final int offset = j << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /* Halve every counter, the odd counters lose their remainder which is subtracted from the size */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long value = (hash + SEEDS[i]) * SEEDS[i];
+        value += value >>> 32;
+        return ((int) value) & tableMask;
+    }
+
+    private static int spread(int key) {
+        int x = ((key >>> 16) ^ key) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,290 @@
+package com.moneytransfer.reactive.diagnostics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the event loop lag continuously and records which route handler was running when the loop was blocked.
+ *
+ * Route handlers are wrapped to publish the handler currently running on the event loop.
+ * A watchdog thread samples the event loop stack while a handler runs longer than the block threshold,
+ * and a periodic timer measures how late the event loop runs it (the lag).
+ * The slowest invocations are kept in a rolling top-N: the current window and the previous one are reported.
+ *
+ * All the statistics are updated on the event loop, only the stack samples are exchanged with the watchdog thread.
+ *
+ * @author Julian Vasa
+ */
+public class EventLoopMonitor {
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final int MAX_STACK_SAMPLES = 5;
+    private static final int MAX_STACK_DEPTH = 40;
+    private static final Comparator<SlowInvocation> BY_DURATION = Comparator.comparingLong(invocation -> invocation.durationNanos);
+
+    private final long blockThresholdNanos;
+    private final int topN;
+    private final long windowNanos;
+
+    /* Handler currently running on the event loop, written by the event loop and read by the watchdog */
+    private volatile Thread loopThread;
+    private volatile long currentSequence;
+    private volatile long currentStart;
+    private long sequence;
+
+    /* Stack samples of the current slow invocation, written by the watchdog */
+    private final Object sampleLock = new Object();
+    private long sampledSequence = -1;
+    private List<StackTraceElement[]> samples = new ArrayList<>();
+
+    private final Map<String, RouteStats> routes = new HashMap<>();
+    private PriorityQueue<SlowInvocation> currentWindow = new PriorityQueue<>(BY_DURATION);
+    private PriorityQueue<SlowInvocation> previousWindow = new PriorityQueue<>(BY_DURATION);
+    private long windowStart = System.nanoTime();
+
+    private long lagExpected;
+    private long lagLastNanos;
+    private long lagMaxNanos;
+    private long lagTotalNanos;
+    private long lagProbes;
+    private long blockedProbes;
+
+    private Vertx vertx;
+    private long lagTimer;
+    private Thread watchdog;
+    private volatile boolean running;
+
+    /**
+     * @param blockThresholdMillis handlers running longer than this are reported as blocking the event loop
+     * @param topN number of slowest invocations kept per window
+     * @param windowMillis length of the rolling window of the slowest invocations
+     */
+    public EventLoopMonitor(long blockThresholdMillis, int topN, long windowMillis) {
+        this.blockThresholdNanos = TimeUnit.MILLISECONDS.toNanos(blockThresholdMillis);
+        this.topN = topN;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Create the monitor from the verticle configuration
+     * @param config verticle configuration with diagnostics.blockThresholdMs, diagnostics.topN and diagnostics.windowMs
+     * @return the monitor, not started yet
+     */
+    public static EventLoopMonitor create(JsonObject config) {
+        return new EventLoopMonitor(
+            config.getLong("diagnostics.blockThresholdMs", 50L),
+            config.getInteger("diagnostics.topN", 20),
+            config.getLong("diagnostics.windowMs", TimeUnit.MINUTES.toMillis(5)));
+    }
+
+    /**
+     * Start the lag probe and the watchdog, must be called on the event loop
+     * @param vertx the Vert.x instance
+     */
+    public void start(Vertx vertx) {
+        this.vertx = vertx;
+        this.loopThread = Thread.currentThread();
+        this.running = true;
+        this.lagExpected = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LAG_PROBE_INTERVAL_MS);
+        this.lagTimer = vertx.setPeriodic(LAG_PROBE_INTERVAL_MS, id -> probeLag());
+        this.watchdog = new Thread(this::watch, "event-loop-watchdog");
+        this.watchdog.setDaemon(true);
+        this.watchdog.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (vertx != null) {
+            vertx.cancelTimer(lagTimer);
+        }
+        if (watchdog != null) {
+            watchdog.interrupt();
+        }
+    }
+
+    /**
+     * Wrap a route handler so its invocations are timed and attributed to the route
+     * @param route name of the route reported, e.g. "GET /accounts"
+     * @param handler the route handler
+     * @return the timed handler
+     */
+    public Handler<RoutingContext> wrap(String route, Handler<RoutingContext> handler) {
+        return routingContext -> {
+            final long start = System.nanoTime();
+            final long invocation = ++sequence;
+            currentSequence = invocation;
+            currentStart = start;
+            try {
+                handler.handle(routingContext);
+            } finally {
+                currentStart = 0L;
+                record(route, invocation, start, System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Report of the event loop lag, the slowest invocations with their stack samples and the per route statistics
+     * @return the report as JSON
+     */
+    public JsonObject report() {
+        rotateWindow(System.nanoTime());
+        List<SlowInvocation> slowest = new ArrayList<>(currentWindow);
+        slowest.addAll(previousWindow);
+        slowest.sort(BY_DURATION.reversed());
+
+        JsonArray slowHandlers = new JsonArray();
+        for (SlowInvocation invocation : slowest.subList(0, Math.min(topN, slowest.size()))) {
+            slowHandlers.add(invocation.toJson());
+        }
+        JsonArray routeStats = new JsonArray();
+        routes.forEach((route, stats) -> routeStats.add(new JsonObject()
+            .put("route", route)
+            .put("count", stats.count)
+            .put("blocked", stats.blocked)
+            .put("averageMillis", stats.count == 0 ? 0.0 : toMillis(stats.totalNanos) / stats.count)
+            .put("maxMillis", toMillis(stats.maxNanos))));
+        return new JsonObject()
+            .put("blockThresholdMillis", toMillis(blockThresholdNanos))
+            .put("lag", new JsonObject()
+                .put("lastMillis", toMillis(lagLastNanos))
+                .put("maxMillis", toMillis(lagMaxNanos))
+                .put("averageMillis", lagProbes == 0 ? 0.0 : toMillis(lagTotalNanos) / lagProbes)
+                .put("probes", lagProbes)
+                .put("blockedProbes", blockedProbes))
+            .put("slowHandlers", slowHandlers)
+            .put("routes", routeStats);
+    }
+
+    private void record(String route, long invocation, long start, long durationNanos) {
+        RouteStats stats = routes.get(route);
+        if (stats == null) {
+            stats = new RouteStats();
+            routes.put(route, stats);
+        }
+        stats.count++;
+        stats.totalNanos += durationNanos;
+        stats.maxNanos = Math.max(stats.maxNanos, durationNanos);
+        if (durationNanos < blockThresholdNanos) {
+            return;
+        }
+        stats.blocked++;
+
+        List<StackTraceElement[]> stacks;
+        synchronized (sampleLock) {
+            stacks = sampledSequence == invocation ? samples : new ArrayList<>();
+            if (sampledSequence == invocation) {
+                samples = new ArrayList<>();
+                sampledSequence = -1;
+            }
+        }
+        rotateWindow(start);
+        currentWindow.add(new SlowInvocation(route, System.currentTimeMillis(), durationNanos, stacks));
+        if (currentWindow.size() > topN) {
+            currentWindow.poll();
+        }
+    }
+
+    private void rotateWindow(long now) {
+        if (now - windowStart >= windowNanos) {
+            previousWindow = now - windowStart >= 2 * windowNanos ? new PriorityQueue<>(BY_DURATION) : currentWindow;
+            currentWindow = new PriorityQueue<>(BY_DURATION);
+            windowStart = now;
+        }
+    }
+
+    private void probeLag() {
+        final long now = System.nanoTime();
+        final long lag = Math.max(0L, now - lagExpected);
+        lagExpected = now + TimeUnit.MILLISECONDS.toNanos(LAG_PROBE_INTERVAL_MS);
+        lagLastNanos = lag;
+        lagMaxNanos = Math.max(lagMaxNanos, lag);
+        lagTotalNanos += lag;
+        lagProbes++;
+        if (lag >= blockThresholdNanos) {
+            blockedProbes++;
+        }
+    }
+
+    /* Watchdog loop: sample the event loop stack while a handler runs longer than the threshold */
+    private void watch() {
+        final long pauseMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(blockThresholdNanos) / 2);
+        while (running) {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException exception) {
+                return;
+            }
+            final long start = currentStart;
+            if (start == 0L || System.nanoTime() - start < blockThresholdNanos) {
+                continue;
+            }
+            final long invocation = currentSequence;
+            final StackTraceElement[] stack = loopThread.getStackTrace();
+            if (currentSequence != invocation || currentStart == 0L) {
+                /* The handler finished while the stack was captured */
+                continue;
+            }
+            synchronized (sampleLock) {
+                if (sampledSequence != invocation) {
+                    samples = new ArrayList<>();
+                    sampledSequence = invocation;
+                }
+                if (samples.size() < MAX_STACK_SAMPLES) {
+                    samples.add(stack);
+                }
+            }
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class RouteStats {
+        private long count;
+        private long blocked;
+        private long totalNanos;
+        private long maxNanos;
+    }
+
+    private static class SlowInvocation {
+        private final String route;
+        private final long timestamp;
+        private final long durationNanos;
+        private final List<StackTraceElement[]> stackSamples;
+
+        SlowInvocation(String route, long timestamp, long durationNanos, List<StackTraceElement[]> stackSamples) {
+            this.route = route;
+            this.timestamp = timestamp;
+            this.durationNanos = durationNanos;
+            this.stackSamples = stackSamples;
+        }
+
+        JsonObject toJson() {
+            JsonArray stacks = new JsonArray();
+            for (StackTraceElement[] stack : stackSamples) {
+                JsonArray frames = new JsonArray();
+                for (int i = 0; i < Math.min(stack.length, MAX_STACK_DEPTH); i++) {
+                    frames.add(stack[i].toString());
+                }
+                stacks.add(frames);
+            }
+            return new JsonObject()
+                .put("route", route)
+                .put("timestamp", timestamp)
+                .put("durationMillis", toMillis(durationNanos))
+                .put("stackSamples", stacks);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.moneytransfer.reactive.enums;
+
+/**
+ * Formats of the account import and export: one account per line
+ */
+public enum BulkFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    BulkFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @param mediaType a content type, parameters such as the charset are ignored
+     * @return the format of the media type, null if it is not supported
+     */
+    public static BulkFormat of(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        final int parameters = mediaType.indexOf(';');
+        final String type = (parameters < 0 ? mediaType : mediaType.substring(0, parameters)).trim();
+        for (BulkFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(type)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.moneytransfer.reactive.enums;
+
+public enum HoldStatus {
+    OPEN,
+    CAPTURED,
+    RELEASED,
+    EXPIRED
+}
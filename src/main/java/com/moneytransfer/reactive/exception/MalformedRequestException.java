@@ -0,0 +1,15 @@
+package com.moneytransfer.reactive.exception;
+
+/**
+ * Thrown when a request body can not be parsed. It is part of the normal validation flow
+ * so the stack trace is not filled in, which keeps the rejection of bad requests cheap.
+ *
+ * @author Julian Vasa
+ */
+public class MalformedRequestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -4,8 +4,6 @@ import com.moneytransfer.reactive.enums.AccountOperation;
 import com.moneytransfer.reactive.model.Account;
 import io.vertx.ext.web.RoutingContext;
 
-import java.util.Map;
-
 public interface AccountsHandler {
     /**
      * Parse account number (id) before proceeding with any other endpoint which needs an id as a parameter
@@ -14,40 +12,54 @@ public interface AccountsHandler {
     void parseAccountNumber(RoutingContext routingContext);
 
     /**
-     * Get all accounts
+     * Get all accounts, 304 if the ledger did not change since the ETag of the client
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void getAllAccounts(RoutingContext routingContext);
+
+    /**
+     * Search accounts by currency, balance range and name prefix, sorted by balance (or by name with a name prefix) and paginated
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void searchAccounts(RoutingContext routingContext);
+
+    /**
+     * Import accounts from a CSV (text/csv) or NDJSON (application/x-ndjson) body streamed line by line,
+     * the rows which are invalid or already exist are reported and the others imported
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void importAccounts(RoutingContext routingContext);
+
+    /**
+     * Stream all the accounts as CSV or NDJSON (format query parameter, csv or ndjson, default ndjson)
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
-    void getAllAccounts(RoutingContext routingContext, Map<Integer, Account> accounts);
+    void exportAccounts(RoutingContext routingContext);
 
     /**
-     * Get account by Id
+     * Get account by Id, 304 if the account did not change since the ETag of the client
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
-    void getAccount(RoutingContext routingContext, Map<Integer, Account> accounts);
+    void getAccount(RoutingContext routingContext);
 
     /**
      * Add a new account
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
-    void newAccount(RoutingContext routingContext, Map<Integer, Account> accounts);
+    void newAccount(RoutingContext routingContext);
 
     /**
      * Delete an account
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
-    void deleteAccount(RoutingContext routingContext, Map<Integer, Account> accounts);
+    void deleteAccount(RoutingContext routingContext);
 
     /**
-     * Deposit or Withdraw
+     * Deposit or Withdraw, recorded in the transactions as a transfer from/to the external account
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
      * @param operation WITHDRAW or DEPOSIT
-     * @param accounts in-memory storage of accounts
      */
-    void accountOperation(RoutingContext routingContext, AccountOperation operation, Map<Integer, Account> accounts);
+    void accountOperation(RoutingContext routingContext, AccountOperation operation);
 
     /**
      * Send account details to the client as a HttpServerResponse
@@ -0,0 +1,35 @@
+package com.moneytransfer.reactive.handlers;
+
+import io.vertx.ext.web.RoutingContext;
+
+public interface AdminHandler {
+    /**
+     * Reconcile every account balance against the transactions and check that the total money is conserved
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void reconcile(RoutingContext routingContext);
+
+    /**
+     * Report the event loop lag and the slowest route handlers with the stack samples taken while they blocked the event loop
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void eventLoopReport(RoutingContext routingContext);
+
+    /**
+     * Report the size, hit rate and evictions of the account cache of the store
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void accountCacheReport(RoutingContext routingContext);
+
+    /**
+     * Report the time from the start of the JVM to the server listening, to the first response and to the steady state
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void startupReport(RoutingContext routingContext);
+
+    /**
+     * Report the sequences of the transfer ring buffer and the failures of its consumers
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void ringReport(RoutingContext routingContext);
+}
@@ -0,0 +1,35 @@
+package com.moneytransfer.reactive.handlers;
+
+import io.vertx.ext.web.RoutingContext;
+
+public interface HoldsHandler {
+    /**
+     * Reserve an amount on an account, it stays in the balance but is not available until the hold is closed
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void reserve(RoutingContext routingContext);
+
+    /**
+     * Get an open hold by Id
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void getHold(RoutingContext routingContext);
+
+    /**
+     * Capture a hold, all or part of its amount, as a transaction. The rest of the amount is released
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void capture(RoutingContext routingContext);
+
+    /**
+     * Release a hold, its amount is available again
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void release(RoutingContext routingContext);
+
+    /**
+     * Get the ledger balance, the held amount and the available balance of an account
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void getBalance(RoutingContext routingContext);
+}
@@ -0,0 +1,17 @@
+package com.moneytransfer.reactive.handlers;
+
+import io.vertx.ext.web.RoutingContext;
+
+public interface StatsHandler {
+    /**
+     * Get per currency the accounts, the money they hold and the transaction counts and volumes
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void getStats(RoutingContext routingContext);
+
+    /**
+     * Get the inflow and outflow of an account today and over the last days
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    void getAccountStats(RoutingContext routingContext);
+}
@@ -1,41 +1,33 @@
 package com.moneytransfer.reactive.handlers;
 
-import com.moneytransfer.reactive.model.Account;
 import com.moneytransfer.reactive.model.Transaction;
 import io.vertx.ext.web.RoutingContext;
 
-import java.util.Map;
-
 public interface TransactionsHandler {
     /**
-     * Get the transactions for a certain account (source or destination account)
+     * Get the transactions for a certain account (source or destination account), 304 if the account did not change
+     * since the ETag of the client
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
-     * @param transactions  in-memory storage of transactions
      */
-    void getTransactionOfAccount(RoutingContext routingContext, Map<Integer, Account> accounts, Map<Integer, Transaction> transactions);
+    void getTransactionOfAccount(RoutingContext routingContext);
 
     /**
      * Get transaction by Id
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param transactions  in-memory storage of transactions
      */
-    void getTransaction(RoutingContext routingContext, Map<Integer, Transaction> transactions);
+    void getTransaction(RoutingContext routingContext);
 
     /**
-     * Create a new transaction
+     * Create a new transaction, the transfer is published to the transfer ring buffer which sends the response
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
-     * @param transactions  in-memory storage of transactions
      */
-    void newTransaction(RoutingContext routingContext, Map<Integer, Account> accounts, Map<Integer, Transaction> transactions);
+    void newTransaction(RoutingContext routingContext);
 
     /**
-     * Get all transactions
+     * Get all transactions, 304 if the ledger did not change since the ETag of the client
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param transactions  in-memory storage of transactions
      */
-    void getAllTransactions(RoutingContext routingContext, Map<Integer, Transaction> transactions);
+    void getAllTransactions(RoutingContext routingContext);
 
     /**
      * Send transaction details to the client as a HttpServerResponse
@@ -1,19 +1,62 @@
 package com.moneytransfer.reactive.handlers.impl;
 
+import com.moneytransfer.reactive.bulk.AccountExport;
+import com.moneytransfer.reactive.bulk.AccountImport;
 import com.moneytransfer.reactive.enums.AccountOperation;
+import com.moneytransfer.reactive.enums.BulkFormat;
+import com.moneytransfer.reactive.enums.TransactionStatus;
 import com.moneytransfer.reactive.handlers.AccountsHandler;
+import com.moneytransfer.reactive.holds.HoldBook;
+import com.moneytransfer.reactive.limits.VelocityLimits;
 import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountPage;
+import com.moneytransfer.reactive.model.AccountQuery;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.parser.AccountRecordParser;
+import com.moneytransfer.reactive.ring.LedgerOperation;
+import com.moneytransfer.reactive.ring.TransferCommand;
+import com.moneytransfer.reactive.ring.TransferRingBuffer;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import com.moneytransfer.reactive.tracing.Span;
+import com.moneytransfer.reactive.tracing.Tracer;
+import io.vertx.core.Future;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.RoutingContext;
 
 import java.math.BigDecimal;
-import java.util.Map;
+import java.util.Currency;
 
 import static com.moneytransfer.reactive.exception.Exception.error;
 
 public class AccountsHandlerImpl implements AccountsHandler {
     private final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_OFFSET = 100_000;
+    private final Tracer tracer;
+    private final LedgerStore ledgerStore;
+    private final AccountStore accountStore;
+    private final TransactionStore transactionStore;
+    private final HoldBook holdBook;
+    private final VelocityLimits velocityLimits;
+    private final LedgerStats ledgerStats;
+    private final TransferRingBuffer transferRingBuffer;
+
+    public AccountsHandlerImpl(Tracer tracer, LedgerStore ledgerStore, HoldBook holdBook, VelocityLimits velocityLimits,
+                               LedgerStats ledgerStats, TransferRingBuffer transferRingBuffer) {
+        this.tracer = tracer;
+        this.ledgerStore = ledgerStore;
+        this.accountStore = ledgerStore.accounts();
+        this.transactionStore = ledgerStore.transactions();
+        this.holdBook = holdBook;
+        this.velocityLimits = velocityLimits;
+        this.ledgerStats = ledgerStats;
+        this.transferRingBuffer = transferRingBuffer;
+    }
 
     /**
      * Parse account number (id) before proceeding with any other endpoint which needs an id as a parameter
@@ -30,104 +73,345 @@ public class AccountsHandlerImpl implements AccountsHandler {
     }
 
     /**
-     * Get all accounts
+     * Get all accounts, 304 if the ledger did not change since the ETag of the client
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
     @Override
-    public void getAllAccounts(RoutingContext routingContext, Map<Integer, Account> accounts) {
-        routingContext.response()
-            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
-            .setStatusCode(200)
-            .end(Json.encodePrettily(accounts.values()));
+    public void getAllAccounts(RoutingContext routingContext) {
+        final String etag = ConditionalGet.ledgerTag(ledgerStore.version());
+        if (ConditionalGet.notModified(routingContext, etag)) {
+            return;
+        }
+        accountStore.getAll()
+            .onSuccess(accounts -> {
+                Span span = tracer.startSpan(routingContext, "account.encode");
+                final String body = Json.encodePrettily(accounts);
+                span.end();
+                routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .putHeader(HttpHeaders.ETAG, etag)
+                    .setStatusCode(200)
+                    .end(body);
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
-     * Get account by Id
+     * Search accounts by currency, balance range and name prefix, sorted by balance (or by name with a name prefix) and paginated
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
     @Override
-    public void getAccount(RoutingContext routingContext, Map<Integer, Account> accounts) {
-        final String id = routingContext.request().getParam("id");
-        final Integer accountNumber = Integer.valueOf(id);
-        Account account = accounts.get(accountNumber);
-        if (account == null) {
-            error(routingContext, 404, "Account Number not found in the DB: " + id);
+    public void searchAccounts(RoutingContext routingContext) {
+        final AccountQuery query;
+        try {
+            final String currency = routingContext.request().getParam("currency");
+            final String minBalance = routingContext.request().getParam("minBalance");
+            final String maxBalance = routingContext.request().getParam("maxBalance");
+            final String offset = routingContext.request().getParam("offset");
+            final String limit = routingContext.request().getParam("limit");
+            query = AccountQuery.builder()
+                .currency(currency == null ? null : Currency.getInstance(currency))
+                .minBalance(minBalance == null ? null : new BigDecimal(minBalance))
+                .maxBalance(maxBalance == null ? null : new BigDecimal(maxBalance))
+                .namePrefix(routingContext.request().getParam("namePrefix"))
+                .descending("desc".equalsIgnoreCase(routingContext.request().getParam("order")))
+                .offset(offset == null ? 0 : Integer.parseInt(offset))
+                .limit(limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit))
+                .build();
+        } catch (IllegalArgumentException exception) {
+            error(routingContext, 400, "Invalid search parameter: " + exception.getMessage());
+            return;
         }
-        else {
-            sendAccountResponse(routingContext, account, 200);
+        if (query.getOffset() < 0 || query.getOffset() > MAX_OFFSET || query.getLimit() < 1 || query.getLimit() > MAX_PAGE_SIZE) {
+            error(routingContext, 400, "Offset must be between 0 and " + MAX_OFFSET + " and limit between 1 and " + MAX_PAGE_SIZE);
+            return;
+        }
+
+        /* The ETag is per URL, the ledger version covers every query */
+        final String etag = ConditionalGet.ledgerTag(ledgerStore.version());
+        if (ConditionalGet.notModified(routingContext, etag)) {
+            return;
         }
+        final Span searchSpan = tracer.startSpan(routingContext, "account.search");
+        accountStore.search(query)
+            .onComplete(result -> searchSpan.end())
+            .onSuccess(found -> {
+                final boolean hasMore = found.size() > query.getLimit();
+                AccountPage page = new AccountPage(query.getOffset(), query.getLimit(), hasMore,
+                    hasMore ? found.subList(0, query.getLimit()) : found);
+
+                Span span = tracer.startSpan(routingContext, "account.encode");
+                final String body = Json.encodePrettily(page);
+                span.end();
+                routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .putHeader(HttpHeaders.ETAG, etag)
+                    .setStatusCode(200)
+                    .end(body);
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
-     * Add a new account
+     * Import accounts from a CSV (text/csv) or NDJSON (application/x-ndjson) body streamed line by line,
+     * the rows which are invalid or already exist are reported and the others imported
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void importAccounts(RoutingContext routingContext) {
+        final BulkFormat format = BulkFormat.of(routingContext.request().getHeader(HttpHeaders.CONTENT_TYPE));
+        if (format == null) {
+            error(routingContext, 415, "Accounts can be imported as " + BulkFormat.CSV.getContentType()
+                + " or " + BulkFormat.NDJSON.getContentType());
+            return;
+        }
+        AccountImport.start(routingContext, accountStore, ledgerStats, format);
+    }
+
+    /**
+     * Stream all the accounts as CSV or NDJSON (format query parameter, csv or ndjson, default ndjson)
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
     @Override
-    public void newAccount(RoutingContext routingContext, Map<Integer, Account> accounts) {
+    public void exportAccounts(RoutingContext routingContext) {
+        final String formatParam = routingContext.request().getParam("format");
+        final BulkFormat format;
         try {
-            final Account account = Json.decodeValue(routingContext.getBodyAsString(), Account.class);
+            format = formatParam == null ? BulkFormat.NDJSON : BulkFormat.valueOf(formatParam.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            error(routingContext, 400, "Invalid export format: " + formatParam);
+            return;
+        }
+        AccountExport.start(routingContext, accountStore, format);
+    }
 
-            if (accounts.containsKey(account.getId())) {
-                error(routingContext, 409, "Account number already exists in the DB!");
-            }
-            accounts.put(account.getId(), account);
-            sendAccountResponse(routingContext, account, 201);
+    /**
+     * Get account by Id, 304 if the account did not change since the ETag of the client
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void getAccount(RoutingContext routingContext) {
+        final String id = routingContext.request().getParam("id");
+        final int accountNumber = Integer.parseInt(id);
+        final Span span = tracer.startSpan(routingContext, "account.lookup");
+        accountStore.get(accountNumber)
+            .onComplete(result -> span.end())
+            .onSuccess(account -> {
+                if (account == null) {
+                    error(routingContext, 404, "Account Number not found in the DB: " + id);
+                    return;
+                }
+                final String etag = ConditionalGet.accountTag(account);
+                if (!ConditionalGet.notModified(routingContext, etag)) {
+                    routingContext.response().putHeader(HttpHeaders.ETAG, etag);
+                    sendAccountResponse(routingContext, account, 200);
+                }
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
+    }
+
+    /**
+     * Add a new account
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void newAccount(RoutingContext routingContext) {
+        Span span = tracer.startSpan(routingContext, "account.decode");
+        final Account account;
+        try {
+            account = Json.decodeValue(routingContext.getBodyAsString(), Account.class);
         } catch (RuntimeException exception) {
+            span.end();
             error(routingContext, 415, "Unable to parse Account JSON request body! Cause: " + exception.getCause());
+            return;
+        }
+        span.end();
+        final String idError = AccountRecordParser.idError(account.getId());
+        if (idError != null) {
+            error(routingContext, 400, "Invalid account number! Cause: " + idError);
+            return;
+        }
+        /* Like an imported account, a new account needs its balance and currency, the ledger aggregates count them */
+        if (account.getBalance() == null || account.getCurrency() == null) {
+            error(routingContext, 400, "Invalid account! Cause: " + (account.getBalance() == null ? "Missing balance" : "Missing currency"));
+            return;
+        }
+        final String nameError = AccountRecordParser.nameError(account.getName());
+        if (nameError != null) {
+            error(routingContext, 400, "Invalid account name! Cause: " + nameError);
+            return;
         }
+
+        final Span validateSpan = tracer.startSpan(routingContext, "account.validate");
+        accountStore.get(account.getId())
+            .compose(existing -> {
+                validateSpan.end();
+                if (existing != null) {
+                    return Future.succeededFuture(false);
+                }
+                final Span mutateSpan = tracer.startSpan(routingContext, "account.mutate");
+                account.setOpeningBalance(account.getBalance());
+                return accountStore.insert(account).onComplete(result -> mutateSpan.end());
+            })
+            .onSuccess(inserted -> {
+                if (inserted) {
+                    ledgerStats.accountOpened(account);
+                    sendAccountResponse(routingContext, account, 201);
+                }
+                else {
+                    error(routingContext, 409, "Account number already exists in the DB!");
+                }
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
      * Delete an account
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
      */
     @Override
-    public void deleteAccount(RoutingContext routingContext, Map<Integer, Account> accounts) {
+    public void deleteAccount(RoutingContext routingContext) {
         String id = routingContext.request().getParam("id");
-        if (accounts.get(Integer.valueOf(id)) == null) {
-            error(routingContext, 404, "Account Number not found in the DB: " + id);
-        }
-        else {
-            Integer accountNumber = Integer.valueOf(id);
-            accounts.remove(accountNumber);
-            error(routingContext, 204, "Account deleted: " + accountNumber);
+        final int accountNumber = Integer.parseInt(id);
+        /* The held amounts would never be captured nor released */
+        if (holdBook.held(accountNumber).signum() != 0) {
+            error(routingContext, 409, "Account has open holds: " + accountNumber);
+            return;
         }
+        accountStore.get(accountNumber)
+            .compose(account -> {
+                if (account == null) {
+                    return Future.succeededFuture(false);
+                }
+                return accountStore.delete(accountNumber).onSuccess(deleted -> {
+                    if (deleted) {
+                        ledgerStats.accountClosed(account);
+                        velocityLimits.accountDeleted(accountNumber);
+                    }
+                });
+            })
+            .onSuccess(deleted -> {
+                if (deleted) {
+                    error(routingContext, 204, "Account deleted: " + accountNumber);
+                }
+                else {
+                    error(routingContext, 404, "Account Number not found in the DB: " + id);
+                }
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
-     * Deposit or Withdraw
+     * Deposit or Withdraw, recorded in the transactions as a transfer from/to the external account.
+     * Published to the transfer ring buffer, the transfer processor applies it in order with the transfers
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
      * @param operation WITHDRAW or DEPOSIT
-     * @param accounts in-memory storage of accounts
      */
     @Override
-    public void accountOperation(RoutingContext routingContext, AccountOperation operation, Map<Integer, Account> accounts) {
-        final String id = routingContext.pathParam("id");
-        final String amountParam = routingContext.pathParam("amount");
-        final Integer accountNumber = Integer.valueOf(id);
-        final BigDecimal amount = BigDecimal.valueOf(Long.parseLong(amountParam));
-
-        if (accounts.get(accountNumber) == null) {
-            error(routingContext, 404, "Account Number not found in the DB: " + id);
-        }
-        else {
-            Account account = accounts.get(accountNumber);
-            if (operation.equals(AccountOperation.DEPOSIT)) {
-                account.deposit(amount);
-                sendAccountResponse(routingContext, account, 200);
+    public void accountOperation(RoutingContext routingContext, AccountOperation operation) {
+        final int accountNumber = Integer.parseInt(routingContext.pathParam("id"));
+        final BigDecimal amount = BigDecimal.valueOf(Long.parseLong(routingContext.pathParam("amount")));
+        if (!transferRingBuffer.publish(routingContext, new CashOperation(operation, accountNumber, amount))) {
+            error(routingContext, 503, transferRingBuffer.claimFailure());
+        }
+    }
+
+    /* Deposit or withdrawal applied by the transfer processor at its turn in the ring */
+    private class CashOperation implements LedgerOperation {
+        private final AccountOperation operation;
+        private final int accountNumber;
+        private final BigDecimal amount;
+        /* The account is encoded once applied, the next commands of the batch may change it before the response */
+        private String body;
+
+        CashOperation(AccountOperation operation, int accountNumber, BigDecimal amount) {
+            this.operation = operation;
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+        }
+
+        @Override
+        public Future<Void> apply(TransferCommand command) {
+            final Span lookupSpan = tracer.startSpan(command.getRoutingContext(), "account.lookup");
+            return accountStore.get(accountNumber)
+                .onComplete(lookup -> {
+                    lookupSpan.end();
+                    if (lookup.failed()) {
+                        reject(command, 500, "Unable to access the accounts! Cause: " + lookup.cause().getMessage());
+                        return;
+                    }
+                    try {
+                        apply(command, lookup.result());
+                    } catch (RuntimeException exception) {
+                        reject(command, 500, "Unable to access the accounts! Cause: " + exception.getMessage());
+                    }
+                })
+                .<Void>mapEmpty()
+                .otherwiseEmpty();
+        }
+
+        private void apply(TransferCommand command, Account account) {
+            if (account == null) {
+                reject(command, 404, "Account Number not found in the DB: " + accountNumber);
+                return;
             }
-            else if (operation.equals(AccountOperation.WITHDRAW)) {
-                if (account.getBalance().compareTo(amount) < 0) {
-                    error(routingContext, 403, "Account balance < amount: s" + amount);
+            if (operation == AccountOperation.WITHDRAW) {
+                final Span span = tracer.startSpan(command.getRoutingContext(), "account.validate");
+                final boolean sufficientFunds = holdBook.available(account).compareTo(amount) >= 0;
+                span.end();
+                if (!sufficientFunds) {
+                    reject(command, 403, "Account balance < amount: s" + amount);
+                    return;
                 }
+            }
+            final Span span = tracer.startSpan(command.getRoutingContext(), "account.mutate");
+            if (operation == AccountOperation.DEPOSIT) {
+                account.deposit(amount);
+                recordOperation(command, Account.EXTERNAL_ACCOUNT, accountNumber, amount, account, "Deposit");
+            }
+            else {
                 account.withdraw(amount);
-                sendAccountResponse(routingContext, account, 200);
+                recordOperation(command, accountNumber, Account.EXTERNAL_ACCOUNT, amount, account, "Withdraw");
             }
+            span.end();
+            final Span encodeSpan = tracer.startSpan(command.getRoutingContext(), "account.encode");
+            body = Json.encodePrettily(account);
+            encodeSpan.end();
         }
+
+        @Override
+        public void respond(RoutingContext routingContext, TransferCommand command) {
+            command.getRecorded()
+                .onSuccess(v -> routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .setStatusCode(200)
+                    .end(body))
+                .onFailure(cause -> storeFailure(routingContext, cause));
+        }
+    }
+
+    private static void reject(TransferCommand command, int statusCode, String error) {
+        command.setStatusCode(statusCode);
+        command.setError(error);
+    }
+
+    /* Keep deposits and withdrawals in the transactions so balances can be reconciled against them,
+       the stats count them once the store confirms the record */
+    private void recordOperation(TransferCommand command, int fromAccount, int toAccount, BigDecimal amount,
+                                 Account account, String description) {
+        Transaction transaction = new Transaction(fromAccount, toAccount, amount, account.getCurrency());
+        transaction.setDescription(description);
+        transaction.setStatus(TransactionStatus.SUCCESSFUL);
+        command.setStatusCode(200);
+        command.setTransaction(transaction);
+        command.setRecorded(transactionStore.record(transaction)
+            .onSuccess(v -> ledgerStats.transferred(fromAccount == Account.EXTERNAL_ACCOUNT ? null : account,
+                toAccount == Account.EXTERNAL_ACCOUNT ? null : account, amount, account.getCurrency(),
+                System.currentTimeMillis())));
+    }
+
+    private void storeFailure(RoutingContext routingContext, Throwable cause) {
+        error(routingContext, 500, "Unable to access the accounts! Cause: " + cause.getMessage());
     }
 
     /**
@@ -138,10 +422,13 @@ public class AccountsHandlerImpl implements AccountsHandler {
      */
     @Override
     public void sendAccountResponse(RoutingContext routingContext, Account account, int statusCode) {
+        Span span = tracer.startSpan(routingContext, "account.encode");
+        final String body = Json.encodePrettily(account);
+        span.end();
         routingContext.response()
             .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
             .setStatusCode(statusCode)
-            .end(Json.encodePrettily(account));
+            .end(body);
     }
 
 }
@@ -0,0 +1,108 @@
+package com.moneytransfer.reactive.handlers.impl;
+
+import com.moneytransfer.reactive.audit.Reconciler;
+import com.moneytransfer.reactive.diagnostics.EventLoopMonitor;
+import com.moneytransfer.reactive.handlers.AdminHandler;
+import com.moneytransfer.reactive.model.CacheStats;
+import com.moneytransfer.reactive.ring.TransferRingBuffer;
+import com.moneytransfer.reactive.startup.StartupReport;
+import com.moneytransfer.reactive.store.LedgerStore;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+public class AdminHandlerImpl implements AdminHandler {
+    private final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final Reconciler reconciler = new Reconciler(pool);
+    private final EventLoopMonitor monitor;
+    private final LedgerStore ledgerStore;
+    private final StartupReport startupReport;
+    private final TransferRingBuffer transferRingBuffer;
+
+    public AdminHandlerImpl(EventLoopMonitor monitor, LedgerStore ledgerStore, StartupReport startupReport,
+                            TransferRingBuffer transferRingBuffer) {
+        this.monitor = monitor;
+        this.ledgerStore = ledgerStore;
+        this.startupReport = startupReport;
+        this.transferRingBuffer = transferRingBuffer;
+    }
+
+    /**
+     * Reconcile every account balance against the transactions and check that the total money is conserved.
+     * The snapshot is taken by the store, the scan runs on the fork-join pool so live traffic is not stopped.
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void reconcile(RoutingContext routingContext) {
+        ledgerStore.snapshot()
+            .compose(snapshot -> Future.fromCompletionStage(
+                CompletableFuture.supplyAsync(() -> reconciler.reconcile(snapshot), pool), routingContext.vertx().getOrCreateContext()))
+            .onSuccess(report -> routingContext.response()
+                .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                .setStatusCode(200)
+                .end(Json.encodePrettily(report)))
+            .onFailure(cause -> error(routingContext, 500, "Reconciliation failed! Cause: " + cause.getMessage()));
+    }
+
+    /**
+     * Report the event loop lag and the slowest route handlers with the stack samples taken while they blocked the event loop
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void eventLoopReport(RoutingContext routingContext) {
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(monitor.report().encodePrettily());
+    }
+
+    /**
+     * Report the size, hit rate and evictions of the account cache of the store, 404 when the store keeps every account in memory
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void accountCacheReport(RoutingContext routingContext) {
+        final CacheStats stats = ledgerStore.cacheStats();
+        if (stats == null) {
+            error(routingContext, 404, "The store has no account cache!");
+            return;
+        }
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(Json.encodePrettily(stats));
+    }
+
+    /**
+     * Report the time from the start of the JVM to the server listening, to the first response and to the steady state,
+     * the times not reached yet are null
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void startupReport(RoutingContext routingContext) {
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(startupReport.report().encodePrettily());
+    }
+
+    /**
+     * Report the sequences of the transfer ring buffer and the failures of its consumers,
+     * haltCause is set once a failure of the journal stopped the transfers
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void ringReport(RoutingContext routingContext) {
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(transferRingBuffer.report().encodePrettily());
+    }
+}
@@ -0,0 +1,79 @@
+package com.moneytransfer.reactive.handlers.impl;
+
+import com.moneytransfer.reactive.model.Account;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Conditional GET with ETags built from the versions of the accounts and of the ledger.
+ * The If-None-Match header is checked before anything is read or encoded, an unchanged resource costs a 304 only.
+ *
+ * @author Julian Vasa
+ */
+final class ConditionalGet {
+    /*
+     * Start time of the server in base 36, part of the account ETags: an account loaded from a ledger image or
+     * inserted again after a restart may get back a version it had before with another balance
+     */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * @param account the account
+     * @return the ETag of the account, it changes with every change of the balance and at every start
+     */
+    static String accountTag(Account account) {
+        return "\"a" + account.getId() + "-" + EPOCH + "-" + account.getVersion() + "\"";
+    }
+
+    /**
+     * @param account the account
+     * @return the ETag of the transactions of the account, every transaction of the account changes its version,
+     *         it also changes at every start
+     */
+    static String accountTransactionsTag(Account account) {
+        return "\"t" + account.getId() + "-" + EPOCH + "-" + account.getVersion() + "\"";
+    }
+
+    /**
+     * @param version the ledger version
+     * @return the ETag of the listings, it changes with every write of the ledger
+     */
+    static String ledgerTag(long version) {
+        return "\"l" + version + "\"";
+    }
+
+    /**
+     * Answer with 304 if the client already has this version of the resource
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     * @param etag the current ETag of the resource
+     * @return true if the 304 response was sent, otherwise the ETag header must be added to the response
+     */
+    static boolean notModified(RoutingContext routingContext, String etag) {
+        final String ifNoneMatch = routingContext.request().getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        routingContext.response()
+            .putHeader(HttpHeaders.ETAG, etag)
+            .setStatusCode(304)
+            .end();
+        return true;
+    }
+
+    /* Weak comparison as required for If-None-Match: a W/ prefix is ignored */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,316 @@
+package com.moneytransfer.reactive.handlers.impl;
+
+import com.moneytransfer.reactive.enums.HoldStatus;
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.handlers.HoldsHandler;
+import com.moneytransfer.reactive.holds.HoldBook;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountBalance;
+import com.moneytransfer.reactive.model.Hold;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.ring.LedgerOperation;
+import com.moneytransfer.reactive.ring.TransferCommand;
+import com.moneytransfer.reactive.ring.TransferRingBuffer;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import com.moneytransfer.reactive.tracing.Span;
+import com.moneytransfer.reactive.tracing.Tracer;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+public class HoldsHandlerImpl implements HoldsHandler {
+    private final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private final Tracer tracer;
+    private final AccountStore accountStore;
+    private final TransactionStore transactionStore;
+    private final HoldBook holdBook;
+    private final LedgerStats ledgerStats;
+    private final TransferRingBuffer transferRingBuffer;
+
+    public HoldsHandlerImpl(Tracer tracer, LedgerStore ledgerStore, HoldBook holdBook, LedgerStats ledgerStats,
+                            TransferRingBuffer transferRingBuffer) {
+        this.tracer = tracer;
+        this.accountStore = ledgerStore.accounts();
+        this.transactionStore = ledgerStore.transactions();
+        this.holdBook = holdBook;
+        this.ledgerStats = ledgerStats;
+        this.transferRingBuffer = transferRingBuffer;
+    }
+
+    /**
+     * Reserve an amount on an account, it stays in the balance but is not available until the hold is closed.
+     * Body: amount, toAccount (credited by the capture, optional), expiresInSeconds (optional) and description (optional)
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void reserve(RoutingContext routingContext) {
+        final int accountNumber;
+        final int toAccount;
+        final BigDecimal amount;
+        final long ttlMillis;
+        final String description;
+        try {
+            accountNumber = Integer.parseInt(routingContext.pathParam("id"));
+            final JsonObject body = routingContext.body().asJsonObject();
+            amount = new BigDecimal(String.valueOf(body.getValue("amount")));
+            toAccount = body.getInteger("toAccount", Account.EXTERNAL_ACCOUNT);
+            ttlMillis = TimeUnit.SECONDS.toMillis(body.getLong("expiresInSeconds", 0L));
+            description = body.getString("description", "");
+        } catch (RuntimeException exception) {
+            error(routingContext, 400, "Unable to parse the hold request! Cause: " + exception.getMessage());
+            return;
+        }
+        if (amount.signum() <= 0) {
+            error(routingContext, 409, "Incorrect hold amount!");
+            return;
+        }
+        /* Recorded as the description of the transaction of the capture */
+        if (description != null && description.length() > Transaction.MAX_DESCRIPTION_LENGTH) {
+            error(routingContext, 400, "Hold description longer than " + Transaction.MAX_DESCRIPTION_LENGTH + " characters!");
+            return;
+        }
+
+        final Span lookupSpan = tracer.startSpan(routingContext, "hold.lookup");
+        Future.all(accountStore.get(accountNumber),
+            toAccount == Account.EXTERNAL_ACCOUNT ? Future.succeededFuture() : accountStore.get(toAccount))
+            .onComplete(result -> lookupSpan.end())
+            .onSuccess(accounts -> {
+                final Account account = accounts.resultAt(0);
+                if (account == null) {
+                    error(routingContext, 404, "Account Number not found in the DB: " + accountNumber);
+                    return;
+                }
+                if (toAccount != Account.EXTERNAL_ACCOUNT && accounts.resultAt(1) == null) {
+                    error(routingContext, 404, "Destination Account does not exist!");
+                    return;
+                }
+                final Hold hold;
+                try {
+                    hold = holdBook.reserve(account, toAccount, amount, ttlMillis, description, System.currentTimeMillis());
+                } catch (IllegalArgumentException exception) {
+                    error(routingContext, 400, exception.getMessage());
+                    return;
+                }
+                if (hold == null) {
+                    error(routingContext, 409, "Insufficient available funds! Unable to reserve the amount!");
+                    return;
+                }
+                sendHoldResponse(routingContext, hold, 201);
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
+    }
+
+    /**
+     * Get an open hold by Id
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void getHold(RoutingContext routingContext) {
+        final Hold hold = openHold(routingContext);
+        if (hold != null) {
+            sendHoldResponse(routingContext, hold, 200);
+        }
+    }
+
+    /**
+     * Capture a hold, all or part of its amount (optional amount in the body), as a transaction from the account
+     * of the hold to its destination account. The rest of the amount is released. Published to the transfer ring buffer,
+     * the transfer processor applies it in order with the transfers
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void capture(RoutingContext routingContext) {
+        final Hold hold = openHold(routingContext);
+        if (hold == null) {
+            return;
+        }
+        final BigDecimal amount;
+        try {
+            final String body = routingContext.body().asString();
+            final Object requested = body == null || body.trim().isEmpty() ? null : new JsonObject(body).getValue("amount");
+            amount = requested == null ? hold.getAmount() : new BigDecimal(String.valueOf(requested));
+        } catch (RuntimeException exception) {
+            error(routingContext, 400, "Unable to parse the capture request! Cause: " + exception.getMessage());
+            return;
+        }
+        if (amount.signum() <= 0 || amount.compareTo(hold.getAmount()) > 0) {
+            error(routingContext, 409, "The captured amount must be positive and at most the held amount!");
+            return;
+        }
+
+        if (!transferRingBuffer.publish(routingContext, new Capture(hold, amount))) {
+            error(routingContext, 503, transferRingBuffer.claimFailure());
+        }
+    }
+
+    /* Capture of a hold applied by the transfer processor at its turn in the ring */
+    private class Capture implements LedgerOperation {
+        private final Hold hold;
+        private final BigDecimal amount;
+        /* Encoded once applied, the transaction does not change once recorded */
+        private String body;
+
+        Capture(Hold hold, BigDecimal amount) {
+            this.hold = hold;
+            this.amount = amount;
+        }
+
+        @Override
+        public Future<Void> apply(TransferCommand command) {
+            final Span lookupSpan = tracer.startSpan(command.getRoutingContext(), "hold.lookup");
+            final Future<Account> account = accountStore.get(hold.getAccountId());
+            final Future<Account> toAccount = hold.getToAccount() == Account.EXTERNAL_ACCOUNT
+                ? Future.succeededFuture() : accountStore.get(hold.getToAccount());
+            return Future.all(account, toAccount)
+                .onComplete(lookup -> {
+                    lookupSpan.end();
+                    if (lookup.failed()) {
+                        reject(command, 500, "Unable to access the accounts! Cause: " + lookup.cause().getMessage());
+                        return;
+                    }
+                    try {
+                        apply(command, account.result(), toAccount.result());
+                    } catch (RuntimeException exception) {
+                        reject(command, 500, "Unable to access the accounts! Cause: " + exception.getMessage());
+                    }
+                })
+                .<Void>mapEmpty()
+                .otherwiseEmpty();
+        }
+
+        private void apply(TransferCommand command, Account account, Account toAccount) {
+            if (account == null || (hold.getToAccount() != Account.EXTERNAL_ACCOUNT && toAccount == null)) {
+                reject(command, 404, "Account of the hold does not exist anymore!");
+                return;
+            }
+            /* The hold may have expired or been closed while the capture waited in the ring */
+            if (!holdBook.close(hold, HoldStatus.CAPTURED)) {
+                reject(command, 409, "Hold is not open anymore: " + hold.getId());
+                return;
+            }
+            Span span = tracer.startSpan(command.getRoutingContext(), "hold.mutate");
+            account.withdraw(amount);
+            if (toAccount != null) {
+                toAccount.deposit(amount);
+            }
+            final Transaction transaction = new Transaction(hold.getAccountId(), hold.getToAccount(), amount, hold.getCurrency());
+            transaction.setDescription(hold.getDescription() == null || hold.getDescription().isEmpty()
+                ? "Capture of hold " + hold.getId() : hold.getDescription());
+            transaction.setStatus(TransactionStatus.SUCCESSFUL);
+            hold.setTransactionId(transaction.getId());
+            command.setStatusCode(201);
+            command.setTransaction(transaction);
+            /* The store undoes the balances of a capture it could not record, the hold is open again and can be captured again */
+            command.setRecorded(transactionStore.record(transaction)
+                .onSuccess(v -> ledgerStats.transferred(account, toAccount, amount, hold.getCurrency(),
+                    System.currentTimeMillis()))
+                .onFailure(cause -> holdBook.reopen(hold)));
+            span.end();
+            body = Json.encodePrettily(transaction);
+        }
+
+        @Override
+        public void respond(RoutingContext routingContext, TransferCommand command) {
+            command.getRecorded()
+                .onSuccess(v -> routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .setStatusCode(201)
+                    .end(body))
+                .onFailure(cause -> storeFailure(routingContext, cause));
+        }
+    }
+
+    private static void reject(TransferCommand command, int statusCode, String error) {
+        command.setStatusCode(statusCode);
+        command.setError(error);
+    }
+
+    /**
+     * Release a hold, its amount is available again
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void release(RoutingContext routingContext) {
+        final Hold hold = openHold(routingContext);
+        if (hold != null) {
+            holdBook.close(hold, HoldStatus.RELEASED);
+            sendHoldResponse(routingContext, hold, 200);
+        }
+    }
+
+    /**
+     * Get the ledger balance, the held amount and the available balance of an account
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void getBalance(RoutingContext routingContext) {
+        final String id = routingContext.pathParam("id");
+        final int accountNumber;
+        try {
+            accountNumber = Integer.parseInt(id);
+        } catch (NumberFormatException exception) {
+            error(routingContext, 400, "Invalid Account Number: " + id);
+            return;
+        }
+        accountStore.get(accountNumber)
+            .onSuccess(account -> {
+                if (account == null) {
+                    error(routingContext, 404, "Account Number not found in the DB: " + id);
+                    return;
+                }
+                final AccountBalance balance = new AccountBalance(account.getId(), account.getBalance(),
+                    holdBook.held(account.getId()), holdBook.available(account), account.getCurrency());
+                routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .setStatusCode(200)
+                    .end(Json.encodePrettily(balance));
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
+    }
+
+    /* The open hold of the holdId path parameter, a capture racing its expiration sees it expired */
+    private Hold openHold(RoutingContext routingContext) {
+        final String id = routingContext.pathParam("holdId");
+        final Hold hold;
+        try {
+            hold = holdBook.get(Long.parseLong(id));
+        } catch (NumberFormatException exception) {
+            error(routingContext, 400, "Invalid Hold Id: " + id);
+            return null;
+        }
+        if (hold == null) {
+            error(routingContext, 404, "No open hold with Id: " + id);
+            return null;
+        }
+        if (hold.getExpiresAt() <= System.currentTimeMillis()) {
+            holdBook.close(hold, HoldStatus.EXPIRED);
+            error(routingContext, 410, "Hold expired: " + id);
+            return null;
+        }
+        return hold;
+    }
+
+    private void sendHoldResponse(RoutingContext routingContext, Hold hold, int statusCode) {
+        Span span = tracer.startSpan(routingContext, "hold.encode");
+        final String body = Json.encodePrettily(hold);
+        span.end();
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(statusCode)
+            .end(body);
+    }
+
+    private void storeFailure(RoutingContext routingContext, Throwable cause) {
+        error(routingContext, 500, "Unable to access the accounts! Cause: " + cause.getMessage());
+    }
+}
@@ -0,0 +1,65 @@
+package com.moneytransfer.reactive.handlers.impl;
+
+import com.moneytransfer.reactive.handlers.StatsHandler;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+public class StatsHandlerImpl implements StatsHandler {
+    private final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private final AccountStore accountStore;
+    private final LedgerStats ledgerStats;
+
+    public StatsHandlerImpl(LedgerStore ledgerStore, LedgerStats ledgerStats) {
+        this.accountStore = ledgerStore.accounts();
+        this.ledgerStats = ledgerStats;
+    }
+
+    /**
+     * Get per currency the accounts, the money they hold and the transaction counts and volumes,
+     * read from the aggregates without going through the ledger
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void getStats(RoutingContext routingContext) {
+        sendStats(routingContext, ledgerStats.report(System.currentTimeMillis()));
+    }
+
+    /**
+     * Get the inflow and outflow of an account today and over the last days
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    @Override
+    public void getAccountStats(RoutingContext routingContext) {
+        final String id = routingContext.pathParam("id");
+        final int accountNumber;
+        try {
+            accountNumber = Integer.parseInt(id);
+        } catch (NumberFormatException exception) {
+            error(routingContext, 400, "Invalid Account Number: " + id);
+            return;
+        }
+        accountStore.get(accountNumber)
+            .onSuccess(account -> {
+                if (account == null) {
+                    error(routingContext, 404, "Account Number not found in the DB: " + id);
+                    return;
+                }
+                sendStats(routingContext, ledgerStats.accountReport(accountNumber, System.currentTimeMillis())
+                    .put("currency", account.getCurrency() == null ? null : account.getCurrency().getCurrencyCode()));
+            })
+            .onFailure(cause -> error(routingContext, 500, "Unable to access the accounts! Cause: " + cause.getMessage()));
+    }
+
+    private void sendStats(RoutingContext routingContext, JsonObject stats) {
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+            .setStatusCode(200)
+            .end(stats.encodePrettily());
+    }
+}
@@ -1,127 +1,154 @@
 package com.moneytransfer.reactive.handlers.impl;
 
-import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.exception.MalformedRequestException;
 import com.moneytransfer.reactive.handlers.TransactionsHandler;
-import com.moneytransfer.reactive.model.Account;
 import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.parser.TransferRequestParser;
+import com.moneytransfer.reactive.ring.TransferCommand;
+import com.moneytransfer.reactive.ring.TransferRingBuffer;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import com.moneytransfer.reactive.tracing.Span;
+import com.moneytransfer.reactive.tracing.Tracer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.RoutingContext;
 
-import java.math.BigDecimal;
-import java.util.List;
-import java.util.Map;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-
 import static com.moneytransfer.reactive.exception.Exception.error;
 
 public class TransactionsHandlerImpl implements TransactionsHandler {
     private final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private final TransferRequestParser transferRequestParser = new TransferRequestParser();
+    private final Tracer tracer;
+    private final LedgerStore ledgerStore;
+    private final AccountStore accountStore;
+    private final TransactionStore transactionStore;
+    private TransferRingBuffer transferRingBuffer;
+
+    public TransactionsHandlerImpl(Tracer tracer, LedgerStore ledgerStore) {
+        this.tracer = tracer;
+        this.ledgerStore = ledgerStore;
+        this.accountStore = ledgerStore.accounts();
+        this.transactionStore = ledgerStore.transactions();
+    }
+
+    /**
+     * @param transferRingBuffer ring buffer the new transfers are published to, it dispatches its responses to this handler
+     */
+    public void setTransferRingBuffer(TransferRingBuffer transferRingBuffer) {
+        this.transferRingBuffer = transferRingBuffer;
+    }
 
     /**
-     * Get the transactions for a certain account (source or destination account)
+     * Get the transactions for a certain account (source or destination account), 304 if the account did not change
+     * since the ETag of the client: every transaction of the account changed its balance and so its version
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
-     * @param transactions  in-memory storage of transactions
      */
     @Override
-    public void getTransactionOfAccount(RoutingContext routingContext, Map<Integer, Account> accounts, Map<Integer, Transaction> transactions) {
+    public void getTransactionOfAccount(RoutingContext routingContext) {
         final String id = routingContext.request().getParam("id");
         final int accountNumber = Integer.parseInt(id);
-        Account fromAccount = accounts.get(accountNumber);
-        if (fromAccount == null) {
-            error(routingContext, 404, "Source Account does not exist!");
-        }
-        else {
-            Predicate<Transaction> isSourceAccount = e -> e.getFromAccount() == accountNumber;
-            Predicate<Transaction> isDestinationAccount = e -> e.getToAccount() == accountNumber;
-
-            List<Transaction> transactionList = transactions
-                .values()
-                .stream()
-                .filter(isSourceAccount.or(isDestinationAccount))
-                .collect(Collectors.toUnmodifiableList());
-
-            routingContext.response()
-                .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
-                .setStatusCode(200)
-                .end(Json.encodePrettily(transactionList));
-        }
+        accountStore.get(accountNumber)
+            .onSuccess(account -> {
+                if (account == null) {
+                    error(routingContext, 404, "Source Account does not exist!");
+                    return;
+                }
+                final String etag = ConditionalGet.accountTransactionsTag(account);
+                if (ConditionalGet.notModified(routingContext, etag)) {
+                    return;
+                }
+                transactionStore.getByAccount(accountNumber)
+                    .onSuccess(transactionList -> {
+                        Span span = tracer.startSpan(routingContext, "transaction.encode");
+                        final String body = Json.encodePrettily(transactionList);
+                        span.end();
+                        routingContext.response()
+                            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                            .putHeader(HttpHeaders.ETAG, etag)
+                            .setStatusCode(200)
+                            .end(body);
+                    })
+                    .onFailure(cause -> storeFailure(routingContext, cause));
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
      * Get transaction by Id
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param transactions  in-memory storage of transactions
      */
     @Override
-    public void getTransaction(RoutingContext routingContext, Map<Integer, Transaction> transactions) {
+    public void getTransaction(RoutingContext routingContext) {
         final String id = routingContext.request().getParam("id");
-        final Integer transactionId = Integer.valueOf(id);
-        Transaction transaction = transactions.get(transactionId);
-        if (transaction == null) {
-            error(routingContext, 404, "Transaction not found in the DB: " + id);
-        }
-        else {
-            sendTransactionResponse(routingContext, transaction, 200);
-        }
+        final long transactionId = Long.parseLong(id);
+        transactionStore.get(transactionId)
+            .onSuccess(transaction -> {
+                if (transaction == null) {
+                    error(routingContext, 404, "Transaction not found in the DB: " + id);
+                }
+                else {
+                    sendTransactionResponse(routingContext, transaction, 200);
+                }
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
-     * Create a new transaction
+     * Create a new transaction, the request body is parsed straight into a slot of the transfer ring buffer
+     * and published, the transfer processor applies it and the response dispatcher sends the response
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param accounts in-memory storage of accounts
-     * @param transactions  in-memory storage of transactions
      */
     @Override
-    public void newTransaction(RoutingContext routingContext, Map<Integer, Account> accounts, Map<Integer, Transaction> transactions) {
+    public void newTransaction(RoutingContext routingContext) {
+        final long sequence = transferRingBuffer.tryClaim();
+        if (sequence < 0) {
+            error(routingContext, 503, transferRingBuffer.claimFailure());
+            return;
+        }
+        final TransferCommand command = transferRingBuffer.get(sequence);
+        Span span = tracer.startSpan(routingContext, "transfer.decode");
         try {
-            final Transaction transaction = Json.decodeValue(routingContext.getBodyAsString(), Transaction.class);
-            if (transactions.containsKey(transaction.getId())) {
-                error(routingContext, 409, "Transaction already exists in the DB!");
-            }
-
-            Account fromAccount = accounts.get(transaction.getFromAccount());
-            if (fromAccount == null) {
-                error(routingContext, 404, "Source Account does not exist!");
-            }
-            Account toAccount = accounts.get(transaction.getToAccount());
-            if (toAccount == null) {
-                error(routingContext, 404, "Destination Account does not exist!");
-            }
-            BigDecimal amount = transaction.getAmount();
-            if (amount == null || amount.compareTo(BigDecimal.ZERO) < 0) {
-                error(routingContext, 409, "Incorrenct transaction amount!");
-            }
-
-            if (fromAccount != null && toAccount != null && amount!=null && amount.compareTo(BigDecimal.ZERO) > 0) {
-                if (fromAccount.getBalance().compareTo(amount) < 0) {
-                    error(routingContext, 409, "Insufficient funds! Unable to process the transfer!");
-                }
-
-                fromAccount.withdraw(amount);
-                toAccount.deposit(amount);
-                transaction.setStatus(TransactionStatus.SUCCESSFUL);
-                transactions.put(transaction.getId(), transaction);
-                sendTransactionResponse(routingContext, transaction, 201);
-            }
-        } catch (RuntimeException exception) {
-            error(routingContext, 415, "Unable to parse Transaction JSON request body! Cause: " + exception.getCause());
+            transferRequestParser.parse(routingContext.body().buffer(), command.getRequest());
+        } catch (MalformedRequestException exception) {
+            /* The slot is not published, the next request claims it again */
+            span.end();
+            error(routingContext, 415, "Unable to parse Transaction JSON request body! Cause: " + exception.getMessage());
+            return;
+        }
+        span.end();
+        if (command.getRequest().getDescription().length() > Transaction.MAX_DESCRIPTION_LENGTH) {
+            error(routingContext, 400, "Transaction description longer than " + Transaction.MAX_DESCRIPTION_LENGTH + " characters!");
+            return;
         }
+        command.setRoutingContext(routingContext);
+        command.setOperation(null);
+        transferRingBuffer.publish(sequence);
     }
 
     /**
-     * Get all transactions
+     * Get all transactions, 304 if the ledger did not change since the ETag of the client
      * @param routingContext Represents the context for the handling of a request in Vert.x-Web
-     * @param transactions  in-memory storage of transactions
      */
     @Override
-    public void getAllTransactions(RoutingContext routingContext, Map<Integer, Transaction> transactions) {
-        routingContext.response()
-            .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
-            .setStatusCode(200)
-            .end(Json.encodePrettily(transactions.values()));
+    public void getAllTransactions(RoutingContext routingContext) {
+        final String etag = ConditionalGet.ledgerTag(ledgerStore.version());
+        if (ConditionalGet.notModified(routingContext, etag)) {
+            return;
+        }
+        transactionStore.getAll()
+            .onSuccess(transactions -> {
+                Span span = tracer.startSpan(routingContext, "transaction.encode");
+                final String body = Json.encodePrettily(transactions);
+                span.end();
+                routingContext.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
+                    .putHeader(HttpHeaders.ETAG, etag)
+                    .setStatusCode(200)
+                    .end(body);
+            })
+            .onFailure(cause -> storeFailure(routingContext, cause));
     }
 
     /**
@@ -132,10 +159,16 @@ public class TransactionsHandlerImpl implements TransactionsHandler {
      */
     @Override
     public void sendTransactionResponse(RoutingContext routingContext, Transaction transaction, int statusCode) {
+        Span span = tracer.startSpan(routingContext, "transaction.encode");
+        final String body = Json.encodePrettily(transaction);
+        span.end();
         routingContext.response()
             .putHeader(HttpHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE)
             .setStatusCode(statusCode)
-            .end(Json.encodePrettily(transaction));
+            .end(body);
     }
 
+    private void storeFailure(RoutingContext routingContext, Throwable cause) {
+        error(routingContext, 500, "Unable to access the transactions! Cause: " + cause.getMessage());
+    }
 }
@@ -0,0 +1,222 @@
+package com.moneytransfer.reactive.holds;
+
+import com.moneytransfer.reactive.enums.HoldStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Hold;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The open holds of all the accounts and the amount each account has on hold.
+ * The available balance of an account is its ledger balance minus its held amount, every debit checks the
+ * available balance. Holds are kept in memory, expired by a timing wheel driven by a single periodic timer
+ * which expires a bounded number of holds per tick. A closed hold is forgotten.
+ * They are not persisted: a restart releases all the holds.
+ *
+ * Like the ledger it is only accessed from the event loop.
+ *
+ * @author Julian Vasa
+ */
+public class HoldBook {
+    private static final int WHEEL_SIZE = 4096;
+
+    private final LongObjectHashMap<OpenHold> openHolds = new LongObjectHashMap<>();
+    private final IntObjectHashMap<BigDecimal> heldByAccount = new IntObjectHashMap<>();
+    private final TimingWheel<Hold> wheel;
+    private final long tickMillis;
+    private final int maxExpirationsPerTick;
+    private final long defaultTtlMillis;
+    private final long maxTtlMillis;
+    private long nextId = 1;
+    private long expired;
+    private Vertx vertx;
+    private long timerId = -1;
+
+    public HoldBook(long tickMillis, int maxExpirationsPerTick, long defaultTtlMillis, long maxTtlMillis) {
+        this(tickMillis, maxExpirationsPerTick, defaultTtlMillis, maxTtlMillis, System.currentTimeMillis());
+    }
+
+    /* The start time of the wheel is given by the tests, which then drive expire() with their own clock */
+    HoldBook(long tickMillis, int maxExpirationsPerTick, long defaultTtlMillis, long maxTtlMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.maxExpirationsPerTick = maxExpirationsPerTick;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.maxTtlMillis = maxTtlMillis;
+        this.wheel = new TimingWheel<>(WHEEL_SIZE, tickMillis, startMillis);
+    }
+
+    /**
+     * Create the hold book from the verticle configuration
+     * @param config verticle configuration with holds.tickMs (default 100), holds.maxExpirationsPerTick (default 10000),
+     *               holds.defaultTtlSeconds (default 7 days) and holds.maxTtlSeconds (default 30 days)
+     * @return the hold book, not started yet
+     */
+    public static HoldBook create(JsonObject config) {
+        return new HoldBook(
+            config.getLong("holds.tickMs", 100L),
+            config.getInteger("holds.maxExpirationsPerTick", 10_000),
+            TimeUnit.SECONDS.toMillis(config.getLong("holds.defaultTtlSeconds", TimeUnit.DAYS.toSeconds(7))),
+            TimeUnit.SECONDS.toMillis(config.getLong("holds.maxTtlSeconds", TimeUnit.DAYS.toSeconds(30))));
+    }
+
+    /**
+     * Start expiring the holds, must be called on the event loop
+     * @param vertx the Vert.x instance
+     */
+    public void start(Vertx vertx) {
+        this.vertx = vertx;
+        this.timerId = vertx.setPeriodic(tickMillis, id -> expire(System.currentTimeMillis()));
+    }
+
+    public void stop() {
+        if (vertx != null && timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    /**
+     * Reserve an amount on an account if its available balance covers it
+     * @param account the account
+     * @param toAccount account credited by the capture
+     * @param amount amount reserved, positive
+     * @param ttlMillis time before the hold expires, 0 for the default
+     * @param description description of the hold, also of the capture transaction
+     * @param nowMillis current time
+     * @return the open hold, null if the available balance is not enough
+     * @throws IllegalArgumentException if the time to live is above the maximum
+     */
+    public Hold reserve(Account account, int toAccount, BigDecimal amount, long ttlMillis, String description, long nowMillis) {
+        final long ttl = ttlMillis == 0 ? defaultTtlMillis : ttlMillis;
+        if (ttl < 0 || ttl > maxTtlMillis) {
+            throw new IllegalArgumentException("The hold must expire within " + TimeUnit.MILLISECONDS.toSeconds(maxTtlMillis) + " seconds");
+        }
+        if (available(account).compareTo(amount) < 0) {
+            return null;
+        }
+        final Hold hold = Hold.builder()
+            .id(nextId++)
+            .accountId(account.getId())
+            .toAccount(toAccount)
+            .amount(amount)
+            .currency(account.getCurrency())
+            .description(description)
+            .createdAt(nowMillis)
+            .expiresAt(nowMillis + ttl)
+            .status(HoldStatus.OPEN)
+            .build();
+        open(hold);
+        return hold;
+    }
+
+    /**
+     * Open again a hold captured by a capture which could not be recorded, the ledger undid the capture.
+     * It keeps its expiration time, a hold whose time passed meanwhile expires on the next tick.
+     * @param hold the hold closed as CAPTURED
+     * @return false if the hold was not captured
+     */
+    public boolean reopen(Hold hold) {
+        if (hold.getStatus() != HoldStatus.CAPTURED || openHolds.containsKey(hold.getId())) {
+            return false;
+        }
+        hold.setStatus(HoldStatus.OPEN);
+        hold.setTransactionId(null);
+        open(hold);
+        return true;
+    }
+
+    private void open(Hold hold) {
+        openHolds.put(hold.getId(), new OpenHold(hold, wheel.schedule(hold, hold.getExpiresAt())));
+        heldByAccount.put(hold.getAccountId(), held(hold.getAccountId()).add(hold.getAmount()));
+    }
+
+    /**
+     * @param id hold id
+     * @return the hold if it is open, null otherwise
+     */
+    public Hold get(long id) {
+        final OpenHold openHold = openHolds.get(id);
+        return openHold == null ? null : openHold.hold;
+    }
+
+    /**
+     * Close an open hold, its amount is not held anymore. A capture must then apply the captured amount to the ledger,
+     * and reopen the hold if the ledger could not record it.
+     * @param hold the hold
+     * @param status CAPTURED, RELEASED or EXPIRED
+     * @return false if the hold was not open anymore
+     */
+    public boolean close(Hold hold, HoldStatus status) {
+        final OpenHold openHold = openHolds.remove(hold.getId());
+        if (openHold == null || openHold.hold != hold) {
+            return false;
+        }
+        wheel.cancel(openHold.timeout);
+        hold.setStatus(status);
+        if (status == HoldStatus.EXPIRED) {
+            expired++;
+        }
+        final BigDecimal held = held(hold.getAccountId()).subtract(hold.getAmount());
+        if (held.signum() == 0) {
+            heldByAccount.remove(hold.getAccountId());
+        }
+        else {
+            heldByAccount.put(hold.getAccountId(), held);
+        }
+        return true;
+    }
+
+    /**
+     * @param accountId account number
+     * @return the amount held on the account by its open holds
+     */
+    public BigDecimal held(int accountId) {
+        final BigDecimal held = heldByAccount.get(accountId);
+        return held == null ? BigDecimal.ZERO : held;
+    }
+
+    /**
+     * @param account the account
+     * @return the balance of the account minus its held amount
+     */
+    public BigDecimal available(Account account) {
+        final BigDecimal held = heldByAccount.get(account.getId());
+        return held == null ? account.getBalance() : account.getBalance().subtract(held);
+    }
+
+    /**
+     * @return the number of open holds
+     */
+    public int openHolds() {
+        return openHolds.size();
+    }
+
+    /**
+     * @return the number of holds expired since the start
+     */
+    public long expiredHolds() {
+        return expired;
+    }
+
+    /**
+     * Expire the holds whose time passed, at most holds.maxExpirationsPerTick, the others on the next ticks
+     * @param nowMillis current time
+     */
+    void expire(long nowMillis) {
+        wheel.expire(nowMillis, maxExpirationsPerTick, hold -> close(hold, HoldStatus.EXPIRED));
+    }
+
+    private static class OpenHold {
+        private final Hold hold;
+        private final TimingWheel.Timeout<Hold> timeout;
+
+        OpenHold(Hold hold, TimingWheel.Timeout<Hold> timeout) {
+            this.hold = hold;
+            this.timeout = timeout;
+        }
+    }
+}
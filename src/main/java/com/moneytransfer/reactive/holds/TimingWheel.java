@@ -0,0 +1,138 @@
+package com.moneytransfer.reactive.holds;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of slots, each one a doubly linked list of the timeouts whose deadline falls
+ * on that slot modulo the size of the wheel. Scheduling and cancelling are O(1); every tick only walks one slot,
+ * so one periodic timer serves any number of timeouts instead of one Vert.x timer per timeout.
+ * A timeout stores its absolute deadline tick, walking a slot again after an interrupted pass is harmless.
+ *
+ * Not thread safe, it is only accessed from the event loop.
+ *
+ * @param <T> the item expiring
+ * @author Julian Vasa
+ */
+public class TimingWheel<T> {
+    private final Timeout<T>[] slots;
+    private final int mask;
+    private final long tickMillis;
+    private final long startMillis;
+    /* Next tick to expire */
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param wheelSize number of slots, rounded up to a power of two
+     * @param tickMillis duration of a tick, the precision of the expirations
+     * @param startMillis time of the tick 0
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(int wheelSize, long tickMillis, long startMillis) {
+        final int slotCount = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.slots = new Timeout[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Timeout<>(null, 0L);
+            slots[i].previous = slots[i];
+            slots[i].next = slots[i];
+        }
+        this.mask = slotCount - 1;
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Schedule the expiration of an item
+     * @param item the item
+     * @param deadlineMillis time from which the item expires, a past deadline expires on the next tick
+     * @return the timeout, to cancel it
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        /* Rounded up so an item never expires before its deadline */
+        final long deadlineTick = Math.max(currentTick, ceilDiv(deadlineMillis - startMillis, tickMillis));
+        final Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+        final Timeout<T> slot = slots[(int) (deadlineTick & mask)];
+        timeout.previous = slot.previous;
+        timeout.next = slot;
+        slot.previous.next = timeout;
+        slot.previous = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancel a timeout, nothing happens if it already expired or was cancelled
+     * @param timeout the timeout
+     */
+    public void cancel(Timeout<T> timeout) {
+        if (timeout.next != null) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * Expire the items whose deadline passed, at most a number of them so a burst of expirations is spread over
+     * several calls instead of blocking the event loop
+     * @param nowMillis current time
+     * @param budget maximum number of items expired by this call
+     * @param onExpired called for every expired item, it may schedule new timeouts but not cancel other ones
+     * @return the number of items expired
+     */
+    public int expire(long nowMillis, int budget, Consumer<T> onExpired) {
+        final long nowTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        int expired = 0;
+        while (currentTick <= nowTick) {
+            final Timeout<T> slot = slots[(int) (currentTick & mask)];
+            Timeout<T> timeout = slot.next;
+            while (timeout != slot) {
+                final Timeout<T> next = timeout.next;
+                if (timeout.deadlineTick <= currentTick) {
+                    if (expired == budget) {
+                        return expired;
+                    }
+                    unlink(timeout);
+                    expired++;
+                    onExpired.accept(timeout.item);
+                }
+                timeout = next;
+            }
+            currentTick++;
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of scheduled timeouts
+     */
+    public int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+        size--;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /**
+     * A scheduled expiration, a node of the list of its slot
+     * @param <T> the item expiring
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
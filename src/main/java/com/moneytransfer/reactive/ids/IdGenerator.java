@@ -0,0 +1,39 @@
+package com.moneytransfer.reactive.ids;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Source of the transaction ids, called from any thread.
+ *
+ * Configuration (verticle config): ids.node (default 0), the node number from 0 to 1023 embedded in the ids,
+ * unique among the nodes sharing or replicating a ledger
+ */
+public interface IdGenerator {
+    /**
+     * Create the generator from the verticle configuration
+     * @param config verticle configuration
+     * @return the generator
+     * @throws IllegalArgumentException if the node number is out of range
+     */
+    static IdGenerator create(JsonObject config) {
+        return new TimeOrderedIdGenerator(config.getInteger("ids.node", 0));
+    }
+
+    /**
+     * @return a new id, unique across the nodes and the restarts
+     */
+    long nextId();
+
+    /**
+     * Generate the next ids after an id already stored
+     * @param id highest id stored
+     */
+    void continueAfter(long id);
+
+    /**
+     * Accept an id supplied by a client, which is then never generated
+     * @param id the id
+     * @return false if the generator could not have produced the id by now
+     */
+    boolean reserve(long id);
+}
@@ -0,0 +1,99 @@
+package com.moneytransfer.reactive.ids;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 64-bit ids ordered by time: 41 bits of milliseconds since 2020-01-01 (until 2089), 10 bits of node
+ * and 12 bits of sequence, the sign bit is always 0. Ids generated in a later millisecond are greater,
+ * so the ids stored in an index always land at its end.
+ *
+ * The sequences of a millisecond are split in blocks of 64 ids. A thread claims a whole block from the shared
+ * block cursor and hands its ids out without any shared write, the cursor is only touched once every 64 ids.
+ * The cursor never goes back: above 4096 ids per millisecond, or when the clock goes back, the blocks of the next
+ * milliseconds are borrowed. An id stays unique across restarts as long as the clock moved forward in between,
+ * the stores holding ids call continueAfter() with their highest id when they open.
+ *
+ * @author Julian Vasa
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+    /* 2020-01-01T00:00:00Z */
+    static final long EPOCH_MILLIS = 1_577_836_800_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int BLOCK_BITS = 6;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int OFFSET_BITS = SEQUENCE_BITS - BLOCK_BITS;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final long BLOCK_MASK = (1L << BLOCK_BITS) - 1;
+
+    private final long node;
+    /* Last block claimed: milliseconds since the epoch followed by the block number within the millisecond */
+    private final AtomicLong blockCursor = new AtomicLong();
+    /* Changed by continueAfter(), the blocks claimed before are dropped */
+    private volatile int generation;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param node node number, from 0 to 1023
+     * @throws IllegalArgumentException if the node number is out of range
+     */
+    public TimeOrderedIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("ids.node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.node = node;
+    }
+
+    @Override
+    public long nextId() {
+        final Block block = blocks.get();
+        if (block.next == block.end || block.generation != generation) {
+            claim(block);
+        }
+        return block.next++;
+    }
+
+    @Override
+    public void continueAfter(long id) {
+        blockCursor.accumulateAndGet(blockOf(id), Math::max);
+        generation++;
+    }
+
+    /* An id of the future could push the next ids toward the end of the 41 bits, the blocks held by the threads may
+       still hand out a past id */
+    @Override
+    public boolean reserve(long id) {
+        if (id <= 0 || (id >>> (NODE_BITS + SEQUENCE_BITS)) > System.currentTimeMillis() - EPOCH_MILLIS) {
+            return false;
+        }
+        continueAfter(id);
+        return true;
+    }
+
+    private void claim(Block block) {
+        block.generation = generation;
+        final long nowBlock = (System.currentTimeMillis() - EPOCH_MILLIS) << BLOCK_BITS;
+        final long claimed = blockCursor.accumulateAndGet(nowBlock, (last, now) -> Math.max(last + 1, now));
+        block.next = firstId(claimed);
+        block.end = block.next + OFFSET_MASK + 1;
+    }
+
+    /* First id of a block: its millisecond, the node, then the block number as the high bits of the sequence */
+    private long firstId(long block) {
+        return (block >>> BLOCK_BITS) << (NODE_BITS + SEQUENCE_BITS)
+            | node << SEQUENCE_BITS
+            | (block & BLOCK_MASK) << OFFSET_BITS;
+    }
+
+    /* Block holding an id, whatever node generated it */
+    static long blockOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) << BLOCK_BITS | (id >>> OFFSET_BITS) & BLOCK_MASK;
+    }
+
+    /* Ids left to the current thread, from next (included) to end (excluded) */
+    private static final class Block {
+        private long next;
+        private long end;
+        private int generation = -1;
+    }
+}
@@ -0,0 +1,170 @@
+package com.moneytransfer.reactive.index;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountQuery;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Secondary indexes over the accounts: balance sorted sets and name prefix tries, overall and per currency.
+ * Like the accounts map it is only accessed from the event loop, every balance change must be followed by update().
+ *
+ * @author Julian Vasa
+ */
+public class AccountIndex {
+    private static final Comparator<BalanceKey> BY_BALANCE = Comparator
+        .comparing((BalanceKey key) -> key.balance)
+        .thenComparingInt(key -> key.id);
+
+    private final Map<Integer, Account> accounts;
+    /* Current balance key of every account, needed to find the entry to remove from the sorted sets */
+    private final Map<Integer, BalanceKey> keys = new HashMap<>();
+    private final NavigableSet<BalanceKey> byBalance = new TreeSet<>(BY_BALANCE);
+    private final Map<Currency, NavigableSet<BalanceKey>> byCurrency = new HashMap<>();
+    private final NameTrie byName = new NameTrie();
+    private final Map<Currency, NameTrie> byCurrencyName = new HashMap<>();
+
+    /**
+     * @param accounts in-memory storage of accounts, used to resolve the ids found in the indexes
+     */
+    public AccountIndex(Map<Integer, Account> accounts) {
+        this.accounts = accounts;
+        for (Account account : accounts.values()) {
+            add(account);
+        }
+    }
+
+    /**
+     * Index a new account
+     * @param account the account added to the accounts storage
+     */
+    public void add(Account account) {
+        BalanceKey key = new BalanceKey(balanceOf(account), account.getId());
+        keys.put(account.getId(), key);
+        byBalance.add(key);
+        if (account.getCurrency() != null) {
+            byCurrency.computeIfAbsent(account.getCurrency(), currency -> new TreeSet<>(BY_BALANCE)).add(key);
+            byCurrencyName.computeIfAbsent(account.getCurrency(), currency -> new NameTrie())
+                .add(account.getName(), account.getId());
+        }
+        byName.add(account.getName(), account.getId());
+    }
+
+    /**
+     * Move an account to its new position in the balance indexes after a deposit, withdraw or transfer
+     * @param account the account whose balance changed
+     */
+    public void update(Account account) {
+        BalanceKey previous = keys.get(account.getId());
+        if (previous == null || previous.balance.compareTo(balanceOf(account)) == 0) {
+            return;
+        }
+        BalanceKey key = new BalanceKey(balanceOf(account), account.getId());
+        keys.put(account.getId(), key);
+        byBalance.remove(previous);
+        byBalance.add(key);
+        NavigableSet<BalanceKey> currencySet = byCurrency.get(account.getCurrency());
+        if (currencySet != null) {
+            currencySet.remove(previous);
+            currencySet.add(key);
+        }
+    }
+
+    /**
+     * Remove a deleted account from the indexes
+     * @param account the account removed from the accounts storage
+     */
+    public void remove(Account account) {
+        BalanceKey key = keys.remove(account.getId());
+        if (key == null) {
+            return;
+        }
+        byBalance.remove(key);
+        NavigableSet<BalanceKey> currencySet = byCurrency.get(account.getCurrency());
+        if (currencySet != null) {
+            currencySet.remove(key);
+        }
+        NameTrie currencyNames = byCurrencyName.get(account.getCurrency());
+        if (currencyNames != null) {
+            currencyNames.remove(account.getName(), account.getId());
+        }
+        byName.remove(account.getName(), account.getId());
+    }
+
+    /**
+     * Find a page of accounts. Name prefix queries walk the trie in name order, the others walk the balance range
+     * of the balance index, both of the currency if one is requested. Only offset + limit + 1 entries are visited,
+     * except for a name prefix with a balance range: the names are walked until enough balances match,
+     * up to every name of the prefix.
+     * @param query filters, sort and page
+     * @return the accounts of the page, one more than the limit if there are more results
+     */
+    public List<Account> search(AccountQuery query) {
+        final int wanted = query.getOffset() + query.getLimit() + 1;
+        List<Integer> ids = new ArrayList<>(Math.min(wanted, 1024));
+        if (query.getNamePrefix() != null) {
+            NameTrie names = query.getCurrency() == null ? byName : byCurrencyName.get(query.getCurrency());
+            if (names != null) {
+                names.collect(query.getNamePrefix(), wanted, id -> matches(query, keys.get(id)), query.isDescending(), ids);
+            }
+        }
+        else {
+            NavigableSet<BalanceKey> set = query.getCurrency() == null ? byBalance : byCurrency.get(query.getCurrency());
+            if (set != null) {
+                Iterator<BalanceKey> iterator = range(set, query).iterator();
+                while (iterator.hasNext() && ids.size() < wanted) {
+                    ids.add(iterator.next().id);
+                }
+            }
+        }
+        List<Account> page = new ArrayList<>(Math.min(query.getLimit() + 1, ids.size()));
+        for (int i = query.getOffset(); i < Math.min(ids.size(), wanted); i++) {
+            page.add(accounts.get(ids.get(i)));
+        }
+        return page;
+    }
+
+    private static NavigableSet<BalanceKey> range(NavigableSet<BalanceKey> set, AccountQuery query) {
+        NavigableSet<BalanceKey> range = set;
+        if (query.getMinBalance() != null) {
+            range = range.tailSet(new BalanceKey(query.getMinBalance(), Integer.MIN_VALUE), true);
+        }
+        if (query.getMaxBalance() != null) {
+            range = range.headSet(new BalanceKey(query.getMaxBalance(), Integer.MAX_VALUE), true);
+        }
+        return query.isDescending() ? range.descendingSet() : range;
+    }
+
+    private static BigDecimal balanceOf(Account account) {
+        return account.getBalance() == null ? BigDecimal.ZERO : account.getBalance();
+    }
+
+    private boolean matches(AccountQuery query, BalanceKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (query.getMinBalance() != null && key.balance.compareTo(query.getMinBalance()) < 0) {
+            return false;
+        }
+        return query.getMaxBalance() == null || key.balance.compareTo(query.getMaxBalance()) <= 0;
+    }
+
+    private static class BalanceKey {
+        private final BigDecimal balance;
+        private final int id;
+
+        BalanceKey(BigDecimal balance, int id) {
+            this.balance = balance;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.moneytransfer.reactive.index;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Case insensitive prefix trie of the account names, walked in name order
+ *
+ * @author Julian Vasa
+ */
+class NameTrie {
+    private final Node root = new Node();
+
+    void add(String name, int id) {
+        Node node = root;
+        for (char c : normalize(name).toCharArray()) {
+            if (node.children == null) {
+                node.children = new TreeMap<>();
+            }
+            node = node.children.computeIfAbsent(c, key -> new Node());
+        }
+        if (node.ids == null) {
+            node.ids = new TreeSet<>();
+        }
+        node.ids.add(id);
+    }
+
+    void remove(String name, int id) {
+        remove(root, normalize(name), 0, id);
+    }
+
+    /**
+     * Collect the ids of the names starting with the prefix, in name order then id order
+     * @param prefix name prefix, case insensitive
+     * @param limit maximum number of ids collected
+     * @param filter additional filter on the ids
+     * @param descending walk the names in descending order
+     * @param out the collected ids
+     */
+    void collect(String prefix, int limit, IntPredicate filter, boolean descending, List<Integer> out) {
+        Node node = root;
+        for (char c : normalize(prefix).toCharArray()) {
+            node = node.children == null ? null : node.children.get(c);
+            if (node == null) {
+                return;
+            }
+        }
+        collect(node, limit, filter, descending, out);
+    }
+
+    private static void collect(Node node, int limit, IntPredicate filter, boolean descending, List<Integer> out) {
+        if (!descending) {
+            addIds(node.ids, limit, filter, out);
+        }
+        if (node.children != null) {
+            NavigableMap<Character, Node> children = descending ? node.children.descendingMap() : node.children;
+            for (Node child : children.values()) {
+                if (out.size() >= limit) {
+                    return;
+                }
+                collect(child, limit, filter, descending, out);
+            }
+        }
+        if (descending) {
+            addIds(node.ids == null ? null : node.ids.descendingSet(), limit, filter, out);
+        }
+    }
+
+    private static void addIds(NavigableSet<Integer> ids, int limit, IntPredicate filter, List<Integer> out) {
+        if (ids == null) {
+            return;
+        }
+        for (Integer id : ids) {
+            if (out.size() >= limit) {
+                return;
+            }
+            if (filter.test(id)) {
+                out.add(id);
+            }
+        }
+    }
+
+    /* Remove the id and prune the nodes left empty, returns true when the node can be removed from its parent */
+    private static boolean remove(Node node, String name, int depth, int id) {
+        if (depth == name.length()) {
+            if (node.ids != null) {
+                node.ids.remove(id);
+                if (node.ids.isEmpty()) {
+                    node.ids = null;
+                }
+            }
+        }
+        else if (node.children != null) {
+            final char c = name.charAt(depth);
+            Node child = node.children.get(c);
+            if (child != null && remove(child, name, depth + 1, id)) {
+                node.children.remove(c);
+                if (node.children.isEmpty()) {
+                    node.children = null;
+                }
+            }
+        }
+        return node.ids == null && node.children == null;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Node {
+        private TreeMap<Character, Node> children;
+        private TreeSet<Integer> ids;
+    }
+}
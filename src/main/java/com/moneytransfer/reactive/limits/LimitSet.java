@@ -0,0 +1,71 @@
+package com.moneytransfer.reactive.limits;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+
+/**
+ * The velocity limits applying to an account: for each sliding window its length, its number of buckets
+ * and the maximum number and amount of the transfers debiting the account within the window.
+ * Kept in parallel primitive arrays, it is shared by all the accounts it applies to.
+ *
+ * @author Julian Vasa
+ */
+class LimitSet {
+    static final int DEFAULT_BUCKETS = 60;
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    final long[] windowSeconds;
+    final long[] bucketMillis;
+    final int[] buckets;
+    final long[] maxCount;
+    /* In amount units, see VelocityLimits.toUnits() */
+    final long[] maxAmount;
+    /* Offset of the buckets of each window in the counters of an account */
+    final int[] firstBucket;
+    final int totalBuckets;
+
+    private LimitSet(JsonArray limits) {
+        final int size = limits.size();
+        windowSeconds = new long[size];
+        bucketMillis = new long[size];
+        buckets = new int[size];
+        maxCount = new long[size];
+        maxAmount = new long[size];
+        firstBucket = new int[size];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            final JsonObject limit = limits.getJsonObject(i);
+            final long seconds = limit.getLong("windowSeconds", 0L);
+            final int bucketCount = limit.getInteger("buckets", DEFAULT_BUCKETS);
+            if (seconds <= 0 || bucketCount <= 0 || seconds * 1000 % bucketCount != 0) {
+                throw new IllegalArgumentException("Invalid velocity limit window: " + limit.encode()
+                    + ", windowSeconds must be positive and its milliseconds a multiple of the buckets");
+            }
+            final Object amount = limit.getValue("maxAmount");
+            windowSeconds[i] = seconds;
+            buckets[i] = bucketCount;
+            bucketMillis[i] = seconds * 1000 / bucketCount;
+            maxCount[i] = limit.getLong("maxCount", UNLIMITED);
+            maxAmount[i] = amount == null ? UNLIMITED : VelocityLimits.toUnits(new BigDecimal(amount.toString()));
+            firstBucket[i] = offset;
+            offset += bucketCount;
+        }
+        totalBuckets = offset;
+    }
+
+    /**
+     * @param limits JSON array of windows: windowSeconds, buckets (optional, default 60), maxCount and maxAmount
+     *               (both optional, a window is not limited by a missing one)
+     * @return the limit set
+     * @throws IllegalArgumentException if a window is invalid
+     */
+    static LimitSet parse(JsonArray limits) {
+        return new LimitSet(limits);
+    }
+
+    int size() {
+        return windowSeconds.length;
+    }
+}
@@ -0,0 +1,121 @@
+package com.moneytransfer.reactive.limits;
+
+/**
+ * Sliding window counters of the debits of one account, for every window of its limit set.
+ * A window is a ring of buckets, each holding the number and the amount of the debits of its slice of time,
+ * plus the running totals of the window. Moving the window forward clears the buckets which left it,
+ * at most one pass over the ring, so a check costs the same whatever the number of transfers.
+ * The counters are primitive arrays allocated once per account, a check allocates nothing.
+ *
+ * @author Julian Vasa
+ */
+class SlidingWindows {
+    private final LimitSet limits;
+    private final long[] counts;
+    private final long[] amounts;
+    private final long[] totalCount;
+    private final long[] totalAmount;
+    /* Number of the latest bucket of each window since the epoch, time / bucket length */
+    private final long[] lastBucket;
+
+    SlidingWindows(LimitSet limits) {
+        this.limits = limits;
+        this.counts = new long[limits.totalBuckets];
+        this.amounts = new long[limits.totalBuckets];
+        this.totalCount = new long[limits.size()];
+        this.totalAmount = new long[limits.size()];
+        this.lastBucket = new long[limits.size()];
+    }
+
+    LimitSet limits() {
+        return limits;
+    }
+
+    /**
+     * Count a debit if it fits in every window
+     * @param units amount of the debit in amount units
+     * @param nowMillis current time
+     * @return -1 if the debit was counted, otherwise the index of the first window it does not fit in
+     */
+    int tryAcquire(long units, long nowMillis) {
+        for (int window = 0; window < limits.size(); window++) {
+            advance(window, nowMillis / limits.bucketMillis[window]);
+            if (totalCount[window] >= limits.maxCount[window] || units > limits.maxAmount[window] - totalAmount[window]) {
+                return window;
+            }
+        }
+        for (int window = 0; window < limits.size(); window++) {
+            final int bucket = limits.firstBucket[window] + (int) (lastBucket[window] % limits.buckets[window]);
+            counts[bucket]++;
+            amounts[bucket] = saturatedAdd(amounts[bucket], units);
+            totalCount[window]++;
+            totalAmount[window] = saturatedAdd(totalAmount[window], units);
+        }
+        return -1;
+    }
+
+    /**
+     * Take back a debit counted by tryAcquire, from the buckets it was counted in which are still in their window
+     * @param units amount of the debit in amount units
+     * @param debitMillis time the debit was counted at
+     */
+    void release(long units, long debitMillis) {
+        for (int window = 0; window < limits.size(); window++) {
+            final long bucket = Math.min(debitMillis / limits.bucketMillis[window], lastBucket[window]);
+            if (lastBucket[window] - bucket >= limits.buckets[window]) {
+                continue;
+            }
+            final int i = limits.firstBucket[window] + (int) (bucket % limits.buckets[window]);
+            if (counts[i] == 0) {
+                continue;
+            }
+            /* A saturated amount is not exact anymore, it never goes below zero */
+            final long released = Math.min(units, amounts[i]);
+            counts[i]--;
+            amounts[i] -= released;
+            totalCount[window]--;
+            totalAmount[window] -= released;
+        }
+    }
+
+    /**
+     * @param window index of the window
+     * @return true if the number of debits is the limit of the window, false if the amount is
+     */
+    boolean countExceeded(int window) {
+        return totalCount[window] >= limits.maxCount[window];
+    }
+
+    /* Clear the buckets which left the window, a clock going back keeps counting in the latest bucket */
+    private void advance(int window, long bucket) {
+        final long last = lastBucket[window];
+        if (bucket <= last) {
+            return;
+        }
+        final int first = limits.firstBucket[window];
+        final int size = limits.buckets[window];
+        if (bucket - last >= size) {
+            for (int i = first; i < first + size; i++) {
+                counts[i] = 0;
+                amounts[i] = 0;
+            }
+            totalCount[window] = 0;
+            totalAmount[window] = 0;
+        }
+        else {
+            for (long expired = last + 1; expired <= bucket; expired++) {
+                final int i = first + (int) (expired % size);
+                totalCount[window] -= counts[i];
+                totalAmount[window] -= amounts[i];
+                counts[i] = 0;
+                amounts[i] = 0;
+            }
+        }
+        lastBucket[window] = bucket;
+    }
+
+    private static long saturatedAdd(long total, long units) {
+        final long sum = total + units;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
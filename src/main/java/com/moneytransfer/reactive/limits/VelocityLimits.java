@@ -0,0 +1,136 @@
+package com.moneytransfer.reactive.limits;
+
+import com.moneytransfer.reactive.model.Account;
+import io.netty.util.collection.IntObjectHashMap;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Velocity limits of the transfers: at most a number of transfers and an amount debited from an account
+ * per sliding window (per minute, per day...). The limits of an account are its own if configured,
+ * otherwise those of its currency, otherwise the default ones.
+ *
+ * The counters of an account are created on its first debit and sized by its limits, the check of a transfer
+ * is a lookup in a primitive int map plus a constant amount of work per window.
+ * Like the transfer processor which calls it, it is only accessed from the event loop.
+ *
+ * Configuration (verticle configuration key limits):
+ * <pre>
+ * { "default": [ { "windowSeconds": 60, "maxCount": 10 }, { "windowSeconds": 86400, "buckets": 96, "maxAmount": 10000 } ],
+ *   "currencies": { "EUR": [ ... ] },
+ *   "accounts": { "1111": [ ... ] } }
+ * </pre>
+ *
+ * @author Julian Vasa
+ */
+public class VelocityLimits {
+    /* Amounts are counted as longs in units of 1/10000, rounded up */
+    private static final int AMOUNT_SCALE = 4;
+
+    private final LimitSet defaults;
+    private final Map<Currency, LimitSet> byCurrency;
+    private final IntObjectHashMap<LimitSet> byAccount;
+    private final IntObjectHashMap<SlidingWindows> windows = new IntObjectHashMap<>();
+
+    private VelocityLimits(LimitSet defaults, Map<Currency, LimitSet> byCurrency, IntObjectHashMap<LimitSet> byAccount) {
+        this.defaults = defaults;
+        this.byCurrency = byCurrency;
+        this.byAccount = byAccount;
+    }
+
+    /**
+     * Create the limits from the verticle configuration
+     * @param config verticle configuration with the optional limits object
+     * @return the limits, disabled when none is configured
+     * @throws IllegalArgumentException if a limit is invalid
+     */
+    public static VelocityLimits create(JsonObject config) {
+        final JsonObject limits = config.getJsonObject("limits", new JsonObject());
+        final JsonArray defaultLimits = limits.getJsonArray("default");
+        final Map<Currency, LimitSet> byCurrency = new HashMap<>();
+        final JsonObject currencies = limits.getJsonObject("currencies", new JsonObject());
+        for (String currency : currencies.fieldNames()) {
+            byCurrency.put(Currency.getInstance(currency), LimitSet.parse(currencies.getJsonArray(currency)));
+        }
+        final IntObjectHashMap<LimitSet> byAccount = new IntObjectHashMap<>();
+        final JsonObject accounts = limits.getJsonObject("accounts", new JsonObject());
+        for (String account : accounts.fieldNames()) {
+            byAccount.put(Integer.parseInt(account), LimitSet.parse(accounts.getJsonArray(account)));
+        }
+        return new VelocityLimits(defaultLimits == null ? null : LimitSet.parse(defaultLimits), byCurrency, byAccount);
+    }
+
+    /**
+     * Check a debit against the limits of the account and count it if it is within them.
+     * Must be the last check of a transfer: a debit which passes is counted.
+     * @param account the debited account
+     * @param amount the debited amount
+     * @param nowMillis current time
+     * @return null if the debit is within the limits, otherwise the limit it exceeds
+     */
+    public String tryDebit(Account account, BigDecimal amount, long nowMillis) {
+        SlidingWindows accountWindows = windows.get(account.getId());
+        if (accountWindows == null) {
+            final LimitSet limits = limitsOf(account);
+            if (limits == null) {
+                return null;
+            }
+            accountWindows = new SlidingWindows(limits);
+            windows.put(account.getId(), accountWindows);
+        }
+        final int exceeded = accountWindows.tryAcquire(toUnits(amount), nowMillis);
+        if (exceeded < 0) {
+            return null;
+        }
+        final LimitSet limits = accountWindows.limits();
+        return accountWindows.countExceeded(exceeded)
+            ? "at most " + limits.maxCount[exceeded] + " transfers per " + limits.windowSeconds[exceeded] + "s"
+            : "at most " + BigDecimal.valueOf(limits.maxAmount[exceeded], AMOUNT_SCALE).stripTrailingZeros().toPlainString()
+                + " per " + limits.windowSeconds[exceeded] + "s";
+    }
+
+    /**
+     * Take back a debit counted by tryDebit whose transfer was not recorded
+     * @param account the debited account
+     * @param amount the debited amount
+     * @param debitMillis time given to tryDebit
+     */
+    public void undoDebit(Account account, BigDecimal amount, long debitMillis) {
+        final SlidingWindows accountWindows = windows.get(account.getId());
+        if (accountWindows != null) {
+            accountWindows.release(toUnits(amount), debitMillis);
+        }
+    }
+
+    /**
+     * Forget the counters of a deleted account, an account created again with its number starts with empty windows
+     * @param accountNumber number of the deleted account
+     */
+    public void accountDeleted(int accountNumber) {
+        windows.remove(accountNumber);
+    }
+
+    private LimitSet limitsOf(Account account) {
+        final LimitSet accountLimits = byAccount.get(account.getId());
+        if (accountLimits != null) {
+            return accountLimits;
+        }
+        final LimitSet currencyLimits = account.getCurrency() == null ? null : byCurrency.get(account.getCurrency());
+        return currencyLimits != null ? currencyLimits : defaults;
+    }
+
+    /**
+     * @param amount an amount
+     * @return the amount in units of 1/10000 rounded up, Long.MAX_VALUE if it does not fit
+     */
+    static long toUnits(BigDecimal amount) {
+        final BigDecimal units = amount.movePointRight(AMOUNT_SCALE).setScale(0, RoundingMode.CEILING);
+        return units.unscaledValue().bitLength() < 64 ? units.longValue() : Long.MAX_VALUE;
+    }
+}
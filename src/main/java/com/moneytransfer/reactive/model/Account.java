@@ -16,10 +16,27 @@ import java.util.Currency;
  */
 public class Account {
 
+    /**
+     * Counterparty used in the ledger for money entering or leaving the system (cash deposits and withdrawals)
+     */
+    public static final int EXTERNAL_ACCOUNT = 0;
+    /**
+     * Longest name the stores accept, the size of the name column of the database
+     */
+    public static final int MAX_NAME_LENGTH = 255;
+
     private int id;
     private String name;
     private BigDecimal balance;
     private Currency currency;
+    /**
+     * Balance at account creation, the starting point of the reconciliation
+     */
+    private BigDecimal openingBalance;
+    /**
+     * Incremented by every change of the balance, set by the store when the account is added. It is the ETag of the account
+     */
+    private long version;
 
     /**
      * Withdraw an amount of money from the account => balance = balance - amount
@@ -27,6 +44,7 @@ public class Account {
      */
     public void withdraw(BigDecimal amount) {
         this.balance = balance.subtract(amount);
+        this.version++;
     }
 
     /**
@@ -35,5 +53,6 @@ public class Account {
      */
     public void deposit(BigDecimal amount) {
         this.balance = balance.add(amount);
+        this.version++;
     }
 }
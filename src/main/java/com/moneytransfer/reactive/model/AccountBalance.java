@@ -0,0 +1,23 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+/**
+ * Ledger balance of an account, the part of it reserved by open holds and the part available for transfers
+ *
+ * @author Julian Vasa
+ */
+public class AccountBalance {
+
+    private int id;
+    private BigDecimal balance;
+    private BigDecimal held;
+    private BigDecimal available;
+    private Currency currency;
+}
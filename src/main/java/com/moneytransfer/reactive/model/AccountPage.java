@@ -0,0 +1,21 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+/**
+ * A page of an account search
+ *
+ * @author Julian Vasa
+ */
+public class AccountPage {
+
+    private int offset;
+    private int limit;
+    private boolean hasMore;
+    private List<Account> accounts;
+}
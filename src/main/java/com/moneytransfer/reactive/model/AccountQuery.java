@@ -0,0 +1,27 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+/**
+ * Filters, sort order and page of an account search. Without a name prefix accounts are sorted by balance,
+ * with a name prefix they are sorted by name.
+ *
+ * @author Julian Vasa
+ */
+public class AccountQuery {
+
+    private Currency currency;
+    private BigDecimal minBalance;
+    private BigDecimal maxBalance;
+    private String namePrefix;
+    private boolean descending;
+    private int offset;
+    private int limit;
+}
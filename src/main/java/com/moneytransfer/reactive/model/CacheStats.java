@@ -0,0 +1,38 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+/**
+ * Counters of the account cache of a store
+ *
+ * @author Julian Vasa
+ */
+public class CacheStats {
+
+    private int capacity;
+    private int size;
+    /**
+     * Accounts with writes not yet in the database, kept in the cache on top of the capacity
+     */
+    private int pinned;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    /**
+     * Hits on evicted accounts still used by an operation, taken back in the cache
+     */
+    private long resurrections;
+    private long evictions;
+    /**
+     * New accounts evicted on admission because they were less popular than the accounts already cached
+     */
+    private long rejections;
+    /**
+     * Loads from the database discarded because the account was written while it was loaded
+     */
+    private long staleLoads;
+}
@@ -0,0 +1,24 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+/**
+ * Number of accounts of a currency and the money they hold
+ *
+ * @author Julian Vasa
+ */
+public class CurrencyBalance {
+
+    /**
+     * Null for the accounts without currency
+     */
+    private Currency currency;
+    private long accounts;
+    private BigDecimal balance;
+}
@@ -0,0 +1,37 @@
+package com.moneytransfer.reactive.model;
+
+import com.moneytransfer.reactive.enums.HoldStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+/**
+ * Funds reserved on an account: they are not available anymore but stay in the balance until the hold
+ * is captured (turned into a transaction), released or expires
+ *
+ * @author Julian Vasa
+ */
+public class Hold {
+
+    private long id;
+    private int accountId;
+    /**
+     * Account credited by the capture, the external account by default
+     */
+    private int toAccount;
+    private BigDecimal amount;
+    private Currency currency;
+    private String description;
+    private long createdAt;
+    private long expiresAt;
+    private HoldStatus status;
+    /**
+     * The transaction of the capture, null until captured
+     */
+    private Long transactionId;
+}
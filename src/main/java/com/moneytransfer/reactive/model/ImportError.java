@@ -0,0 +1,20 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+/**
+ * A row rejected by an account import
+ *
+ * @author Julian Vasa
+ */
+public class ImportError {
+
+    /**
+     * Line number in the import, starting at 1
+     */
+    private long line;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+/**
+ * Outcome of an account import: the number of accounts created and the rows rejected
+ *
+ * @author Julian Vasa
+ */
+public class ImportReport {
+
+    private long imported;
+    private long failed;
+    /**
+     * The first rejected rows, at most 100, failed counts them all
+     */
+    private List<ImportError> errors;
+}
@@ -0,0 +1,87 @@
+package com.moneytransfer.reactive.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+/**
+ * Result of a reconciliation run over a snapshot of the ledger
+ *
+ * @author Julian Vasa
+ */
+public class ReconciliationReport {
+
+    private long snapshotTime;
+    private long durationMillis;
+    private int accountsChecked;
+    private int transactionsScanned;
+    /**
+     * Accounts referenced by successful transactions which no longer exist
+     */
+    private int orphanAccounts;
+    private int mismatchCount;
+    /**
+     * The first mismatches found, capped to keep the report small
+     */
+    private List<Mismatch> mismatches;
+    /**
+     * Accounts with successful transactions in another currency or with an account of another currency
+     */
+    private int currencyMismatchCount;
+    /**
+     * The first of these accounts in account number order, capped to keep the report small
+     */
+    private List<Integer> currencyMismatchAccounts;
+    /**
+     * Money of the accounts per currency code, "none" for the accounts without currency
+     */
+    private Map<String, CurrencyTotals> currencies;
+    private boolean moneyConserved;
+    private boolean consistent;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    /**
+     * An account whose balance is not equal to opening balance + credits - debits. The actual balance and the difference
+     * are null for an account without balance
+     */
+    public static class Mismatch {
+        private int accountId;
+        private BigDecimal expectedBalance;
+        private BigDecimal actualBalance;
+        private BigDecimal difference;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    /**
+     * The money of the accounts of a currency is conserved when opening balances + external flow + cross currency flow
+     * + flow with closed accounts = balances. Each flow is the net amount the accounts of the currency received
+     */
+    public static class CurrencyTotals {
+        private int accounts;
+        private BigDecimal openingBalance;
+        /**
+         * Deposits minus withdrawals, the transactions with the external account
+         */
+        private BigDecimal externalFlow;
+        /**
+         * Transfers with the accounts of other currencies, applied at face value
+         */
+        private BigDecimal crossCurrencyFlow;
+        /**
+         * Transfers with accounts deleted since
+         */
+        private BigDecimal closedAccountsFlow;
+        private BigDecimal balance;
+        private boolean moneyConserved;
+    }
+}
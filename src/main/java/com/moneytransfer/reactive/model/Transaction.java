@@ -1,20 +1,25 @@
 package com.moneytransfer.reactive.model;
 
 import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.ids.IdGenerator;
+import com.moneytransfer.reactive.ids.TimeOrderedIdGenerator;
 import lombok.*;
 
 import java.math.BigDecimal;
 import java.util.Currency;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 /**
  * Simple POJO class to hold transaction data
  */
 public class Transaction {
+    /**
+     * Longest description the stores accept, the size of the description column of the database
+     */
+    public static final int MAX_DESCRIPTION_LENGTH = 1024;
 
-    private static final AtomicInteger COUNTER = new AtomicInteger();
-    private final int id;
+    private static volatile IdGenerator idGenerator = new TimeOrderedIdGenerator(0);
+    private final long id;
     private int fromAccount;
     private int toAccount;
     private BigDecimal amount;
@@ -23,15 +28,48 @@ public class Transaction {
     private TransactionStatus status;
 
     public Transaction() {
-        this.id = COUNTER.getAndIncrement();
+        this.id = idGenerator.nextId();
         this.status = TransactionStatus.PROCESSING;
     }
 
     public Transaction(int fromAccount, int toAccount, BigDecimal amount, Currency currency) {
-        this.id = COUNTER.getAndIncrement();
+        this.id = idGenerator.nextId();
         this.fromAccount = fromAccount;
         this.toAccount = toAccount;
         this.amount = amount;
         this.currency = currency;
     }
+
+    public Transaction(long id, int fromAccount, int toAccount, BigDecimal amount, Currency currency) {
+        this.id = id;
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = amount;
+        this.currency = currency;
+    }
+
+    /**
+     * Generate the ids of the new transactions with another generator
+     * @param generator the id generator, node 0 by default
+     */
+    public static void useIdGenerator(IdGenerator generator) {
+        idGenerator = generator;
+    }
+
+    /**
+     * Generate the next ids after an id already stored
+     * @param id highest id stored
+     */
+    public static void continueAfter(long id) {
+        idGenerator.continueAfter(id);
+    }
+
+    /**
+     * Accept the id of a transaction supplied by a client, the generator never gives it to a new transaction
+     * @param id the id
+     * @return false if the generator could not have produced the id by now
+     */
+    public static boolean reserveId(long id) {
+        return idGenerator.reserve(id);
+    }
 }
@@ -0,0 +1,48 @@
+package com.moneytransfer.reactive.model;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+/**
+ * Mutable holder of a parsed transfer request. Instances are reused between requests,
+ * call reset() before filling it again.
+ *
+ * @author Julian Vasa
+ */
+public class TransferRequest {
+
+    private boolean idPresent;
+    private long id;
+    private int fromAccount;
+    private int toAccount;
+    private BigDecimal amount;
+    private Currency currency;
+    private String description;
+
+    public void reset() {
+        this.idPresent = false;
+        this.id = 0;
+        this.fromAccount = 0;
+        this.toAccount = 0;
+        this.amount = null;
+        this.currency = null;
+        this.description = "";
+    }
+
+    /**
+     * Create the transaction described by this request, using the provided id if any
+     * @return a new transaction in PROCESSING status
+     */
+    public Transaction toTransaction() {
+        Transaction transaction = idPresent
+            ? new Transaction(id, fromAccount, toAccount, amount, currency)
+            : new Transaction(fromAccount, toAccount, amount, currency);
+        transaction.setDescription(description);
+        transaction.setStatus(TransactionStatus.PROCESSING);
+        return transaction;
+    }
+}
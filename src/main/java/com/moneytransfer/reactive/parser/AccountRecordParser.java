@@ -0,0 +1,197 @@
+package com.moneytransfer.reactive.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.moneytransfer.reactive.enums.BulkFormat;
+import com.moneytransfer.reactive.exception.MalformedRequestException;
+import com.moneytransfer.reactive.model.Account;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import static com.moneytransfer.reactive.parser.TransferRequestParser.*;
+
+/**
+ * Parser of one line of an account import, in CSV (id,name,balance,currency) or NDJSON (one account JSON object).
+ * CSV fields may be quoted with double quotes, a quote inside a quoted field is doubled. A field can not span lines:
+ * account names can not contain line breaks, see nameError(), so an export can always be imported again.
+ *
+ * @author Julian Vasa
+ */
+public class AccountRecordParser {
+    /**
+     * Column names of the CSV import and export, the header line is optional on import
+     */
+    public static final String CSV_HEADER = "id,name,balance,currency";
+
+    private final JsonFactory factory = new JsonFactory();
+    private final BulkFormat format;
+
+    public AccountRecordParser(BulkFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Parse a line, the id, balance and currency are mandatory and the opening balance is the balance
+     * @param line the line without its line feed
+     * @return the account
+     * @throws MalformedRequestException if the line is not a valid account
+     */
+    public Account parse(Buffer line) {
+        final Account account = format == BulkFormat.CSV ? parseCsv(line.toString(StandardCharsets.UTF_8)) : parseJson(line);
+        final String idError = idError(account.getId());
+        if (idError != null) {
+            throw new MalformedRequestException(idError);
+        }
+        if (account.getBalance() == null) {
+            throw new MalformedRequestException("Missing balance");
+        }
+        if (account.getCurrency() == null) {
+            throw new MalformedRequestException("Missing currency");
+        }
+        final String nameError = nameError(account.getName());
+        if (nameError != null) {
+            throw new MalformedRequestException(nameError);
+        }
+        account.setOpeningBalance(account.getBalance());
+        return account;
+    }
+
+    /**
+     * Check an account number, for the imports and the new accounts. Account.EXTERNAL_ACCOUNT (0) stands for the money
+     * entering or leaving the ledger, an account with this number would be taken for it
+     * @param id the account number
+     * @return why the number is not valid, null if it is
+     */
+    public static String idError(int id) {
+        return id <= 0 ? "Account number must be positive" : null;
+    }
+
+    /**
+     * Check an account name, for the imports and the new accounts
+     * @param name the name, may be null
+     * @return why the name is not valid, null if it is
+     */
+    public static String nameError(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (name.length() > Account.MAX_NAME_LENGTH) {
+            return "Name longer than " + Account.MAX_NAME_LENGTH + " characters";
+        }
+        if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            return "Name contains a line break";
+        }
+        return null;
+    }
+
+    /**
+     * @param line a line without its line feed
+     * @return true if the line is the optional CSV header
+     */
+    public boolean isHeader(Buffer line) {
+        return format == BulkFormat.CSV && line.toString(StandardCharsets.UTF_8).trim().equalsIgnoreCase(CSV_HEADER);
+    }
+
+    private Account parseCsv(String line) {
+        final List<String> fields = splitCsv(line);
+        if (fields.size() != 4) {
+            throw new MalformedRequestException("Expected 4 fields (" + CSV_HEADER + ") but found " + fields.size());
+        }
+        try {
+            return Account.builder()
+                .id(Integer.parseInt(fields.get(0).trim()))
+                .name(fields.get(1))
+                .balance(new BigDecimal(fields.get(2).trim()))
+                .currency(Currency.getInstance(fields.get(3).trim()))
+                .build();
+        } catch (IllegalArgumentException exception) {
+            /* NumberFormatException included */
+            throw new MalformedRequestException("Invalid field: " + exception.getMessage());
+        }
+    }
+
+    private Account parseJson(Buffer line) {
+        final Account account = new Account();
+        boolean idPresent = false;
+        try (JsonParser parser = createParser(factory, line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MalformedRequestException("Line must be a JSON object");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        account.setId(parseInt(parser, value, field));
+                        idPresent = true;
+                        break;
+                    case "name":
+                        account.setName(value == JsonToken.VALUE_NULL ? null : parseString(parser, value, field));
+                        break;
+                    case "balance":
+                        account.setBalance(parseDecimal(parser, value, field));
+                        break;
+                    case "currency":
+                        account.setCurrency(parseCurrency(parser, value));
+                        break;
+                    default:
+                        /* openingBalance and any other field are ignored */
+                        parser.skipChildren();
+                }
+            }
+            if (token != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new MalformedRequestException("Unexpected content in the line");
+            }
+        } catch (IOException exception) {
+            throw new MalformedRequestException(exception.getMessage());
+        }
+        if (!idPresent) {
+            throw new MalformedRequestException("Missing id");
+        }
+        return account;
+    }
+
+    private static List<String> splitCsv(String line) {
+        final List<String> fields = new ArrayList<>(4);
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                }
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                }
+                else {
+                    quoted = false;
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new MalformedRequestException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
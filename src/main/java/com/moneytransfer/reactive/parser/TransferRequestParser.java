@@ -0,0 +1,161 @@
+package com.moneytransfer.reactive.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.moneytransfer.reactive.exception.MalformedRequestException;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.model.TransferRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Streaming parser of the POST /transactions body. It reads the request Buffer in place, without decoding it
+ * to a String first, and fills a reusable TransferRequest instead of creating a Transaction through reflection.
+ * Like the Json.decodeValue path it replaces, numeric fields are also accepted as strings and unknown fields are ignored.
+ *
+ * @author Julian Vasa
+ */
+public class TransferRequestParser {
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Parse a transfer request
+     * @param body the raw request body
+     * @param request the request to fill, it is reset before parsing
+     * @throws MalformedRequestException if the body is not a valid transfer request
+     */
+    public void parse(Buffer body, TransferRequest request) {
+        request.reset();
+        if (body == null || body.length() == 0) {
+            throw new MalformedRequestException("Empty request body");
+        }
+        try (JsonParser parser = createParser(factory, body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MalformedRequestException("Request body must be a JSON object");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        final long id = parseLong(parser, value, field);
+                        if (!Transaction.reserveId(id)) {
+                            throw new MalformedRequestException("Transaction id was not generated by the ledger: " + id);
+                        }
+                        request.setId(id);
+                        request.setIdPresent(true);
+                        break;
+                    case "fromAccount":
+                        request.setFromAccount(parseInt(parser, value, field));
+                        break;
+                    case "toAccount":
+                        request.setToAccount(parseInt(parser, value, field));
+                        break;
+                    case "amount":
+                        request.setAmount(parseDecimal(parser, value, field));
+                        break;
+                    case "currency":
+                        request.setCurrency(parseCurrency(parser, value));
+                        break;
+                    case "description":
+                        request.setDescription(value == JsonToken.VALUE_NULL ? "" : parseString(parser, value, field));
+                        break;
+                    default:
+                        /* status and any other field are ignored */
+                        parser.skipChildren();
+                }
+            }
+            if (token != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new MalformedRequestException("Unexpected content in the request body");
+            }
+        } catch (IOException exception) {
+            throw new MalformedRequestException(exception.getMessage());
+        }
+    }
+
+    /*
+     * Read heap buffers in place and fall back to a stream over direct buffers, the body bytes are not copied.
+     * Buffer.getByteBuf() is public API returning a duplicate, the stream does not move the reader index of the body.
+     * It is deprecated in favour of an internal interface, kept until the Vert.x 5 upgrade.
+     */
+    @SuppressWarnings("deprecation")
+    static JsonParser createParser(JsonFactory factory, Buffer body) throws IOException {
+        final ByteBuf byteBuf = body.getByteBuf();
+        if (byteBuf.hasArray()) {
+            return factory.createParser(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        }
+        return factory.createParser((InputStream) new ByteBufInputStream(byteBuf));
+    }
+
+    static int parseInt(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+            return parser.getIntValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText().trim());
+            } catch (NumberFormatException exception) {
+                throw new MalformedRequestException("Invalid number for " + field + ": " + parser.getText());
+            }
+        }
+        throw new MalformedRequestException("Invalid value for " + field);
+    }
+
+    static long parseLong(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            return parser.getLongValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException exception) {
+                throw new MalformedRequestException("Invalid number for " + field + ": " + parser.getText());
+            }
+        }
+        throw new MalformedRequestException("Invalid value for " + field);
+    }
+
+    static BigDecimal parseDecimal(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return new BigDecimal(parser.getText().trim());
+            } catch (NumberFormatException exception) {
+                throw new MalformedRequestException("Invalid number for " + field + ": " + parser.getText());
+            }
+        }
+        throw new MalformedRequestException("Invalid value for " + field);
+    }
+
+    static Currency parseCurrency(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        final String code = parseString(parser, value, "currency");
+        try {
+            return Currency.getInstance(code);
+        } catch (IllegalArgumentException exception) {
+            throw new MalformedRequestException("Invalid currency: " + code);
+        }
+    }
+
+    static String parseString(JsonParser parser, JsonToken value, String field) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            throw new MalformedRequestException("Invalid value for " + field);
+        }
+        return parser.getText();
+    }
+}
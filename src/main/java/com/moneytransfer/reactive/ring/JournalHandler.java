@@ -0,0 +1,70 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.model.Transaction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends every transfer, deposit, withdrawal and hold capture applied and recorded by the store to a journal file,
+ * one CSV line per transaction, the external account being 0:
+ * sequence,transactionId,fromAccount,toAccount,amount,currency
+ * The file is flushed at the end of each batch. It is only appended to, never rotated by the server:
+ * it is opened in append mode, so it can be rotated by copying then truncating it (logrotate copytruncate).
+ *
+ * @author Julian Vasa
+ */
+public class JournalHandler implements TransferEventHandler {
+    private final BufferedWriter writer;
+    /* Reused for every line, the journal thread is the only user */
+    private final StringBuilder line = new StringBuilder(128);
+
+    public JournalHandler(String file) {
+        try {
+            final Path path = Paths.get(file).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Unable to open the journal " + file, exception);
+        }
+    }
+
+    @Override
+    public void onEvent(TransferCommand command, long sequence, boolean endOfBatch) {
+        try {
+            if (command.isRecordedSuccessfully()) {
+                final Transaction transaction = command.getTransaction();
+                line.setLength(0);
+                line.append(sequence).append(',')
+                    .append(transaction.getId()).append(',')
+                    .append(transaction.getFromAccount()).append(',')
+                    .append(transaction.getToAccount()).append(',')
+                    .append(transaction.getAmount().toPlainString()).append(',')
+                    .append(transaction.getCurrency() == null ? "" : transaction.getCurrency().getCurrencyCode())
+                    .append('\n');
+                writer.append(line);
+            }
+            if (endOfBatch) {
+                writer.flush();
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.moneytransfer.reactive.ring;
+
+import io.vertx.core.Future;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Change of the balances other than a transfer (deposit, withdrawal, hold capture), published to the transfer ring
+ * buffer so it is applied by the transfer processor at its turn, then journaled and replicated like a transfer.
+ *
+ * @author Julian Vasa
+ */
+public interface LedgerOperation {
+    /**
+     * Validate and apply the operation on the event loop. The outcome is written in the command like the one of
+     * a transfer: status code and error when it is rejected, transaction and recorded future when it is applied.
+     * The next command is not processed before the returned future completes
+     * @param command the ring buffer slot of the operation
+     * @return completes when the operation is applied or rejected
+     */
+    Future<Void> apply(TransferCommand command);
+
+    /**
+     * Send the response of an applied operation, called by the response dispatcher. The slot is reused afterwards,
+     * what the response needs must be read during the call
+     * @param routingContext the context of the request
+     * @param command the ring buffer slot of the operation
+     */
+    void respond(RoutingContext routingContext, TransferCommand command);
+}
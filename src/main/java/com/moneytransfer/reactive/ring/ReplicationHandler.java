@@ -0,0 +1,37 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.model.Transaction;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Publishes every transfer, deposit, withdrawal and hold capture applied and recorded by the store on the event bus,
+ * in sequence order, so replicas subscribed to the address through a clustered event bus can apply the same changes.
+ *
+ * @author Julian Vasa
+ */
+public class ReplicationHandler implements TransferEventHandler {
+    private final EventBus eventBus;
+    private final String address;
+
+    public ReplicationHandler(EventBus eventBus, String address) {
+        this.eventBus = eventBus;
+        this.address = address;
+    }
+
+    @Override
+    public void onEvent(TransferCommand command, long sequence, boolean endOfBatch) {
+        if (!command.isRecordedSuccessfully()) {
+            return;
+        }
+        final Transaction transaction = command.getTransaction();
+        eventBus.publish(address, new JsonObject()
+            .put("sequence", sequence)
+            .put("id", transaction.getId())
+            .put("fromAccount", transaction.getFromAccount())
+            .put("toAccount", transaction.getToAccount())
+            .put("amount", transaction.getAmount().toPlainString())
+            .put("currency", transaction.getCurrency() == null ? null : transaction.getCurrency().getCurrencyCode())
+            .put("description", transaction.getDescription()));
+    }
+}
@@ -0,0 +1,44 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.handlers.TransactionsHandler;
+import com.moneytransfer.reactive.model.Transaction;
+import io.vertx.ext.web.RoutingContext;
+
+import static com.moneytransfer.reactive.exception.Exception.error;
+
+/**
+ * Sends the response of every processed transfer once the store has recorded it, the ledger operations send their own.
+ * Runs on the event loop right after the transfer processor
+ *
+ * @author Julian Vasa
+ */
+public class ResponseDispatcher implements TransferEventHandler {
+    private final TransactionsHandler transactionsHandler;
+
+    public ResponseDispatcher(TransactionsHandler transactionsHandler) {
+        this.transactionsHandler = transactionsHandler;
+    }
+
+    @Override
+    public void onEvent(TransferCommand command, long sequence, boolean endOfBatch) {
+        final RoutingContext routingContext = command.getRoutingContext();
+        /* The slot outlives the request, do not keep the request reachable from it */
+        command.setRoutingContext(null);
+        final LedgerOperation operation = command.getOperation();
+        command.setOperation(null);
+        if (command.isSuccessful() && operation != null) {
+            operation.respond(routingContext, command);
+        }
+        else if (command.isSuccessful()) {
+            /* The slot may be reused before the store completes, keep what the response needs */
+            final Transaction transaction = command.getTransaction();
+            final int statusCode = command.getStatusCode();
+            command.getRecorded()
+                .onSuccess(v -> transactionsHandler.sendTransactionResponse(routingContext, transaction, statusCode))
+                .onFailure(cause -> error(routingContext, 500, "Unable to store the transfer! Cause: " + cause.getMessage()));
+        }
+        else {
+            error(routingContext, command.getStatusCode(), command.getError());
+        }
+    }
+}
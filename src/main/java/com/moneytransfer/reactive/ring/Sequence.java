@@ -0,0 +1,31 @@
+package com.moneytransfer.reactive.ring;
+
+/**
+ * Position of a producer or consumer in the ring buffer. Each sequence is written by a single thread only.
+ * The value is padded on both sides so sequences of different threads do not share a cache line.
+ *
+ * @author Julian Vasa
+ */
+public class Sequence extends SequenceValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    public Sequence(long initialValue) {
+        set(initialValue);
+    }
+
+    public long get() {
+        return value;
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+}
+
+class SequenceLeftPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequenceLeftPadding {
+    protected volatile long value;
+}
@@ -0,0 +1,53 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.model.TransferRequest;
+import io.vertx.core.Future;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+/**
+ * Preallocated slot of the transfer ring buffer. The HTTP handler parses the request body straight into it,
+ * or sets the ledger operation of a deposit, withdrawal or hold capture. The transfer processor writes the outcome
+ * and the downstream consumers read it, the slot is then reused.
+ *
+ * @author Julian Vasa
+ */
+public class TransferCommand {
+
+    private final TransferRequest request = new TransferRequest();
+    private RoutingContext routingContext;
+    /* Null for a transfer, the operation to apply instead of the transfer request otherwise */
+    private LedgerOperation operation;
+    private int statusCode;
+    private String error;
+    private Transaction transaction;
+    /* Completes when the store has recorded the transaction */
+    private Future<Void> recorded;
+
+    /**
+     * @return true when the transfer was applied to the ledger
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Read by the background consumers, which only get the command once the record completed:
+     * the recorded sequence is written after, so they see the outcome
+     * @return true when the transfer was applied to the ledger and recorded by the store
+     */
+    public boolean isRecordedSuccessfully() {
+        return error == null && recorded != null && recorded.succeeded();
+    }
+
+    void clearOutcome() {
+        this.statusCode = 0;
+        this.error = null;
+        this.transaction = null;
+        this.recorded = null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.moneytransfer.reactive.ring;
+
+/**
+ * Consumer of the transfers processed by the transfer processor
+ */
+public interface TransferEventHandler {
+    /**
+     * Called once per processed transfer, in sequence order
+     * @param command the ring buffer slot, only valid during the call
+     * @param sequence sequence of the transfer in the ring buffer
+     * @param endOfBatch true for the last transfer available, a good time to flush
+     */
+    void onEvent(TransferCommand command, long sequence, boolean endOfBatch);
+
+    /**
+     * Release the resources of the consumer once the ring buffer is stopped
+     */
+    default void close() {
+    }
+}
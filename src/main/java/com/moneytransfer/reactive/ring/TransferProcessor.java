@@ -0,0 +1,136 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.holds.HoldBook;
+import com.moneytransfer.reactive.limits.VelocityLimits;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.model.TransferRequest;
+import com.moneytransfer.reactive.stats.LedgerStats;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import com.moneytransfer.reactive.tracing.Span;
+import com.moneytransfer.reactive.tracing.Tracer;
+import io.vertx.core.Future;
+
+import java.math.BigDecimal;
+
+/**
+ * Business logic of the transfers: validates a transfer command and applies it to the ledger, the deposits, withdrawals
+ * and hold captures are applied by their ledger operation at their turn. It is the single writer of the balances
+ * and runs on the event loop, so it needs no locks. Accounts are still added and deleted by their handlers.
+ * The outcome is written in the command, the response is sent by the response dispatcher.
+ *
+ * @author Julian Vasa
+ */
+public class TransferProcessor {
+    private final AccountStore accountStore;
+    private final TransactionStore transactionStore;
+    private final HoldBook holdBook;
+    private final VelocityLimits velocityLimits;
+    private final LedgerStats ledgerStats;
+    private final Tracer tracer;
+
+    public TransferProcessor(AccountStore accountStore, TransactionStore transactionStore, HoldBook holdBook,
+                             VelocityLimits velocityLimits, LedgerStats ledgerStats, Tracer tracer) {
+        this.accountStore = accountStore;
+        this.transactionStore = transactionStore;
+        this.holdBook = holdBook;
+        this.velocityLimits = velocityLimits;
+        this.ledgerStats = ledgerStats;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Validate and apply a transfer. The next command must not be processed before the returned future completes,
+     * it is already completed when the store has everything in memory.
+     * @param command the transfer command, its outcome is set when the future completes
+     * @return completes when the transfer is applied or rejected
+     */
+    public Future<Void> process(TransferCommand command) {
+        final TransferRequest request = command.getRequest();
+        command.clearOutcome();
+        if (command.getOperation() != null) {
+            return command.getOperation().apply(command);
+        }
+
+        final Span span = tracer.startSpan(command.getRoutingContext(), "transfer.lookup");
+        final Future<Transaction> existing = request.isIdPresent()
+            ? transactionStore.get(request.getId()) : Future.succeededFuture();
+        final Future<Account> fromAccount = accountStore.get(request.getFromAccount());
+        final Future<Account> toAccount = accountStore.get(request.getToAccount());
+        return Future.all(existing, fromAccount, toAccount)
+            .onComplete(lookup -> {
+                span.end();
+                if (lookup.failed()) {
+                    command.setStatusCode(500);
+                    command.setError("Unable to process the transfer! Cause: " + lookup.cause().getMessage());
+                }
+                else {
+                    try {
+                        apply(command, existing.result() != null, fromAccount.result(), toAccount.result());
+                    } catch (RuntimeException exception) {
+                        command.setStatusCode(500);
+                        command.setError("Unable to process the transfer! Cause: " + exception.getMessage());
+                    }
+                }
+            })
+            .<Void>mapEmpty()
+            .otherwiseEmpty();
+    }
+
+    private void apply(TransferCommand command, boolean duplicate, Account fromAccount, Account toAccount) {
+        final TransferRequest request = command.getRequest();
+        Span span = tracer.startSpan(command.getRoutingContext(), "transfer.validate");
+        if (duplicate) {
+            reject(command, span, 409, "Transaction already exists in the DB!");
+            return;
+        }
+        if (fromAccount == null) {
+            reject(command, span, 404, "Source Account does not exist!");
+            return;
+        }
+        if (toAccount == null) {
+            reject(command, span, 404, "Destination Account does not exist!");
+            return;
+        }
+        final BigDecimal amount = request.getAmount();
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            reject(command, span, 409, "Incorrenct transaction amount!");
+            return;
+        }
+        /* The amount held by open holds can not be transferred */
+        if (holdBook.available(fromAccount).compareTo(amount) < 0) {
+            reject(command, span, 409, "Insufficient funds! Unable to process the transfer!");
+            return;
+        }
+        /* Last check, the transfer is counted in the velocity windows of the source account when it passes */
+        final long now = System.currentTimeMillis();
+        final String limitExceeded = velocityLimits.tryDebit(fromAccount, amount, now);
+        if (limitExceeded != null) {
+            reject(command, span, 429, "Velocity limit exceeded for account " + fromAccount.getId() + ": " + limitExceeded);
+            return;
+        }
+        span.end();
+
+        span = tracer.startSpan(command.getRoutingContext(), "transfer.mutate");
+        final Transaction transaction = request.toTransaction();
+        fromAccount.withdraw(amount);
+        toAccount.deposit(amount);
+        transaction.setStatus(TransactionStatus.SUCCESSFUL);
+        /* Counted once the store confirms the record, a failed record changes no aggregate and takes back its debit */
+        command.setRecorded(transactionStore.record(transaction)
+            .onSuccess(v -> ledgerStats.transferred(fromAccount, toAccount, amount, transaction.getCurrency(), now))
+            .onFailure(cause -> velocityLimits.undoDebit(fromAccount, amount, now)));
+        span.end();
+        command.setStatusCode(201);
+        command.setTransaction(transaction);
+    }
+
+    /* End the span of the stage which rejected the transfer and keep the error for the response */
+    private static void reject(TransferCommand command, Span span, int statusCode, String error) {
+        span.end();
+        command.setStatusCode(statusCode);
+        command.setError(error);
+    }
+}
@@ -0,0 +1,361 @@
+package com.moneytransfer.reactive.ring;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Preallocated ring buffer of transfer commands, in the style of the LMAX disruptor.
+ *
+ * The HTTP handler claims a slot, parses the request into it and publishes it. The deposits, withdrawals and hold
+ * captures are published as ledger operations. Published commands are applied in batches by the transfer processor
+ * on the event loop, which is the single writer of the balances: the journal and the replicas get every change
+ * of the balances in the order it was applied.
+ * When the store has to load an account the batch is cut there and the following commands wait for it, in order.
+ * The processed commands are then consumed by the response dispatcher, on the event loop, and once the store
+ * has recorded their transactions by the background consumers (journal, replication), each on its own thread,
+ * so a transfer the store failed to record is never journaled nor replicated.
+ * A slot is reused only once every consumer has passed it, when the ring is full tryClaim() fails.
+ *
+ * Producer, processor and response dispatcher share the event loop, the background consumers only read
+ * the slots up to the recorded sequence, so no locks are needed. An idle background consumer parks until
+ * the event loop unparks it with the next recorded commands.
+ *
+ * A consumer failure is logged and counted. The command is skipped, unless the consumer is required (the journal):
+ * the consumer then stops and so does the ring, tryClaim() fails from then on.
+ *
+ * @author Julian Vasa
+ */
+public class TransferRingBuffer {
+    private static final Logger LOGGER = Logger.getLogger(TransferRingBuffer.class.getName());
+
+    private final TransferCommand[] slots;
+    private final int mask;
+    private final Sequence published = new Sequence(-1);
+    private final Sequence processed = new Sequence(-1);
+    private final Sequence dispatched = new Sequence(-1);
+    /* Processed commands whose record completed, written on the event loop after the outcome of the record */
+    private final Sequence recorded = new Sequence(-1);
+    private final TransferProcessor processor;
+    private final TransferEventHandler responseDispatcher;
+    private final List<BackgroundConsumer> consumers = new ArrayList<>();
+    private Context context;
+    private boolean drainScheduled;
+    private boolean waitingForStore;
+    private boolean waitingForRecord;
+    private long nextToProcess;
+    /* Minimum sequence of the consumers when last read, refreshed only when the producer reaches it */
+    private long cachedGate = -1;
+    private long dispatchFailures;
+    /* Set by the thread of a required consumer which failed */
+    private volatile String haltCause;
+
+    /**
+     * @param size number of slots, a power of 2
+     * @param processor business logic applied to every command
+     * @param responseDispatcher consumer sending the responses, runs on the event loop
+     */
+    public TransferRingBuffer(int size, TransferProcessor processor, TransferEventHandler responseDispatcher) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("The ring buffer size must be a power of 2: " + size);
+        }
+        this.slots = new TransferCommand[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new TransferCommand();
+        }
+        this.mask = size - 1;
+        this.processor = processor;
+        this.responseDispatcher = responseDispatcher;
+    }
+
+    /**
+     * Add a consumer of the processed commands running on its own thread, must be called before start()
+     * @param name name of the consumer thread
+     * @param handler the consumer
+     * @param required true to stop the ring when the consumer fails, false to skip the command
+     */
+    public void addConsumer(String name, TransferEventHandler handler, boolean required) {
+        consumers.add(new BackgroundConsumer(name, handler, required));
+    }
+
+    /**
+     * Start the background consumers
+     * @param context the event loop context running the producer, the processor and the response dispatcher
+     */
+    public void start(Context context) {
+        this.context = context;
+        for (BackgroundConsumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    /**
+     * Stop the background consumers once they consumed every processed command,
+     * waits for them so it must not be called on the event loop
+     */
+    public void stop() {
+        for (BackgroundConsumer consumer : consumers) {
+            consumer.running = false;
+            LockSupport.unpark(consumer.thread);
+        }
+        for (BackgroundConsumer consumer : consumers) {
+            try {
+                consumer.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            consumer.handler.close();
+        }
+    }
+
+    /**
+     * Claim the next slot, called on the event loop
+     * @return sequence of the claimed slot, or -1 when the ring is full or stopped by a consumer failure
+     */
+    public long tryClaim() {
+        if (haltCause != null) {
+            return -1;
+        }
+        final long next = published.get() + 1;
+        final long wrapPoint = next - slots.length;
+        if (wrapPoint > cachedGate) {
+            cachedGate = minimumConsumerSequence();
+            if (wrapPoint > cachedGate) {
+                return -1;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param sequence a claimed or published sequence
+     * @return the slot of the sequence
+     */
+    public TransferCommand get(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Publish a claimed slot, it is processed with the other commands published before the event loop gets to it.
+     * A claimed slot which is not published is simply claimed again by the next request.
+     * @param sequence the claimed sequence
+     */
+    public void publish(long sequence) {
+        published.set(sequence);
+        if (!drainScheduled) {
+            drainScheduled = true;
+            context.runOnContext(v -> drain());
+        }
+    }
+
+    /**
+     * Claim a slot for a ledger operation and publish it, called on the event loop
+     * @param routingContext the context of the request, the operation responds to it
+     * @param operation the operation
+     * @return false when the ring is full or stopped by a consumer failure, see claimFailure()
+     */
+    public boolean publish(RoutingContext routingContext, LedgerOperation operation) {
+        final long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        final TransferCommand command = get(sequence);
+        command.setRoutingContext(routingContext);
+        command.setOperation(operation);
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * @return the error of a request for which no slot could be claimed
+     */
+    public String claimFailure() {
+        return haltCause == null
+            ? "Too many transfers in progress, please retry later!"
+            : "Transfers are stopped! Cause: " + haltCause;
+    }
+
+    /**
+     * @return number of commands published and not yet dispatched
+     */
+    public long pending() {
+        return published.get() - dispatched.get();
+    }
+
+    /**
+     * @return the failure of the required consumer which stopped the ring, null while the ring runs
+     */
+    public String getHaltCause() {
+        return haltCause;
+    }
+
+    /**
+     * Report the sequences of the ring and the failures of its consumers, called on the event loop
+     * @return the report
+     */
+    public JsonObject report() {
+        JsonArray consumerStats = new JsonArray();
+        for (BackgroundConsumer consumer : consumers) {
+            consumerStats.add(new JsonObject()
+                .put("name", consumer.thread.getName())
+                .put("required", consumer.required)
+                .put("sequence", consumer.sequence.get())
+                .put("failures", consumer.failures)
+                .put("lastFailure", consumer.lastFailure));
+        }
+        return new JsonObject()
+            .put("size", slots.length)
+            .put("published", published.get())
+            .put("processed", processed.get())
+            .put("dispatched", dispatched.get())
+            .put("recorded", recorded.get())
+            .put("dispatchFailures", dispatchFailures)
+            .put("haltCause", haltCause)
+            .put("consumers", consumerStats);
+    }
+
+    /* Process every published command as a batch, then hand them to the consumers */
+    private void drain() {
+        drainScheduled = false;
+        if (waitingForStore) {
+            /* Resumed when the store answers */
+            return;
+        }
+        final long available = published.get();
+        while (nextToProcess <= available) {
+            final Future<Void> processing = process(get(nextToProcess));
+            if (!processing.isComplete()) {
+                /* The store has to load something: hand over what is processed and resume in order once it is there */
+                waitingForStore = true;
+                processing.onComplete(done -> {
+                    waitingForStore = false;
+                    nextToProcess++;
+                    drain();
+                });
+                break;
+            }
+            nextToProcess++;
+        }
+        advance(nextToProcess - 1);
+    }
+
+    private Future<Void> process(TransferCommand command) {
+        try {
+            return processor.process(command);
+        } catch (RuntimeException exception) {
+            command.setStatusCode(500);
+            command.setError("Unable to process the transfer! Cause: " + exception.getMessage());
+            return Future.succeededFuture();
+        }
+    }
+
+    /* Dispatch the responses of the processed commands and hand the recorded ones to the background consumers */
+    private void advance(long processedSequence) {
+        if (processedSequence <= processed.get()) {
+            return;
+        }
+        processed.set(processedSequence);
+        for (long sequence = dispatched.get() + 1; sequence <= processedSequence; sequence++) {
+            try {
+                responseDispatcher.onEvent(get(sequence), sequence, sequence == processedSequence);
+            } catch (RuntimeException exception) {
+                /* The slot must still be released, or the ring would fill up */
+                dispatchFailures++;
+                LOGGER.log(Level.WARNING, "Unable to dispatch the response of the transfer " + sequence, exception);
+            }
+        }
+        dispatched.set(processedSequence);
+        advanceRecorded();
+    }
+
+    /* Move the recorded sequence up to the first processed command whose record is not complete and wait for it */
+    private void advanceRecorded() {
+        if (waitingForRecord) {
+            return;
+        }
+        final long available = processed.get();
+        long sequence = recorded.get() + 1;
+        while (sequence <= available) {
+            final Future<Void> record = get(sequence).getRecorded();
+            if (record != null && !record.isComplete()) {
+                waitingForRecord = true;
+                record.onComplete(done -> {
+                    waitingForRecord = false;
+                    advanceRecorded();
+                });
+                break;
+            }
+            sequence++;
+        }
+        if (sequence - 1 > recorded.get()) {
+            recorded.set(sequence - 1);
+            for (BackgroundConsumer consumer : consumers) {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+    }
+
+    private long minimumConsumerSequence() {
+        long minimum = dispatched.get();
+        for (BackgroundConsumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    private class BackgroundConsumer implements Runnable {
+        private final Sequence sequence = new Sequence(-1);
+        private final TransferEventHandler handler;
+        private final boolean required;
+        private final Thread thread;
+        private volatile boolean running = true;
+        /* Written by the consumer thread only */
+        private volatile long failures;
+        private volatile String lastFailure;
+
+        BackgroundConsumer(String name, TransferEventHandler handler, boolean required) {
+            this.handler = handler;
+            this.required = required;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (running || next <= recorded.get()) {
+                final long available = recorded.get();
+                if (available < next) {
+                    /* Unparked by advanceRecorded() and stop(), a permit given before parking makes park() return at once */
+                    LockSupport.park(this);
+                    continue;
+                }
+                for (long current = next; current <= available; current++) {
+                    try {
+                        handler.onEvent(get(current), current, current == available);
+                    } catch (RuntimeException exception) {
+                        failures++;
+                        lastFailure = "Sequence " + current + ": " + exception;
+                        LOGGER.log(Level.WARNING, thread.getName() + " failed on the transfer " + current, exception);
+                        if (required) {
+                            /* Do not apply transfers this consumer can not follow: the slots from here are never released */
+                            haltCause = thread.getName() + " failed: " + exception;
+                            return;
+                        }
+                    }
+                }
+                sequence.set(available);
+                next = available + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.moneytransfer.reactive.startup;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.model.TransferRequest;
+import com.moneytransfer.reactive.parser.TransferRequestParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+
+/**
+ * Encode and decode an account and a transaction once before the server listens, so Jackson introspects the classes
+ * and builds its serializers at start instead of during the first requests.
+ *
+ * @author Julian Vasa
+ */
+public class CodecWarmup {
+    private static final String TRANSFER = "{\"fromAccount\": \"1\", \"toAccount\": 2, \"amount\": \"0.01\", "
+        + "\"currency\": \"EUR\", \"description\": \"warm-up\"}";
+
+    private CodecWarmup() {
+    }
+
+    public static void run() {
+        final Currency currency = Currency.getInstance("EUR");
+        final Account account = Account.builder()
+            .id(1)
+            .name("warm-up")
+            .balance(BigDecimal.ONE)
+            .openingBalance(BigDecimal.ONE)
+            .currency(currency)
+            .build();
+        /* Built with an id so no transaction id is taken from the generator */
+        final Transaction transaction = new Transaction(0L, 1, 2, new BigDecimal("0.01"), currency);
+        transaction.setStatus(TransactionStatus.SUCCESSFUL);
+        /* The handlers use both the compact and the pretty mappers, each has its own serializer cache */
+        Json.decodeValue(Json.encodePrettily(account), Account.class);
+        Json.decodeValue(Json.encode(account), Account.class);
+        Json.encodePrettily(Collections.singletonList(account));
+        Json.encodePrettily(transaction);
+        Json.encode(transaction);
+        Json.encodePrettily(Collections.singletonList(transaction));
+        new TransferRequestParser().parse(Buffer.buffer(TRANSFER), new TransferRequest());
+    }
+}
@@ -0,0 +1,227 @@
+package com.moneytransfer.reactive.startup;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.store.LedgerStore;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Compact binary image of the accounts and transactions of a ledger, loaded at start into an empty store
+ * instead of building the initial state request by request. Balances are stored as they are, the transactions
+ * are not applied again. Decoding is a single pass over one Buffer, without JSON parsing nor reflection.
+ *
+ * Layout, big endian: magic, format version, account count, accounts (id, name, currency, balance, opening balance),
+ * transaction count, transactions (id, from, to, amount, currency, description, status).
+ * Strings are a length (-1 for null) and UTF-8 bytes, decimals a scale and the bytes of the unscaled value.
+ *
+ * @author Julian Vasa
+ */
+public class LedgerImage {
+    private static final int MAGIC = 0x4C454447;
+    private static final int FORMAT_VERSION = 1;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final List<Account> accounts;
+    private final List<Transaction> transactions;
+
+    private LedgerImage(List<Account> accounts, List<Transaction> transactions) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Load an image into an empty store
+     * @param vertx the Vert.x instance
+     * @param path file of the image
+     * @param ledgerStore the store, opened
+     * @return true once the image is stored, false if there is no image file
+     */
+    public static Future<Boolean> load(Vertx vertx, String path, LedgerStore ledgerStore) {
+        return vertx.fileSystem().exists(path).compose(exists -> {
+            if (!exists) {
+                return Future.succeededFuture(false);
+            }
+            return vertx.fileSystem().readFile(path)
+                .map(LedgerImage::decode)
+                .compose(image -> image.storeIn(ledgerStore))
+                .map(true);
+        });
+    }
+
+    /**
+     * Write the image of the current content of a store
+     * @param vertx the Vert.x instance
+     * @param path file of the image, replaced
+     * @param ledgerStore the store
+     * @return completes once the file is written
+     */
+    public static Future<Void> write(Vertx vertx, String path, LedgerStore ledgerStore) {
+        final Future<List<Account>> accounts = ledgerStore.accounts().getAll();
+        final Future<List<Transaction>> transactions = ledgerStore.transactions().getAll();
+        return Future.all(accounts, transactions)
+            .compose(v -> vertx.fileSystem().writeFile(path, new LedgerImage(accounts.result(), transactions.result()).encode()));
+    }
+
+    /* The accounts are inserted with their final balances, so the transactions are restored without applying them again */
+    private Future<Void> storeIn(LedgerStore ledgerStore) {
+        final List<Future<Boolean>> inserts = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            inserts.add(ledgerStore.accounts().insert(account));
+        }
+        return Future.all(inserts).compose(v -> {
+            for (int i = 0; i < inserts.size(); i++) {
+                if (!inserts.get(i).result()) {
+                    return Future.failedFuture("Account " + accounts.get(i).getId() + " of the ledger image already exists");
+                }
+            }
+            return ledgerStore.transactions().restore(transactions);
+        }).onSuccess(v -> {
+            long lastId = Long.MIN_VALUE;
+            for (Transaction transaction : transactions) {
+                lastId = Math.max(lastId, transaction.getId());
+            }
+            if (!transactions.isEmpty()) {
+                Transaction.continueAfter(lastId);
+            }
+        });
+    }
+
+    Buffer encode() {
+        final Buffer buffer = Buffer.buffer(64 + accounts.size() * 64 + transactions.size() * 64);
+        buffer.appendInt(MAGIC).appendInt(FORMAT_VERSION).appendInt(accounts.size());
+        for (Account account : accounts) {
+            buffer.appendInt(account.getId());
+            appendString(buffer, account.getName());
+            appendCurrency(buffer, account.getCurrency());
+            appendDecimal(buffer, account.getBalance());
+            appendDecimal(buffer, account.getOpeningBalance());
+        }
+        buffer.appendInt(transactions.size());
+        for (Transaction transaction : transactions) {
+            buffer.appendLong(transaction.getId())
+                .appendInt(transaction.getFromAccount())
+                .appendInt(transaction.getToAccount());
+            appendDecimal(buffer, transaction.getAmount());
+            appendCurrency(buffer, transaction.getCurrency());
+            appendString(buffer, transaction.getDescription());
+            buffer.appendByte(transaction.getStatus() == null ? -1 : (byte) transaction.getStatus().ordinal());
+        }
+        return buffer;
+    }
+
+    static LedgerImage decode(Buffer buffer) {
+        final Reader reader = new Reader(buffer);
+        if (reader.readInt() != MAGIC || reader.readInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a ledger image or unsupported format version");
+        }
+        final int accountCount = reader.readInt();
+        final List<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            final Account account = new Account();
+            account.setId(reader.readInt());
+            account.setName(reader.readString());
+            account.setCurrency(reader.readCurrency());
+            account.setBalance(reader.readDecimal());
+            account.setOpeningBalance(reader.readDecimal());
+            accounts.add(account);
+        }
+        final int transactionCount = reader.readInt();
+        final List<Transaction> transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            final long id = reader.readLong();
+            final int fromAccount = reader.readInt();
+            final int toAccount = reader.readInt();
+            final BigDecimal amount = reader.readDecimal();
+            final Transaction transaction = new Transaction(id, fromAccount, toAccount, amount, reader.readCurrency());
+            transaction.setDescription(reader.readString());
+            final byte status = reader.readByte();
+            transaction.setStatus(status < 0 ? null : STATUSES[status]);
+            transactions.add(transaction);
+        }
+        return new LedgerImage(accounts, transactions);
+    }
+
+    private static void appendString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length).appendBytes(bytes);
+    }
+
+    private static void appendCurrency(Buffer buffer, Currency currency) {
+        appendString(buffer, currency == null ? null : currency.getCurrencyCode());
+    }
+
+    private static void appendDecimal(Buffer buffer, BigDecimal value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+            return;
+        }
+        final byte[] unscaled = value.unscaledValue().toByteArray();
+        buffer.appendInt(unscaled.length).appendInt(value.scale()).appendBytes(unscaled);
+    }
+
+    /* Sequential reads over the buffer */
+    private static final class Reader {
+        private final Buffer buffer;
+        private int position;
+
+        Reader(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int readInt() {
+            final int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        long readLong() {
+            final long value = buffer.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        byte readByte() {
+            return buffer.getByte(position++);
+        }
+
+        String readString() {
+            final int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            final String value = buffer.getString(position, position + length, StandardCharsets.UTF_8.name());
+            position += length;
+            return value;
+        }
+
+        Currency readCurrency() {
+            final String code = readString();
+            return code == null ? null : Currency.getInstance(code);
+        }
+
+        BigDecimal readDecimal() {
+            final int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            final int scale = readInt();
+            final BigDecimal value = new BigDecimal(new BigInteger(buffer.getBytes(position, position + length)), scale);
+            position += length;
+            return value;
+        }
+    }
+}
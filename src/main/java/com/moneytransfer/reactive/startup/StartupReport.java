@@ -0,0 +1,109 @@
+package com.moneytransfer.reactive.startup;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from the start of the JVM to the server listening, to the first response and to the steady state.
+ * The requests are counted in windows of startup.steadyWindow requests (default 500): the steady state is reached
+ * at the end of the first window whose average latency is not 10% below the one of the previous window,
+ * the warm-up stopped paying off. Requests are not measured anymore once it is reached.
+ *
+ * Only accessed from the event loop.
+ *
+ * @author Julian Vasa
+ */
+public class StartupReport {
+    private static final double STEADY_IMPROVEMENT = 0.9;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final int windowRequests;
+    private long readyMillis = -1;
+    private long firstResponseMillis = -1;
+    private long firstLatencyNanos;
+    private long steadyMillis = -1;
+    private long requests;
+    private long windowCount;
+    private long windowNanos;
+    private double previousAverageNanos = Double.NaN;
+    private double steadyAverageNanos;
+
+    public StartupReport(int windowRequests) {
+        this.windowRequests = windowRequests;
+    }
+
+    /**
+     * Create the report from the verticle configuration
+     * @param config verticle configuration with startup.steadyWindow (default 500)
+     * @return the report
+     */
+    public static StartupReport create(JsonObject config) {
+        return new StartupReport(config.getInteger("startup.steadyWindow", 500));
+    }
+
+    /**
+     * The server listens
+     */
+    public void ready() {
+        readyMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Measure the latency of a request until the steady state is reached
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    public void track(RoutingContext routingContext) {
+        if (steadyMillis < 0) {
+            final long start = System.nanoTime();
+            routingContext.addBodyEndHandler(v -> completed(System.nanoTime() - start));
+        }
+        routingContext.next();
+    }
+
+    private void completed(long latencyNanos) {
+        if (steadyMillis >= 0) {
+            return;
+        }
+        if (requests++ == 0) {
+            firstResponseMillis = System.currentTimeMillis();
+            firstLatencyNanos = latencyNanos;
+        }
+        windowNanos += latencyNanos;
+        if (++windowCount < windowRequests) {
+            return;
+        }
+        final double averageNanos = (double) windowNanos / windowCount;
+        if (averageNanos >= previousAverageNanos * STEADY_IMPROVEMENT) {
+            steadyMillis = System.currentTimeMillis();
+            steadyAverageNanos = averageNanos;
+        }
+        previousAverageNanos = averageNanos;
+        windowCount = 0;
+        windowNanos = 0;
+    }
+
+    /**
+     * @return the startup times in milliseconds since the start of the JVM, null until reached
+     */
+    public JsonObject report() {
+        return new JsonObject()
+            .put("timeToReadyMillis", sinceJvmStart(readyMillis))
+            .put("timeToFirstResponseMillis", sinceJvmStart(firstResponseMillis))
+            .put("firstResponseLatencyMillis", firstResponseMillis < 0 ? null : toMillis(firstLatencyNanos))
+            .put("timeToSteadyStateMillis", sinceJvmStart(steadyMillis))
+            .put("steadyStateRequests", steadyMillis < 0 ? null : requests)
+            .put("steadyStateLatencyMillis", steadyMillis < 0 ? null : steadyAverageNanos / TimeUnit.MILLISECONDS.toNanos(1))
+            .put("steadyWindowRequests", windowRequests);
+    }
+
+    private Long sinceJvmStart(long millis) {
+        return millis < 0 ? null : millis - jvmStartMillis;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
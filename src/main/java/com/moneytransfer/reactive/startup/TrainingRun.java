@@ -0,0 +1,69 @@
+package com.moneytransfer.reactive.startup;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+
+/**
+ * Workload of the build run which records the class data sharing archive: it sends the usual reads and writes
+ * to the server so the classes of every route are loaded and end up in the archive.
+ *
+ * @author Julian Vasa
+ */
+public class TrainingRun {
+    private static final String TRANSFER = "{\"fromAccount\": 2222, \"toAccount\": 1111, \"amount\": \"0.01\", \"currency\": \"USD\"}";
+    private static final String[][] WORKLOAD = {
+        {"GET", "/accounts"},
+        {"GET", "/accounts/1111"},
+        {"GET", "/accounts/search?currency=EUR"},
+        {"GET", "/accounts/1111/balance"},
+        {"POST", "/transactions"},
+        {"GET", "/transactions/account/1111"},
+        {"PUT", "/accounts/1111/deposit/1"},
+        {"PUT", "/accounts/1111/withdraw/1"},
+        {"GET", "/stats"},
+        {"GET", "/health"}
+    };
+
+    private final HttpClient client;
+    private final int port;
+    private final int requests;
+    private final Promise<Void> done = Promise.promise();
+    private int sent;
+
+    private TrainingRun(Vertx vertx, int port, int requests) {
+        this.client = vertx.createHttpClient();
+        this.port = port;
+        this.requests = requests;
+    }
+
+    /**
+     * Send the workload, one request at a time
+     * @param vertx the Vert.x instance
+     * @param port port of the server
+     * @param requests number of requests
+     * @return completes once every response is received
+     */
+    public static Future<Void> run(Vertx vertx, int port, int requests) {
+        final TrainingRun run = new TrainingRun(vertx, port, requests);
+        run.next();
+        return run.done.future().onComplete(v -> run.client.close());
+    }
+
+    private void next() {
+        if (sent == requests) {
+            done.complete();
+            return;
+        }
+        final String[] request = WORKLOAD[sent++ % WORKLOAD.length];
+        final HttpMethod method = HttpMethod.valueOf(request[0]);
+        client.request(method, port, "localhost", request[1])
+            .compose(httpRequest -> method == HttpMethod.POST ? httpRequest.send(Buffer.buffer(TRANSFER)) : httpRequest.send())
+            .compose(response -> response.body())
+            .onSuccess(body -> next())
+            .onFailure(done::fail);
+    }
+}
@@ -0,0 +1,83 @@
+package com.moneytransfer.reactive.stats;
+
+import java.util.Arrays;
+
+/**
+ * Counters of a few metrics per time bucket (hour, day...) for the latest buckets, plus their running totals
+ * over the ring. Moving the ring forward clears the buckets which left it, at most one pass over the ring,
+ * so adding to it or reading it costs the same whatever the number of transactions.
+ *
+ * @author Julian Vasa
+ */
+class BucketRing {
+    private final int buckets;
+    private final int metrics;
+    /* Bucket after bucket, the metrics of a bucket next to each other */
+    private final long[] counters;
+    private final long[] totals;
+    /* Number of the latest bucket since the epoch, time / bucket length */
+    private long lastBucket = Long.MIN_VALUE;
+
+    BucketRing(int buckets, int metrics) {
+        this.buckets = buckets;
+        this.metrics = metrics;
+        this.counters = new long[buckets * metrics];
+        this.totals = new long[metrics];
+    }
+
+    /**
+     * @param bucket number of the bucket, counted in the latest one if it is older (the clock went back)
+     * @param metric index of the metric
+     * @param value added to the metric
+     */
+    void add(long bucket, int metric, long value) {
+        advance(bucket);
+        final int index = slot(lastBucket) * metrics + metric;
+        counters[index] = LedgerStats.saturatedAdd(counters[index], value);
+        totals[metric] = LedgerStats.saturatedAdd(totals[metric], value);
+    }
+
+    /**
+     * @param bucket number of the current bucket
+     * @param metric index of the metric
+     * @return the metric in the current bucket
+     */
+    long current(long bucket, int metric) {
+        advance(bucket);
+        return bucket == lastBucket ? counters[slot(lastBucket) * metrics + metric] : 0;
+    }
+
+    /**
+     * @param bucket number of the current bucket
+     * @param metric index of the metric
+     * @return the metric over the current bucket and the previous ones in the ring
+     */
+    long total(long bucket, int metric) {
+        advance(bucket);
+        return totals[metric];
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= lastBucket) {
+            return;
+        }
+        if (lastBucket == Long.MIN_VALUE || bucket - lastBucket >= buckets) {
+            Arrays.fill(counters, 0);
+            Arrays.fill(totals, 0);
+        }
+        else {
+            for (long cleared = lastBucket + 1; cleared <= bucket; cleared++) {
+                final int first = slot(cleared) * metrics;
+                for (int metric = 0; metric < metrics; metric++) {
+                    totals[metric] -= counters[first + metric];
+                    counters[first + metric] = 0;
+                }
+            }
+        }
+        lastBucket = bucket;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets);
+    }
+}
@@ -0,0 +1,231 @@
+package com.moneytransfer.reactive.stats;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.CurrencyBalance;
+import io.netty.util.collection.IntObjectHashMap;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates of the ledger maintained as the ledger changes, so they are read in constant time whatever its size:
+ * per currency the number of accounts, the money they hold and the number and volume of the transactions per hour
+ * and per day, per account its daily inflow and outflow. Days are UTC days.
+ *
+ * The volumes are primitive counters per bucket, in units of 1/10000 rounded half even, the daily counters of an
+ * account are allocated on its first transaction. The money held per currency is exact.
+ * Like the ledger it is only accessed from the event loop.
+ *
+ * @author Julian Vasa
+ */
+public class LedgerStats {
+    /* Volumes are counted as longs in units of 1/10000 */
+    private static final int AMOUNT_SCALE = 4;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int HOURS = 24;
+    /* Metrics of a currency */
+    private static final int TRANSACTIONS = 0;
+    private static final int VOLUME = 1;
+    /* Metrics of an account */
+    private static final int INFLOW = 0;
+    private static final int INFLOW_COUNT = 1;
+    private static final int OUTFLOW = 2;
+    private static final int OUTFLOW_COUNT = 3;
+
+    private final int days;
+    private final Map<Currency, CurrencyStats> currencies = new HashMap<>();
+    private final IntObjectHashMap<BucketRing> accountFlows = new IntObjectHashMap<>();
+
+    /**
+     * @param days number of days of the daily counters, today included
+     */
+    public LedgerStats(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("stats.days must be positive: " + days);
+        }
+        this.days = days;
+    }
+
+    /**
+     * Create the aggregates from the verticle configuration
+     * @param config verticle configuration with stats.days (default 30)
+     * @return empty aggregates
+     */
+    public static LedgerStats create(JsonObject config) {
+        return new LedgerStats(config.getInteger("stats.days", 30));
+    }
+
+    /**
+     * Count an account added to the ledger, created, imported or already stored at start
+     * @param account the account
+     */
+    public void accountOpened(Account account) {
+        final CurrencyStats stats = currency(account.getCurrency());
+        stats.accounts++;
+        stats.balance = stats.balance.add(account.getBalance());
+    }
+
+    /**
+     * Count the accounts of a currency already stored at start
+     * @param balance the number of accounts of the currency and their total balance
+     */
+    public void accountsOpened(CurrencyBalance balance) {
+        final CurrencyStats stats = currency(balance.getCurrency());
+        stats.accounts += balance.getAccounts();
+        stats.balance = stats.balance.add(balance.getBalance());
+    }
+
+    /**
+     * Count an account removed from the ledger with its remaining balance
+     * @param account the account
+     */
+    public void accountClosed(Account account) {
+        final CurrencyStats stats = currency(account.getCurrency());
+        stats.accounts--;
+        stats.balance = stats.balance.subtract(account.getBalance());
+        accountFlows.remove(account.getId());
+    }
+
+    /**
+     * Count a transaction applied to the ledger
+     * @param fromAccount debited account, null for a deposit from the external account
+     * @param toAccount credited account, null for a withdrawal to the external account
+     * @param amount amount moved
+     * @param currency currency of the transaction
+     * @param nowMillis current time
+     */
+    public void transferred(Account fromAccount, Account toAccount, BigDecimal amount, Currency currency, long nowMillis) {
+        final long units = toUnits(amount);
+        final long hour = Math.floorDiv(nowMillis, HOUR_MILLIS);
+        final long day = Math.floorDiv(nowMillis, DAY_MILLIS);
+        final CurrencyStats stats = currency(currency);
+        stats.hourly.add(hour, TRANSACTIONS, 1);
+        stats.hourly.add(hour, VOLUME, units);
+        stats.daily.add(day, TRANSACTIONS, 1);
+        stats.daily.add(day, VOLUME, units);
+        if (fromAccount != null) {
+            final CurrencyStats from = currency(fromAccount.getCurrency());
+            from.balance = from.balance.subtract(amount);
+            final BucketRing flows = flows(fromAccount.getId());
+            flows.add(day, OUTFLOW, units);
+            flows.add(day, OUTFLOW_COUNT, 1);
+        }
+        if (toAccount != null) {
+            final CurrencyStats to = currency(toAccount.getCurrency());
+            to.balance = to.balance.add(amount);
+            final BucketRing flows = flows(toAccount.getId());
+            flows.add(day, INFLOW, units);
+            flows.add(day, INFLOW_COUNT, 1);
+        }
+    }
+
+    /**
+     * @param nowMillis current time
+     * @return per currency the accounts, the money held, the transactions of the last 24 hours, of today
+     *         and of the last days
+     */
+    public JsonObject report(long nowMillis) {
+        final long hour = Math.floorDiv(nowMillis, HOUR_MILLIS);
+        final long day = Math.floorDiv(nowMillis, DAY_MILLIS);
+        final JsonObject byCurrency = new JsonObject();
+        for (Map.Entry<Currency, CurrencyStats> entry : currencies.entrySet()) {
+            final CurrencyStats stats = entry.getValue();
+            byCurrency.put(entry.getKey() == null ? "none" : entry.getKey().getCurrencyCode(), new JsonObject()
+                .put("accounts", stats.accounts)
+                .put("balance", stats.balance)
+                .put("last24Hours", volume(stats.hourly.total(hour, TRANSACTIONS), stats.hourly.total(hour, VOLUME)))
+                .put("today", volume(stats.daily.current(day, TRANSACTIONS), stats.daily.current(day, VOLUME)))
+                .put("lastDays", volume(stats.daily.total(day, TRANSACTIONS), stats.daily.total(day, VOLUME))));
+        }
+        return new JsonObject()
+            .put("days", days)
+            .put("currencies", byCurrency);
+    }
+
+    /**
+     * @param accountId account number
+     * @param nowMillis current time
+     * @return the inflow and outflow of the account today and over the last days
+     */
+    public JsonObject accountReport(int accountId, long nowMillis) {
+        final long day = Math.floorDiv(nowMillis, DAY_MILLIS);
+        final BucketRing flows = accountFlows.get(accountId);
+        return new JsonObject()
+            .put("id", accountId)
+            .put("days", days)
+            .put("today", flows(flows, day, true))
+            .put("lastDays", flows(flows, day, false));
+    }
+
+    private CurrencyStats currency(Currency currency) {
+        CurrencyStats stats = currencies.get(currency);
+        if (stats == null) {
+            stats = new CurrencyStats(days);
+            currencies.put(currency, stats);
+        }
+        return stats;
+    }
+
+    private BucketRing flows(int accountId) {
+        BucketRing flows = accountFlows.get(accountId);
+        if (flows == null) {
+            flows = new BucketRing(days, 4);
+            accountFlows.put(accountId, flows);
+        }
+        return flows;
+    }
+
+    private static JsonObject volume(long transactions, long units) {
+        return new JsonObject()
+            .put("transactions", transactions)
+            .put("volume", fromUnits(units));
+    }
+
+    /* The flows of an account on the current day or over the ring, none if it has no transaction yet */
+    private static JsonObject flows(BucketRing flows, long day, boolean today) {
+        return new JsonObject()
+            .put("inflow", fromUnits(read(flows, day, INFLOW, today)))
+            .put("inflowCount", read(flows, day, INFLOW_COUNT, today))
+            .put("outflow", fromUnits(read(flows, day, OUTFLOW, today)))
+            .put("outflowCount", read(flows, day, OUTFLOW_COUNT, today));
+    }
+
+    private static long read(BucketRing flows, long day, int metric, boolean today) {
+        if (flows == null) {
+            return 0;
+        }
+        return today ? flows.current(day, metric) : flows.total(day, metric);
+    }
+
+    private static long toUnits(BigDecimal amount) {
+        final BigDecimal units = amount.movePointRight(AMOUNT_SCALE).setScale(0, RoundingMode.HALF_EVEN);
+        return units.unscaledValue().bitLength() < 64 ? units.longValue() : Long.MAX_VALUE;
+    }
+
+    private static BigDecimal fromUnits(long units) {
+        final BigDecimal amount = BigDecimal.valueOf(units, AMOUNT_SCALE).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    static long saturatedAdd(long total, long value) {
+        final long sum = total + value;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static class CurrencyStats {
+        private final BucketRing hourly = new BucketRing(HOURS, 2);
+        private final BucketRing daily;
+        private long accounts;
+        private BigDecimal balance = BigDecimal.ZERO;
+
+        CurrencyStats(int days) {
+            this.daily = new BucketRing(days, 2);
+        }
+    }
+}
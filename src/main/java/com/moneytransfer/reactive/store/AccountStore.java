@@ -0,0 +1,70 @@
+package com.moneytransfer.reactive.store;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountQuery;
+import com.moneytransfer.reactive.model.CurrencyBalance;
+import io.vertx.core.Future;
+
+import java.util.List;
+
+/**
+ * Storage of the accounts. Every method must be called on the event loop and its future completes on the event loop.
+ *
+ * The returned Account instances are the ones the store keeps for the account: the single writer (the event loop)
+ * changes their balance with withdraw() and deposit() and then records the transaction with TransactionStore.record().
+ */
+public interface AccountStore {
+    /**
+     * Get account by Id
+     * @param id account number
+     * @return the account, null when it does not exist
+     */
+    Future<Account> get(int id);
+
+    /**
+     * Get all accounts
+     * @return the accounts
+     */
+    Future<List<Account>> getAll();
+
+    /**
+     * Get the accounts following an account number, in account number order, to read all the accounts a page at a time
+     * @param afterId the last account number of the previous page, Integer.MIN_VALUE for the first page
+     * @param limit maximum number of accounts
+     * @return the accounts, fewer than the limit on the last page
+     */
+    Future<List<Account>> getPage(int afterId, int limit);
+
+    /**
+     * Find a page of accounts by currency, balance range and name prefix
+     * @param query filters, sort and page
+     * @return the accounts of the page, one more than the limit if there are more results
+     */
+    Future<List<Account>> search(AccountQuery query);
+
+    /**
+     * Check whether there is any account, without reading them
+     * @return true when there is no account
+     */
+    Future<Boolean> isEmpty();
+
+    /**
+     * Count the accounts and sum their balances per currency, without reading the accounts
+     * @return one entry per currency having accounts
+     */
+    Future<List<CurrencyBalance>> balancesByCurrency();
+
+    /**
+     * Add a new account
+     * @param account the account, kept by the store as the instance of the account. Its version is set to the ledger version
+     * @return false when an account with the same number already exists
+     */
+    Future<Boolean> insert(Account account);
+
+    /**
+     * Delete an account
+     * @param id account number
+     * @return false when the account does not exist
+     */
+    Future<Boolean> delete(int id);
+}
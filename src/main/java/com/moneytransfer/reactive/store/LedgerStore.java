@@ -0,0 +1,71 @@
+package com.moneytransfer.reactive.store;
+
+import com.moneytransfer.reactive.audit.LedgerSnapshot;
+import com.moneytransfer.reactive.model.CacheStats;
+import com.moneytransfer.reactive.store.impl.InMemoryLedgerStore;
+import com.moneytransfer.reactive.store.impl.JdbcLedgerStore;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Storage backend of the ledger, giving access to the account and transaction stores which share it.
+ *
+ * Configuration (verticle config): store.type memory (default) or jdbc,
+ * store.url (default jdbc:h2:mem:ledger), store.user, store.password, store.poolSize (default 8)
+ * and store.cacheSize (default 100000 accounts) for jdbc
+ */
+public interface LedgerStore {
+    /**
+     * Create the store from the verticle configuration
+     * @param vertx the Vert.x instance
+     * @param config verticle configuration
+     * @return the store, not opened yet
+     */
+    static LedgerStore create(Vertx vertx, JsonObject config) {
+        final String type = config.getString("store.type", "memory");
+        switch (type) {
+            case "memory":
+                return new InMemoryLedgerStore();
+            case "jdbc":
+                return new JdbcLedgerStore(vertx,
+                    config.getString("store.url", "jdbc:h2:mem:ledger"),
+                    config.getString("store.user", "sa"),
+                    config.getString("store.password", ""),
+                    config.getInteger("store.poolSize", 8),
+                    config.getInteger("store.cacheSize", 100_000));
+            default:
+                throw new IllegalArgumentException("Unknown store.type: " + type);
+        }
+    }
+
+    /**
+     * Open the store, must be called on the event loop which then runs every call to the store
+     * @return completes when the store is ready
+     */
+    Future<Void> open();
+
+    AccountStore accounts();
+
+    TransactionStore transactions();
+
+    /**
+     * Consistent copy of the ledger for the reconciliation
+     * @return the snapshot
+     */
+    Future<LedgerSnapshot> snapshot();
+
+    /**
+     * Version of the whole ledger, increased by every account insert and delete and every recorded transaction.
+     * It starts above the versions of the previous runs so it can be used as the ETag of the listings.
+     * @return the current version
+     */
+    long version();
+
+    /**
+     * @return the counters of the account cache, null when the store has no cache
+     */
+    CacheStats cacheStats();
+
+    void close();
+}
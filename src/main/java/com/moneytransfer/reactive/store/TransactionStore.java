@@ -0,0 +1,47 @@
+package com.moneytransfer.reactive.store;
+
+import com.moneytransfer.reactive.model.Transaction;
+import io.vertx.core.Future;
+
+import java.util.List;
+
+/**
+ * Storage of the transactions. Every method must be called on the event loop and its future completes on the event loop.
+ */
+public interface TransactionStore {
+    /**
+     * Get transaction by Id
+     * @param id transaction id
+     * @return the transaction, null when it does not exist
+     */
+    Future<Transaction> get(long id);
+
+    /**
+     * Get all transactions
+     * @return the transactions
+     */
+    Future<List<Transaction>> getAll();
+
+    /**
+     * Get the transactions for a certain account (source or destination account)
+     * @param accountId account number
+     * @return the transactions
+     */
+    Future<List<Transaction>> getByAccount(int accountId);
+
+    /**
+     * Store a transaction which has already been applied to the balances of the account instances of the AccountStore,
+     * the store persists the transaction together with the balance changes
+     * @param transaction the transaction, not modified afterwards
+     * @return completes when the transaction is stored
+     */
+    Future<Void> record(Transaction transaction);
+
+    /**
+     * Store transactions whose balance changes are already part of the stored balances, such as the transactions
+     * of a ledger image loaded with its final balances. The balances are not changed.
+     * @param transactions the transactions, not modified afterwards
+     * @return completes when all the transactions are stored, fails if any of them is not
+     */
+    Future<Void> restore(List<Transaction> transactions);
+}
@@ -0,0 +1,250 @@
+package com.moneytransfer.reactive.store.impl;
+
+import com.moneytransfer.reactive.audit.LedgerSnapshot;
+import com.moneytransfer.reactive.index.AccountIndex;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountQuery;
+import com.moneytransfer.reactive.model.CacheStats;
+import com.moneytransfer.reactive.model.CurrencyBalance;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger kept in memory only, in insertion order. Only accessed from the event loop so every future is already completed,
+ * except the snapshot which is copied a chunk at a time so the event loop keeps serving requests meanwhile.
+ *
+ * @author Julian Vasa
+ */
+public class InMemoryLedgerStore implements LedgerStore {
+    /* Chunks copied per event loop task by the snapshot */
+    private static final int SNAPSHOT_ACCOUNTS_PER_TASK = 10_000;
+    private static final int SNAPSHOT_TRANSACTIONS_PER_TASK = 100_000;
+
+    private final Map<Integer, Account> accounts = new LinkedHashMap<>();
+    private final Map<Long, Transaction> transactions = new HashMap<>();
+    /* The transactions in the order they were recorded, never removed so a snapshot can copy them in chunks */
+    private final List<Transaction> transactionLog = new ArrayList<>();
+    /* Account numbers in order, for the paged reads */
+    private final NavigableSet<Integer> accountNumbers = new TreeSet<>();
+    private final AccountIndex accountIndex = new AccountIndex(accounts);
+    private final AccountStore accountStore = new InMemoryAccountStore();
+    private final TransactionStore transactionStore = new InMemoryTransactionStore();
+    /* Microseconds since the epoch at start, above the versions of the previous runs unless they wrote more than once per microsecond */
+    private long version = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private Context context;
+
+    @Override
+    public Future<Void> open() {
+        context = Vertx.currentContext();
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public AccountStore accounts() {
+        return accountStore;
+    }
+
+    @Override
+    public TransactionStore transactions() {
+        return transactionStore;
+    }
+
+    /**
+     * Copy the transactions then the accounts a chunk per event loop task, the balances are brought back
+     * to the start of the copy on a worker thread
+     * @return the snapshot
+     */
+    @Override
+    public Future<LedgerSnapshot> snapshot() {
+        final Promise<LedgerSnapshot> promise = Promise.promise();
+        copyChunk(LedgerSnapshot.copy(transactionLog.size()), Integer.MIN_VALUE, promise);
+        return promise.future();
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return null, every account is in memory
+     */
+    @Override
+    public CacheStats cacheStats() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /* Copy the next chunk of the snapshot and schedule the following one, the accounts after an account number */
+    private void copyChunk(LedgerSnapshot.Copy copy, int afterId, Promise<LedgerSnapshot> promise) {
+        if (copy.copiedTransactions() < copy.transactionCount()) {
+            copy.copyTransactions(transactionLog, SNAPSHOT_TRANSACTIONS_PER_TASK);
+            context.runOnContext(v -> copyChunk(copy, afterId, promise));
+            return;
+        }
+        int lastId = afterId;
+        int copied = 0;
+        for (Integer id : accountNumbers.tailSet(afterId, false)) {
+            if (copied == SNAPSHOT_ACCOUNTS_PER_TASK) {
+                final int nextAfterId = lastId;
+                context.runOnContext(v -> copyChunk(copy, nextAfterId, promise));
+                return;
+            }
+            copy.addAccount(accounts.get(id), transactionLog.size());
+            lastId = id;
+            copied++;
+        }
+        copy.copyLaterTransactions(transactionLog);
+        context.<LedgerSnapshot>executeBlocking(copy::build, false).onComplete(promise);
+    }
+
+    private class InMemoryAccountStore implements AccountStore {
+        @Override
+        public Future<Account> get(int id) {
+            return Future.succeededFuture(accounts.get(id));
+        }
+
+        @Override
+        public Future<List<Account>> getAll() {
+            return Future.succeededFuture(new ArrayList<>(accounts.values()));
+        }
+
+        @Override
+        public Future<List<Account>> getPage(int afterId, int limit) {
+            List<Account> page = new ArrayList<>(Math.min(limit, accounts.size()));
+            for (Integer id : accountNumbers.tailSet(afterId, false)) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(accounts.get(id));
+            }
+            return Future.succeededFuture(page);
+        }
+
+        @Override
+        public Future<List<Account>> search(AccountQuery query) {
+            return Future.succeededFuture(accountIndex.search(query));
+        }
+
+        @Override
+        public Future<Boolean> isEmpty() {
+            return Future.succeededFuture(accounts.isEmpty());
+        }
+
+        @Override
+        public Future<List<CurrencyBalance>> balancesByCurrency() {
+            final Map<Currency, CurrencyBalance> balances = new HashMap<>();
+            for (Account account : accounts.values()) {
+                final CurrencyBalance balance = balances.computeIfAbsent(account.getCurrency(),
+                    currency -> new CurrencyBalance(currency, 0, BigDecimal.ZERO));
+                balance.setAccounts(balance.getAccounts() + 1);
+                if (account.getBalance() != null) {
+                    balance.setBalance(balance.getBalance().add(account.getBalance()));
+                }
+            }
+            return Future.succeededFuture(new ArrayList<>(balances.values()));
+        }
+
+        @Override
+        public Future<Boolean> insert(Account account) {
+            if (accounts.putIfAbsent(account.getId(), account) != null) {
+                return Future.succeededFuture(false);
+            }
+            account.setVersion(++version);
+            accountIndex.add(account);
+            accountNumbers.add(account.getId());
+            return Future.succeededFuture(true);
+        }
+
+        @Override
+        public Future<Boolean> delete(int id) {
+            Account account = accounts.remove(id);
+            if (account == null) {
+                return Future.succeededFuture(false);
+            }
+            accountIndex.remove(account);
+            version++;
+            accountNumbers.remove(id);
+            return Future.succeededFuture(true);
+        }
+    }
+
+    private class InMemoryTransactionStore implements TransactionStore {
+        @Override
+        public Future<Transaction> get(long id) {
+            return Future.succeededFuture(transactions.get(id));
+        }
+
+        @Override
+        public Future<List<Transaction>> getAll() {
+            return Future.succeededFuture(new ArrayList<>(transactionLog));
+        }
+
+        @Override
+        public Future<List<Transaction>> getByAccount(int accountId) {
+            List<Transaction> found = new ArrayList<>();
+            for (Transaction transaction : transactionLog) {
+                if (transaction.getFromAccount() == accountId || transaction.getToAccount() == accountId) {
+                    found.add(transaction);
+                }
+            }
+            return Future.succeededFuture(found);
+        }
+
+        @Override
+        public Future<Void> record(Transaction transaction) {
+            Account fromAccount = accounts.get(transaction.getFromAccount());
+            Account toAccount = accounts.get(transaction.getToAccount());
+            /* A transaction id is recorded once, the balances already changed by the duplicate are undone */
+            if (transactions.putIfAbsent(transaction.getId(), transaction) != null) {
+                if (fromAccount != null) {
+                    fromAccount.deposit(transaction.getAmount());
+                }
+                if (toAccount != null) {
+                    toAccount.withdraw(transaction.getAmount());
+                }
+                return Future.failedFuture("Transaction already exists: " + transaction.getId());
+            }
+            transactionLog.add(transaction);
+            version++;
+            /* The balances already changed, move the accounts in the balance indexes */
+            if (fromAccount != null) {
+                accountIndex.update(fromAccount);
+            }
+            if (toAccount != null) {
+                accountIndex.update(toAccount);
+            }
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public Future<Void> restore(List<Transaction> restored) {
+            for (Transaction transaction : restored) {
+                transactions.put(transaction.getId(), transaction);
+                transactionLog.add(transaction);
+                version++;
+            }
+            return Future.succeededFuture();
+        }
+    }
+}
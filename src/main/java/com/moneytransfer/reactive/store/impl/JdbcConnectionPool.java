@@ -0,0 +1,106 @@
+package com.moneytransfer.reactive.store.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size pool of JDBC connections, opened on demand. Only used by the worker threads of the store.
+ *
+ * @author Julian Vasa
+ */
+class JdbcConnectionPool {
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int size;
+    private final BlockingQueue<Connection> idle;
+    private int opened;
+    private volatile boolean closed;
+
+    JdbcConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Take an idle connection, open a new one while the pool is not full or wait for one to be released
+     * @return the connection, to be given back with release()
+     */
+    Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        if (reserve()) {
+            try {
+                return DriverManager.getConnection(url, user, password);
+            } catch (SQLException exception) {
+                unreserve();
+                throw exception;
+            }
+        }
+        try {
+            connection = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", exception);
+        }
+        if (connection == null) {
+            throw new SQLException("No connection available after " + ACQUIRE_TIMEOUT_SECONDS + " seconds");
+        }
+        return connection;
+    }
+
+    /**
+     * Give back a connection, a broken connection is closed and replaced on the next acquire()
+     * @param connection the connection taken with acquire()
+     * @param broken true when the connection failed and must not be reused
+     */
+    void release(Connection connection, boolean broken) {
+        if (broken || closed || !idle.offer(connection)) {
+            closeQuietly(connection);
+            unreserve();
+        }
+    }
+
+    void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+            unreserve();
+        }
+    }
+
+    private synchronized boolean reserve() {
+        if (opened >= size) {
+            return false;
+        }
+        opened++;
+        return true;
+    }
+
+    private synchronized void unreserve() {
+        opened--;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException exception) {
+            /* Nothing to do, the connection is discarded */
+        }
+    }
+}
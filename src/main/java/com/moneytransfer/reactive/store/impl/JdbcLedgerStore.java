@@ -0,0 +1,573 @@
+package com.moneytransfer.reactive.store.impl;
+
+import com.moneytransfer.reactive.audit.LedgerSnapshot;
+import com.moneytransfer.reactive.cache.AccountCache;
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountQuery;
+import com.moneytransfer.reactive.model.CacheStats;
+import com.moneytransfer.reactive.model.CurrencyBalance;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.store.AccountStore;
+import com.moneytransfer.reactive.store.LedgerStore;
+import com.moneytransfer.reactive.store.TransactionStore;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger stored in a relational database through JDBC (H2, PostgreSQL). The SQL only runs on a pool of worker threads
+ * with one connection each, the event loop never waits for the database.
+ *
+ * Writes are coalesced: they are collected on the event loop and written in one database transaction per batch,
+ * the next batch collecting while the previous one is written, so many concurrent transfers share one commit.
+ * Balance changes are written as deltas, the sum of the recorded transactions of the batch for every account.
+ *
+ * Loaded accounts are kept in a bounded read-through cache (W-TinyLFU, see AccountCache) which also guarantees
+ * that the single writer always changes the same instance of an account. Accounts with unwritten changes are
+ * pinned in the cache until the changes are in the database, so an account is never loaded without them.
+ * A load is discarded when the account is inserted, deleted or changed while it is loaded.
+ * Unwritten transactions are served from memory. Listings and searches wait for the pending writes first.
+ *
+ * @author Julian Vasa
+ */
+public class JdbcLedgerStore implements LedgerStore {
+    private static final int MAX_BATCH_WRITES = 1000;
+    static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS account (id INTEGER PRIMARY KEY, name VARCHAR(" + Account.MAX_NAME_LENGTH + "), "
+            + "name_key VARCHAR(" + Account.MAX_NAME_LENGTH + "), "
+            + "balance DECIMAL(30, 10), opening_balance DECIMAL(30, 10), currency CHAR(3), version BIGINT DEFAULT 0 NOT NULL)",
+        "ALTER TABLE account ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL",
+        "CREATE INDEX IF NOT EXISTS account_balance ON account (balance, id)",
+        "CREATE INDEX IF NOT EXISTS account_currency_balance ON account (currency, balance, id)",
+        "CREATE INDEX IF NOT EXISTS account_name ON account (name_key, id)",
+        "CREATE TABLE IF NOT EXISTS ledger_transaction (id BIGINT PRIMARY KEY, from_account INTEGER NOT NULL, "
+            + "to_account INTEGER NOT NULL, amount DECIMAL(30, 10) NOT NULL, currency CHAR(3), "
+            + "description VARCHAR(" + Transaction.MAX_DESCRIPTION_LENGTH + "), status VARCHAR(16))",
+        "CREATE INDEX IF NOT EXISTS transaction_from ON ledger_transaction (from_account)",
+        "CREATE INDEX IF NOT EXISTS transaction_to ON ledger_transaction (to_account)"
+    };
+    private static final String ACCOUNT_COLUMNS = "SELECT id, name, balance, opening_balance, currency, version FROM account";
+    private static final String TRANSACTION_COLUMNS =
+        "SELECT id, from_account, to_account, amount, currency, description, status FROM ledger_transaction";
+
+    private final Vertx vertx;
+    private final JdbcConnectionPool pool;
+    private final int poolSize;
+    private final AccountStore accountStore = new JdbcAccountStore();
+    private final TransactionStore transactionStore = new JdbcTransactionStore();
+    private WorkerExecutor executor;
+    private Context context;
+
+    /* Everything below is only accessed from the event loop */
+    private final AccountCache accountCache;
+    private final Map<Integer, Load> loadingAccounts = new HashMap<>();
+    private long staleLoads;
+    /* Microseconds since the epoch at start, raised to the highest stored account version when the store is opened */
+    private long version = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    /* Deleted accounts until the delete is written, mapped to the batch writing it */
+    private final Map<Integer, WriteBatch> deletedAccounts = new HashMap<>();
+    private final Map<Long, Transaction> unwrittenTransactions = new HashMap<>();
+    private final Deque<WriteBatch> batches = new ArrayDeque<>();
+    private WriteBatch writing;
+    private boolean flushScheduled;
+
+    public JdbcLedgerStore(Vertx vertx, String url, String user, String password, int poolSize, int cacheSize) {
+        this.vertx = vertx;
+        this.accountCache = new AccountCache(cacheSize);
+        this.pool = new JdbcConnectionPool(url, user, password, poolSize);
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public Future<Void> open() {
+        context = vertx.getOrCreateContext();
+        executor = vertx.createSharedWorkerExecutor("ledger-store", poolSize);
+        return this.<Long>inConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+                /* Transaction ids continue after the stored ones, even if the clock went back since they were generated */
+                try (ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM ledger_transaction")) {
+                    if (resultSet.next()) {
+                        final long lastId = resultSet.getLong(1);
+                        if (!resultSet.wasNull()) {
+                            Transaction.continueAfter(lastId);
+                        }
+                    }
+                }
+                /* The versions of the stored accounts come from the ledger versions of the previous runs */
+                try (ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM account")) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+            }
+        }).map(maxStoredVersion -> {
+            version = Math.max(version, maxStoredVersion);
+            return null;
+        });
+    }
+
+    @Override
+    public AccountStore accounts() {
+        return accountStore;
+    }
+
+    @Override
+    public TransactionStore transactions() {
+        return transactionStore;
+    }
+
+    /**
+     * Read the accounts and transactions in one database transaction once the pending writes are written
+     * @return the snapshot
+     */
+    @Override
+    public Future<LedgerSnapshot> snapshot() {
+        return flushed().compose(v -> inConnection(connection -> {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                final List<Account> accounts = queryAccounts(connection, ACCOUNT_COLUMNS);
+                final List<Transaction> transactions = queryTransactions(connection, TRANSACTION_COLUMNS);
+                connection.commit();
+                return LedgerSnapshot.of(accounts, transactions);
+            } finally {
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                connection.setAutoCommit(true);
+            }
+        }));
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public CacheStats cacheStats() {
+        CacheStats stats = accountCache.stats();
+        stats.setStaleLoads(staleLoads);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.close();
+        }
+        pool.close();
+    }
+
+    private class JdbcAccountStore implements AccountStore {
+        @Override
+        public Future<Account> get(int id) {
+            if (deletedAccounts.containsKey(id)) {
+                return Future.succeededFuture(null);
+            }
+            final Account cached = accountCache.get(id);
+            if (cached != null) {
+                return Future.succeededFuture(cached);
+            }
+            final Load loading = loadingAccounts.get(id);
+            if (loading != null) {
+                return loading.promise.future();
+            }
+            final Load load = new Load();
+            loadingAccounts.put(id, load);
+            inConnection(connection -> {
+                List<Account> rows = queryAccounts(connection, ACCOUNT_COLUMNS + " WHERE id = ?", id);
+                return rows.isEmpty() ? null : rows.get(0);
+            }).onComplete(result -> {
+                loadingAccounts.remove(id, load);
+                if (result.failed()) {
+                    load.promise.fail(result.cause());
+                }
+                else if (load.stale) {
+                    /* The row may predate the change, use the instance in memory or load again */
+                    staleLoads++;
+                    final Account current = accountCache.peek(id);
+                    if (current != null || deletedAccounts.containsKey(id)) {
+                        load.promise.complete(current);
+                    }
+                    else {
+                        get(id).onComplete(load.promise);
+                    }
+                }
+                else {
+                    load.promise.complete(result.result() == null ? null : accountCache.putIfAbsent(result.result()));
+                }
+            });
+            return load.promise.future();
+        }
+
+        @Override
+        public Future<List<Account>> getAll() {
+            return flushed()
+                .compose(v -> inConnection(connection -> queryAccounts(connection, ACCOUNT_COLUMNS + " ORDER BY id")))
+                .map(JdbcLedgerStore.this::loadedInstances);
+        }
+
+        @Override
+        public Future<List<Account>> getPage(int afterId, int limit) {
+            return flushed()
+                .compose(v -> inConnection(connection ->
+                    queryAccounts(connection, ACCOUNT_COLUMNS + " WHERE id > ? ORDER BY id LIMIT ?", afterId, limit)))
+                .map(JdbcLedgerStore.this::loadedInstances);
+        }
+
+        @Override
+        public Future<List<Account>> search(AccountQuery query) {
+            StringBuilder sql = new StringBuilder(ACCOUNT_COLUMNS).append(" WHERE 1 = 1");
+            List<Object> parameters = new ArrayList<>();
+            if (query.getCurrency() != null) {
+                sql.append(" AND currency = ?");
+                parameters.add(query.getCurrency().getCurrencyCode());
+            }
+            if (query.getMinBalance() != null) {
+                sql.append(" AND balance >= ?");
+                parameters.add(query.getMinBalance());
+            }
+            if (query.getMaxBalance() != null) {
+                sql.append(" AND balance <= ?");
+                parameters.add(query.getMaxBalance());
+            }
+            final String direction = query.isDescending() ? " DESC" : "";
+            if (query.getNamePrefix() != null) {
+                sql.append(" AND name_key LIKE ? ESCAPE '\\'");
+                parameters.add(query.getNamePrefix().toLowerCase(Locale.ROOT).replaceAll("([\\\\%_])", "\\\\$1") + "%");
+                sql.append(" ORDER BY name_key").append(direction).append(", id").append(direction);
+            }
+            else {
+                sql.append(" ORDER BY balance").append(direction).append(", id").append(direction);
+            }
+            sql.append(" LIMIT ? OFFSET ?");
+            parameters.add(query.getLimit() + 1);
+            parameters.add(query.getOffset());
+            final Object[] values = parameters.toArray();
+            return flushed()
+                .compose(v -> inConnection(connection -> queryAccounts(connection, sql.toString(), values)))
+                .map(JdbcLedgerStore.this::loadedInstances);
+        }
+
+        @Override
+        public Future<Boolean> isEmpty() {
+            return flushed().compose(v -> inConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM account LIMIT 1");
+                     ResultSet resultSet = statement.executeQuery()) {
+                    return !resultSet.next();
+                }
+            }));
+        }
+
+        @Override
+        public Future<List<CurrencyBalance>> balancesByCurrency() {
+            return flushed().compose(v -> inConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT currency, COUNT(*), SUM(balance) FROM account GROUP BY currency");
+                     ResultSet resultSet = statement.executeQuery()) {
+                    List<CurrencyBalance> balances = new ArrayList<>();
+                    while (resultSet.next()) {
+                        balances.add(new CurrencyBalance(currency(resultSet.getString(1)), resultSet.getLong(2),
+                            decimal(resultSet.getBigDecimal(3))));
+                    }
+                    return balances;
+                }
+            }));
+        }
+
+        @Override
+        public Future<Boolean> insert(Account account) {
+            final int id = account.getId();
+            if (accountCache.peek(id) != null) {
+                return Future.succeededFuture(false);
+            }
+            deletedAccounts.remove(id);
+            invalidateLoad(id);
+            account.setVersion(++version);
+            accountCache.putIfAbsent(account);
+            accountCache.pin(id);
+            return enqueue(WriteBatch.insertAccount(account));
+        }
+
+        @Override
+        public Future<Boolean> delete(int id) {
+            if (deletedAccounts.containsKey(id)) {
+                return Future.succeededFuture(false);
+            }
+            accountCache.remove(id);
+            invalidateLoad(id);
+            version++;
+            WriteBatch.Write write = WriteBatch.deleteAccount(id);
+            Future<Boolean> deleted = enqueue(write);
+            deletedAccounts.put(id, batches.peekLast());
+            return deleted;
+        }
+    }
+
+    private class JdbcTransactionStore implements TransactionStore {
+        @Override
+        public Future<Transaction> get(long id) {
+            final Transaction unwritten = unwrittenTransactions.get(id);
+            if (unwritten != null) {
+                return Future.succeededFuture(unwritten);
+            }
+            return inConnection(connection -> {
+                List<Transaction> rows = queryTransactions(connection, TRANSACTION_COLUMNS + " WHERE id = ?", id);
+                return rows.isEmpty() ? null : rows.get(0);
+            });
+        }
+
+        @Override
+        public Future<List<Transaction>> getAll() {
+            return flushed().compose(v -> inConnection(connection ->
+                queryTransactions(connection, TRANSACTION_COLUMNS + " ORDER BY id")));
+        }
+
+        @Override
+        public Future<List<Transaction>> getByAccount(int accountId) {
+            return flushed().compose(v -> inConnection(connection -> queryTransactions(connection,
+                TRANSACTION_COLUMNS + " WHERE from_account = ? OR to_account = ? ORDER BY id", accountId, accountId)));
+        }
+
+        @Override
+        public Future<Void> record(Transaction transaction) {
+            unwrittenTransactions.put(transaction.getId(), transaction);
+            version++;
+            pin(transaction.getFromAccount());
+            pin(transaction.getToAccount());
+            return enqueue(WriteBatch.record(transaction)).mapEmpty();
+        }
+
+        @Override
+        public Future<Void> restore(List<Transaction> transactions) {
+            version += transactions.size();
+            /* Written after the pending account inserts, outside of the batches which would apply the amounts again */
+            return flushed().compose(v -> inConnection(connection -> {
+                WriteBatch.insertTransactions(connection, transactions);
+                return null;
+            }));
+        }
+    }
+
+    /* Add a write to the batch being collected and schedule the flush, the flush runs after the current event */
+    private Future<Boolean> enqueue(WriteBatch.Write write) {
+        WriteBatch batch = batches.peekLast();
+        if (batch == null || batch.size() >= MAX_BATCH_WRITES || !batch.accepts(write)) {
+            batch = new WriteBatch();
+            batches.addLast(batch);
+        }
+        batch.add(write);
+        if (!flushScheduled && writing == null) {
+            flushScheduled = true;
+            context.runOnContext(v -> flush());
+        }
+        return write.promise.future();
+    }
+
+    /* Write the oldest batch, only one batch is written at a time so the writes are applied in order */
+    private void flush() {
+        flushScheduled = false;
+        if (writing != null || batches.isEmpty()) {
+            return;
+        }
+        final WriteBatch batch = batches.pollFirst();
+        writing = batch;
+        this.<Void>inConnection(connection -> {
+            batch.execute(connection);
+            return null;
+        }).onComplete(result -> {
+            writing = null;
+            final Throwable batchFailure = result.failed() ? result.cause() : null;
+            /* The batches queued meanwhile were applied on top of the failed writes, which are undone now */
+            final Set<Integer> failedAccounts = batch.failedAccounts(batchFailure);
+            if (!failedAccounts.isEmpty()) {
+                for (WriteBatch queued : batches) {
+                    queued.failAccounts(failedAccounts);
+                }
+            }
+            completeWrites(batch, batchFailure);
+            batch.written().complete();
+            flush();
+        });
+    }
+
+    /* Complete the futures of the writes, undo in memory what could not be written */
+    private void completeWrites(WriteBatch batch, Throwable batchFailure) {
+        for (WriteBatch.Write write : batch.writes()) {
+            final Throwable failure = batchFailure != null ? batchFailure : write.failure;
+            switch (write.kind) {
+                case WriteBatch.Write.INSERT_ACCOUNT:
+                    accountCache.unpin(write.accountId);
+                    if ((failure != null || !write.applied) && accountCache.peek(write.accountId) == write.account) {
+                        accountCache.remove(write.accountId);
+                    }
+                    break;
+                case WriteBatch.Write.RECORD:
+                    final Transaction transaction = write.transaction;
+                    unwrittenTransactions.remove(transaction.getId(), transaction);
+                    if (failure != null) {
+                        final Account fromAccount = accountCache.peek(transaction.getFromAccount());
+                        final Account toAccount = accountCache.peek(transaction.getToAccount());
+                        if (fromAccount != null) {
+                            fromAccount.deposit(transaction.getAmount());
+                        }
+                        if (toAccount != null) {
+                            toAccount.withdraw(transaction.getAmount());
+                        }
+                    }
+                    unpin(transaction.getFromAccount());
+                    unpin(transaction.getToAccount());
+                    break;
+                default:
+                    deletedAccounts.remove(write.accountId, batch);
+                    break;
+            }
+            if (failure != null) {
+                write.promise.fail(failure);
+            }
+            else {
+                write.promise.complete(write.applied);
+            }
+        }
+    }
+
+    /* Keep an account changed by a transaction in the cache until the transaction is written */
+    private void pin(int id) {
+        if (id != Account.EXTERNAL_ACCOUNT) {
+            invalidateLoad(id);
+            accountCache.pin(id);
+        }
+    }
+
+    private void unpin(int id) {
+        if (id != Account.EXTERNAL_ACCOUNT) {
+            accountCache.unpin(id);
+        }
+    }
+
+    private void invalidateLoad(int id) {
+        final Load load = loadingAccounts.get(id);
+        if (load != null) {
+            load.stale = true;
+        }
+    }
+
+    /* Completes once every write enqueued so far is written */
+    private Future<Void> flushed() {
+        final WriteBatch last = batches.isEmpty() ? writing : batches.peekLast();
+        return last == null ? Future.succeededFuture() : last.written().future();
+    }
+
+    /* Use the instances of the identity map for the accounts already loaded, skip the deleted ones */
+    private List<Account> loadedInstances(List<Account> rows) {
+        List<Account> accounts = new ArrayList<>(rows.size());
+        for (Account row : rows) {
+            if (!deletedAccounts.containsKey(row.getId())) {
+                final Account cached = accountCache.peek(row.getId());
+                accounts.add(cached == null ? row : cached);
+            }
+        }
+        return accounts;
+    }
+
+    /* Run SQL on a worker thread with a connection of the pool, the future completes on the event loop */
+    private <T> Future<T> inConnection(SqlFunction<T> function) {
+        return executor.executeBlocking(() -> {
+            final Connection connection = pool.acquire();
+            boolean broken = false;
+            try {
+                return function.apply(connection);
+            } catch (SQLException exception) {
+                broken = !connection.isValid(1);
+                throw exception;
+            } finally {
+                pool.release(connection, broken);
+            }
+        }, false);
+    }
+
+    private static List<Account> queryAccounts(Connection connection, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, sql, parameters);
+             ResultSet resultSet = statement.executeQuery()) {
+            List<Account> accounts = new ArrayList<>();
+            while (resultSet.next()) {
+                accounts.add(Account.builder()
+                    .id(resultSet.getInt(1))
+                    .name(resultSet.getString(2))
+                    .balance(decimal(resultSet.getBigDecimal(3)))
+                    .openingBalance(decimal(resultSet.getBigDecimal(4)))
+                    .currency(currency(resultSet.getString(5)))
+                    .version(resultSet.getLong(6))
+                    .build());
+            }
+            return accounts;
+        }
+    }
+
+    private static List<Transaction> queryTransactions(Connection connection, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, sql, parameters);
+             ResultSet resultSet = statement.executeQuery()) {
+            List<Transaction> transactions = new ArrayList<>();
+            while (resultSet.next()) {
+                Transaction transaction = new Transaction(resultSet.getLong(1), resultSet.getInt(2), resultSet.getInt(3),
+                    decimal(resultSet.getBigDecimal(4)), currency(resultSet.getString(5)));
+                transaction.setDescription(resultSet.getString(6));
+                final String status = resultSet.getString(7);
+                transaction.setStatus(status == null ? null : TransactionStatus.valueOf(status));
+                transactions.add(transaction);
+            }
+            return transactions;
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return statement;
+    }
+
+    /* The columns have a fixed scale, give back the scale the client sent: 14.4 and not 14.4000000000 */
+    private static BigDecimal decimal(BigDecimal value) {
+        if (value == null) {
+            return null;
+        }
+        final BigDecimal stripped = value.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    private static Currency currency(String code) {
+        return code == null ? null : Currency.getInstance(code.trim());
+    }
+
+    private static class Load {
+        private final Promise<Account> promise = Promise.promise();
+        private boolean stale;
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+}
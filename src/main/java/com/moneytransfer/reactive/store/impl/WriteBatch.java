@@ -0,0 +1,349 @@
+package com.moneytransfer.reactive.store.impl;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import io.vertx.core.Promise;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes collected on the event loop and committed together in one database transaction.
+ * Statements of the same kind are sent as one JDBC batch, the balance changes of all the recorded transactions
+ * are summed per account so each account is updated once per batch whatever the number of transfers.
+ * When the batch fails every write is retried in its own transaction so one bad write does not fail the others,
+ * except the later writes of the accounts of a failed write: they were applied in memory on top of it,
+ * writing them without it could leave a negative balance in the database, so they fail with it.
+ * This holds across batches: the batches queued while a batch is written get its failed accounts, see failAccounts().
+ *
+ * @author Julian Vasa
+ */
+class WriteBatch {
+    static final String INSERT_ACCOUNT =
+        "INSERT INTO account (id, name, name_key, balance, opening_balance, currency, version) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_TRANSACTION =
+        "INSERT INTO ledger_transaction (id, from_account, to_account, amount, currency, description, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    static final String UPDATE_BALANCE = "UPDATE account SET balance = balance + ?, version = version + ? WHERE id = ?";
+    static final String DELETE_ACCOUNT = "DELETE FROM account WHERE id = ?";
+
+    private final List<Write> writes = new ArrayList<>();
+    /* Accounts deleted by this batch, inserting one of them again needs a new batch as deletes run last */
+    private final Set<Integer> deletedAccounts = new HashSet<>();
+    /* Accounts of the failed writes of the batches written while this one was queued, set on the event loop before it is written */
+    private final Set<Integer> failedBefore = new HashSet<>();
+    /* Accounts of the failed writes of this batch, set by the worker thread */
+    private final Set<Integer> failedAccounts = new HashSet<>();
+    /* Completed once the batch is written, whatever the outcome of its writes */
+    private final Promise<Void> written = Promise.promise();
+
+    static Write insertAccount(Account account) {
+        Write write = new Write(Write.INSERT_ACCOUNT);
+        write.account = account;
+        write.accountId = account.getId();
+        /* Copied on the event loop, the balance of the instance keeps changing until the batch is written */
+        write.balance = account.getBalance();
+        write.version = account.getVersion();
+        return write;
+    }
+
+    static Write record(Transaction transaction) {
+        Write write = new Write(Write.RECORD);
+        write.transaction = transaction;
+        return write;
+    }
+
+    static Write deleteAccount(int id) {
+        Write write = new Write(Write.DELETE_ACCOUNT);
+        write.accountId = id;
+        return write;
+    }
+
+    boolean accepts(Write write) {
+        return write.kind != Write.INSERT_ACCOUNT || !deletedAccounts.contains(write.accountId);
+    }
+
+    void add(Write write) {
+        writes.add(write);
+        if (write.kind == Write.DELETE_ACCOUNT) {
+            deletedAccounts.add(write.accountId);
+        }
+    }
+
+    int size() {
+        return writes.size();
+    }
+
+    boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    List<Write> writes() {
+        return writes;
+    }
+
+    Promise<Void> written() {
+        return written;
+    }
+
+    /**
+     * Fail the writes of accounts whose write failed in a batch written before this one: they were collected
+     * before the failed write was undone in memory, so they were applied on top of it
+     * @param accounts the failed accounts of the previous batch
+     */
+    void failAccounts(Set<Integer> accounts) {
+        failedBefore.addAll(accounts);
+    }
+
+    /**
+     * @param batchFailure the failure of the whole batch, null if the writes have their own outcome
+     * @return the accounts of the failed writes of this batch, to fail in the batches queued meanwhile
+     */
+    Set<Integer> failedAccounts(Throwable batchFailure) {
+        if (batchFailure == null) {
+            return failedAccounts;
+        }
+        final Set<Integer> accounts = new HashSet<>();
+        for (Write write : writes) {
+            if (write.kind != Write.DELETE_ACCOUNT) {
+                addAccounts(write, accounts);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Write the batch, runs on a worker thread. The outcome of every write is set in the write.
+     * @param connection connection used for the whole batch
+     */
+    void execute(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            if (!dependsOnFailedBefore()) {
+                try {
+                    executeAll(connection, writes);
+                    connection.commit();
+                    return;
+                } catch (SQLException exception) {
+                    connection.rollback();
+                }
+            }
+            executeOneByOne(connection);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private boolean dependsOnFailedBefore() {
+        for (Write write : writes) {
+            if (failedAccount(write, failedBefore) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Retry every write in its own transaction, the writes depending on a failed write fail without being sent */
+    private void executeOneByOne(Connection connection) throws SQLException {
+        for (Write write : writes) {
+            Integer failedAccount = failedAccount(write, failedBefore);
+            if (failedAccount == null) {
+                failedAccount = failedAccount(write, failedAccounts);
+            }
+            if (failedAccount != null) {
+                write.failure = new SQLException("A previous write of the account " + failedAccount + " failed");
+                addAccounts(write, failedAccounts);
+                continue;
+            }
+            try {
+                executeAll(connection, Collections.singletonList(write));
+                connection.commit();
+            } catch (SQLException exception) {
+                connection.rollback();
+                if (write.kind == Write.INSERT_ACCOUNT && isConstraintViolation(exception)) {
+                    write.applied = false;
+                }
+                else {
+                    write.failure = exception;
+                }
+                if (write.kind != Write.DELETE_ACCOUNT) {
+                    addAccounts(write, failedAccounts);
+                }
+            }
+        }
+    }
+
+    /* The account of a transaction which has a failed write before it, null if none */
+    private static Integer failedAccount(Write write, Set<Integer> failedAccounts) {
+        if (write.kind != Write.RECORD || failedAccounts.isEmpty()) {
+            return null;
+        }
+        if (failedAccounts.contains(write.transaction.getFromAccount())) {
+            return write.transaction.getFromAccount();
+        }
+        return failedAccounts.contains(write.transaction.getToAccount()) ? write.transaction.getToAccount() : null;
+    }
+
+    private static void addAccounts(Write write, Set<Integer> accounts) {
+        if (write.kind != Write.RECORD) {
+            accounts.add(write.accountId);
+            return;
+        }
+        if (write.transaction.getFromAccount() != Account.EXTERNAL_ACCOUNT) {
+            accounts.add(write.transaction.getFromAccount());
+        }
+        if (write.transaction.getToAccount() != Account.EXTERNAL_ACCOUNT) {
+            accounts.add(write.transaction.getToAccount());
+        }
+    }
+
+    private static void executeAll(Connection connection, List<Write> writes) throws SQLException {
+        List<Write> inserts = new ArrayList<>();
+        List<Write> records = new ArrayList<>();
+        List<Write> deletes = new ArrayList<>();
+        for (Write write : writes) {
+            (write.kind == Write.INSERT_ACCOUNT ? inserts : write.kind == Write.RECORD ? records : deletes).add(write);
+        }
+        if (!inserts.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_ACCOUNT)) {
+                for (Write write : inserts) {
+                    final Account account = write.account;
+                    statement.setInt(1, write.accountId);
+                    statement.setString(2, account.getName());
+                    statement.setString(3, account.getName() == null ? null : account.getName().toLowerCase(Locale.ROOT));
+                    statement.setBigDecimal(4, write.balance);
+                    statement.setBigDecimal(5, account.getOpeningBalance());
+                    setCurrency(statement, 6, account.getCurrency() == null ? null : account.getCurrency().getCurrencyCode());
+                    statement.setLong(7, write.version);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        if (!records.isEmpty()) {
+            /* Sorted by account number so concurrent writers lock the rows in the same order */
+            Map<Integer, BigDecimal> deltas = new TreeMap<>();
+            /* Every recorded transaction changed the version of its accounts once, with withdraw() or deposit() */
+            Map<Integer, Long> versions = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION)) {
+                for (Write write : records) {
+                    final Transaction transaction = write.transaction;
+                    setTransaction(statement, transaction);
+                    statement.addBatch();
+                    if (transaction.getFromAccount() != Account.EXTERNAL_ACCOUNT) {
+                        deltas.merge(transaction.getFromAccount(), transaction.getAmount().negate(), BigDecimal::add);
+                        versions.merge(transaction.getFromAccount(), 1L, Long::sum);
+                    }
+                    if (transaction.getToAccount() != Account.EXTERNAL_ACCOUNT) {
+                        deltas.merge(transaction.getToAccount(), transaction.getAmount(), BigDecimal::add);
+                        versions.merge(transaction.getToAccount(), 1L, Long::sum);
+                    }
+                }
+                statement.executeBatch();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_BALANCE)) {
+                for (Map.Entry<Integer, BigDecimal> delta : deltas.entrySet()) {
+                    statement.setBigDecimal(1, delta.getValue());
+                    statement.setLong(2, versions.get(delta.getKey()));
+                    statement.setInt(3, delta.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        if (!deletes.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_ACCOUNT)) {
+                for (Write write : deletes) {
+                    statement.setInt(1, write.accountId);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    deletes.get(i).applied = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert transactions whose balance changes are already part of the stored balances, in one database transaction.
+     * Runs on a worker thread.
+     * @param connection connection used for the whole insert
+     * @param transactions the transactions
+     */
+    static void insertTransactions(Connection connection, List<Transaction> transactions) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION)) {
+            for (Transaction transaction : transactions) {
+                setTransaction(statement, transaction);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void setTransaction(PreparedStatement statement, Transaction transaction) throws SQLException {
+        statement.setLong(1, transaction.getId());
+        statement.setInt(2, transaction.getFromAccount());
+        statement.setInt(3, transaction.getToAccount());
+        statement.setBigDecimal(4, transaction.getAmount());
+        setCurrency(statement, 5, transaction.getCurrency() == null ? null : transaction.getCurrency().getCurrencyCode());
+        statement.setString(6, transaction.getDescription());
+        statement.setString(7, transaction.getStatus() == null ? null : transaction.getStatus().name());
+    }
+
+    private static void setCurrency(PreparedStatement statement, int index, String currency) throws SQLException {
+        if (currency == null) {
+            statement.setNull(index, Types.CHAR);
+        }
+        else {
+            statement.setString(index, currency);
+        }
+    }
+
+    /* SQLSTATE class 23: integrity constraint violation, here a duplicate account number */
+    private static boolean isConstraintViolation(SQLException exception) {
+        return exception.getSQLState() != null && exception.getSQLState().startsWith("23");
+    }
+
+    /**
+     * A write and its outcome, the outcome is set by the worker thread and read on the event loop once the batch is written
+     */
+    static class Write {
+        static final int INSERT_ACCOUNT = 0;
+        static final int RECORD = 1;
+        static final int DELETE_ACCOUNT = 2;
+
+        final int kind;
+        final Promise<Boolean> promise = Promise.promise();
+        Account account;
+        int accountId;
+        BigDecimal balance;
+        long version;
+        Transaction transaction;
+        boolean applied = true;
+        SQLException failure;
+
+        Write(int kind) {
+            this.kind = kind;
+        }
+    }
+}
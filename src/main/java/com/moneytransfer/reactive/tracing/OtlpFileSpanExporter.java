@@ -0,0 +1,100 @@
+package com.moneytransfer.reactive.tracing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends the spans to a file in the OTLP/JSON format, one ExportTraceServiceRequest per line,
+ * which is the format read by the OpenTelemetry collector otlpjsonfile receiver.
+ *
+ * @author Julian Vasa
+ */
+public class OtlpFileSpanExporter implements SpanExporter {
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_SERVER = 2;
+
+    private final BufferedWriter writer;
+    private final JsonObject resource;
+
+    public OtlpFileSpanExporter(String file, String serviceName) {
+        try {
+            this.writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Unable to open the trace file " + file, exception);
+        }
+        this.resource = new JsonObject()
+            .put("attributes", new JsonArray().add(attribute("service.name", serviceName)));
+    }
+
+    @Override
+    public void export(List<Span> spans) {
+        JsonArray otlpSpans = new JsonArray();
+        for (Span span : spans) {
+            JsonObject otlpSpan = new JsonObject()
+                .put("traceId", span.getTraceId())
+                .put("spanId", span.getSpanId())
+                .put("name", span.getName())
+                .put("kind", span.getParentSpanId() == null ? SPAN_KIND_SERVER : SPAN_KIND_INTERNAL)
+                .put("startTimeUnixNano", String.valueOf(span.getStartNanos()))
+                .put("endTimeUnixNano", String.valueOf(span.getEndNanos()));
+            if (span.getParentSpanId() != null) {
+                otlpSpan.put("parentSpanId", span.getParentSpanId());
+            }
+            List<Object> attributes = span.getAttributes();
+            if (attributes != null) {
+                JsonArray otlpAttributes = new JsonArray();
+                for (int i = 0; i < attributes.size(); i += 2) {
+                    otlpAttributes.add(attribute((String) attributes.get(i), attributes.get(i + 1)));
+                }
+                otlpSpan.put("attributes", otlpAttributes);
+            }
+            otlpSpans.add(otlpSpan);
+        }
+        JsonObject request = new JsonObject().put("resourceSpans", new JsonArray().add(new JsonObject()
+            .put("resource", resource)
+            .put("scopeSpans", new JsonArray().add(new JsonObject()
+                .put("scope", new JsonObject().put("name", "com.moneytransfer.reactive"))
+                .put("spans", otlpSpans)))));
+        try {
+            writer.write(request.encode());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static JsonObject attribute(String key, Object value) {
+        JsonObject otlpValue = new JsonObject();
+        if (value instanceof Boolean) {
+            otlpValue.put("boolValue", value);
+        }
+        else if (value instanceof Integer || value instanceof Long) {
+            /* OTLP/JSON encodes 64 bit integers as strings */
+            otlpValue.put("intValue", String.valueOf(value));
+        }
+        else {
+            otlpValue.put("stringValue", String.valueOf(value));
+        }
+        return new JsonObject().put("key", key).put("value", otlpValue);
+    }
+}
@@ -0,0 +1,94 @@
+package com.moneytransfer.reactive.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timed stage of a request. Spans which are not sampled, or created while tracing is off,
+ * are the shared NOOP instance so they cost nothing to start and end.
+ *
+ * @author Julian Vasa
+ */
+public class Span {
+    public static final Span NOOP = new Span(null, null, null, null, null, 0L);
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final long startNanos;
+    private long endNanos;
+    private List<Object> attributes;
+
+    Span(Tracer tracer, String traceId, String spanId, String parentSpanId, String name, long startNanos) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return false for the NOOP span, nothing is recorded or exported
+     */
+    public boolean isRecording() {
+        return tracer != null;
+    }
+
+    /**
+     * Add an attribute to the span, values are exported as string, int or bool
+     * @param key OpenTelemetry attribute key
+     * @param value attribute value
+     * @return this span
+     */
+    public Span setAttribute(String key, Object value) {
+        if (tracer != null) {
+            if (attributes == null) {
+                attributes = new ArrayList<>(4);
+            }
+            attributes.add(key);
+            attributes.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * End the span and hand it over to the exporter, ending a span twice has no effect
+     */
+    public void end() {
+        if (tracer != null && endNanos == 0L) {
+            endNanos = tracer.epochNanos();
+            tracer.export(this);
+        }
+    }
+
+    String getTraceId() {
+        return traceId;
+    }
+
+    String getSpanId() {
+        return spanId;
+    }
+
+    String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+
+    List<Object> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,19 @@
+package com.moneytransfer.reactive.tracing;
+
+import java.util.List;
+
+/**
+ * Destination of the finished spans, called from the exporter thread only
+ */
+public interface SpanExporter {
+    /**
+     * Export a batch of finished spans
+     * @param spans spans ended since the previous batch
+     */
+    void export(List<Span> spans);
+
+    /**
+     * Flush and release the resources held by the exporter
+     */
+    void close();
+}
@@ -0,0 +1,192 @@
+package com.moneytransfer.reactive.tracing;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request tracing with a span per stage of the request handling.
+ * Sampling is decided once per request, stages of requests which are not sampled get the NOOP span.
+ * Finished spans are queued and exported by a background thread so the event loop never does I/O for tracing,
+ * when the queue is full spans are dropped and counted.
+ *
+ * Configuration (verticle config or system properties):
+ * tracing.enabled (default false), tracing.sampleRatio (default 1.0), tracing.file (default traces.jsonl)
+ *
+ * @author Julian Vasa
+ */
+public class Tracer {
+    private static final String SPAN_KEY = "tracing.span";
+    private static final String BODY_SPAN_KEY = "tracing.body";
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final int MAX_BATCH = 512;
+
+    private final boolean enabled;
+    private final double sampleRatio;
+    private final SpanExporter exporter;
+    private final BlockingQueue<Span> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final long epochNanosAtStart = System.currentTimeMillis() * 1_000_000L;
+    private final long nanoTimeAtStart = System.nanoTime();
+    private volatile boolean running;
+    private Thread exporterThread;
+
+    public Tracer(boolean enabled, double sampleRatio, SpanExporter exporter) {
+        this.enabled = enabled && sampleRatio > 0;
+        this.sampleRatio = sampleRatio;
+        this.exporter = exporter;
+        this.queue = this.enabled ? new ArrayBlockingQueue<>(QUEUE_CAPACITY) : null;
+        if (this.enabled) {
+            running = true;
+            exporterThread = new Thread(this::exportLoop, "span-exporter");
+            exporterThread.setDaemon(true);
+            exporterThread.start();
+        }
+    }
+
+    /**
+     * Create the tracer from the verticle configuration, falling back to the system properties
+     * @param config verticle configuration
+     * @return the tracer, disabled unless tracing.enabled is true
+     */
+    public static Tracer create(JsonObject config) {
+        final boolean enabled = config.getBoolean("tracing.enabled", Boolean.getBoolean("tracing.enabled"));
+        if (!enabled) {
+            return new Tracer(false, 0, null);
+        }
+        final double sampleRatio = config.getDouble("tracing.sampleRatio",
+            Double.parseDouble(System.getProperty("tracing.sampleRatio", "1.0")));
+        final String file = config.getString("tracing.file", System.getProperty("tracing.file", "traces.jsonl"));
+        return new Tracer(true, sampleRatio, new OtlpFileSpanExporter(file, "reactive-money-transfer"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start the root span of a request, sampled with the configured ratio, and end it when the response is sent
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    public void traceRequest(RoutingContext routingContext) {
+        if (sampleRatio >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRatio) {
+            final Span root = new Span(this, randomId() + randomId(), randomId(), null,
+                routingContext.request().method() + " " + routingContext.request().path(), epochNanos());
+            root.setAttribute("http.method", routingContext.request().method().name())
+                .setAttribute("http.target", routingContext.request().uri());
+            routingContext.put(SPAN_KEY, root);
+            routingContext.addEndHandler(result -> root
+                .setAttribute("http.status_code", routingContext.response().getStatusCode())
+                .end());
+        }
+        routingContext.next();
+    }
+
+    /**
+     * Start the span measuring the BodyHandler buffering of the request body, registered before the BodyHandler
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    public void startBodySpan(RoutingContext routingContext) {
+        Span span = startSpan(routingContext, "http.body");
+        if (span.isRecording()) {
+            routingContext.put(BODY_SPAN_KEY, span);
+        }
+        routingContext.next();
+    }
+
+    /**
+     * End the body span, registered after the BodyHandler
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     */
+    public void endBodySpan(RoutingContext routingContext) {
+        Span span = routingContext.get(BODY_SPAN_KEY);
+        if (span != null) {
+            span.end();
+        }
+        routingContext.next();
+    }
+
+    /**
+     * Start the span of a stage of the request, it must be ended by the caller
+     * @param routingContext Represents the context for the handling of a request in Vert.x-Web
+     * @param name name of the stage
+     * @return the span, or the NOOP span when tracing is off or the request is not sampled
+     */
+    public Span startSpan(RoutingContext routingContext, String name) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        Span parent = routingContext.get(SPAN_KEY);
+        if (parent == null) {
+            return Span.NOOP;
+        }
+        return new Span(this, parent.getTraceId(), randomId(), parent.getSpanId(), name, epochNanos());
+    }
+
+    /**
+     * @return number of spans dropped because the export queue was full
+     */
+    public long getDroppedSpans() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the exporter thread after exporting the queued spans, waits for it so it must not be called on the event loop
+     */
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        try {
+            exporterThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        exporter.close();
+    }
+
+    long epochNanos() {
+        return epochNanosAtStart + (System.nanoTime() - nanoTimeAtStart);
+    }
+
+    void export(Span span) {
+        if (!queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void exportLoop() {
+        List<Span> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Span span = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (span == null) {
+                    continue;
+                }
+                batch.add(span);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                exporter.export(batch);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException exception) {
+                dropped.addAndGet(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static String randomId() {
+        String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,253 @@
+package com.moneytransfer.reactive;
+
+import com.jayway.restassured.RestAssured;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.*;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation and GC regression gate: runs a fixed workload route by route against MainVerticle with JFR recording,
+ * reports the bytes allocated per request by the server threads and the GC pauses of every route, and fails when
+ * a route allocates more per request than its baseline in allocation-baseline.json plus the tolerance.
+ *
+ * The bytes come from the allocation counters of the server threads, exact where the JFR allocation samples are
+ * estimates, the JFR recording gives the GC pauses and is kept in target/allocation-gate.jfr for the allocation sites.
+ * The report is written to target/allocation-report.json. Record the baseline again after an intended change with
+ * -Dallocation.updateBaseline=true, a route without baseline fails the gate until its baseline is recorded.
+ * The numbers depend on the machine, so the gate only runs with -Dallocation.gate=true, on the machine which recorded
+ * the baseline; a plain build skips it.
+ *
+ * @author Julian Vasa
+ */
+@RunWith(VertxUnitRunner.class)
+public class TestAllocationGate {
+    private static final int WARMUP_REQUESTS = 300;
+    private static final int MEASURED_REQUESTS = 500;
+    private static final String BASELINE = "allocation-baseline.json";
+    private static final Path BASELINE_SOURCE = Paths.get("src", "test", "resources", BASELINE);
+    private static final Path REPORT = Paths.get("target", "allocation-report.json");
+    private static final Path RECORDING = Paths.get("target", "allocation-gate.jfr");
+    private static final String TRANSFER = "{\"fromAccount\": 2222, \"toAccount\": 1111, \"amount\": \"0.01\", \"currency\": \"USD\"}";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        vertx.deployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(new JsonObject()),
+            context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @BeforeClass
+    public static void setupRestAssured() {
+        Assume.assumeTrue("Allocation gate skipped, enable it with -Dallocation.gate=true",
+            Boolean.getBoolean("allocation.gate") || Boolean.getBoolean("allocation.updateBaseline"));
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = 8080;
+    }
+
+    @AfterClass
+    public static void resetRestAssured() {
+        RestAssured.reset();
+    }
+
+    @Test
+    public void allocationsPerRequestStayWithinTheBaseline() throws IOException {
+        /* Reads first so the transfers and deposits do not change what they return */
+        final Map<String, Runnable> workload = new LinkedHashMap<>();
+        workload.put("GET /accounts", () -> get("/accounts").then().statusCode(200));
+        workload.put("GET /accounts/:id", () -> get("/accounts/1111").then().statusCode(200));
+        workload.put("GET /transactions/account/:id", () -> get("/transactions/account/1111").then().statusCode(200));
+        workload.put("GET /stats", () -> get("/stats").then().statusCode(200));
+        workload.put("POST /transactions", () -> given().body(TRANSFER).post("/transactions").then().statusCode(201));
+        workload.put("PUT /accounts/:id/deposit/:amount", () -> put("/accounts/1111/deposit/1").then().statusCode(200));
+
+        final List<Phase> phases = new ArrayList<>();
+        final Path recordingFile = Files.createDirectories(RECORDING.getParent()).resolve(RECORDING.getFileName());
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.GarbageCollection");
+            recording.enable("jdk.ObjectAllocationSample");
+            recording.start();
+            for (Map.Entry<String, Runnable> route : workload.entrySet()) {
+                phases.add(measure(route.getKey(), route.getValue()));
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            for (Phase phase : phases) {
+                if (phase.contains(event.getStartTime())) {
+                    phase.add(event);
+                }
+            }
+        }
+
+        final JsonObject baseline = readBaseline();
+        final double tolerance = baseline.getDouble("tolerance", 0.2);
+        final JsonObject baselineRoutes = baseline.getJsonObject("routes", new JsonObject());
+        final JsonObject report = new JsonObject();
+        final List<String> regressions = new ArrayList<>();
+        for (Phase phase : phases) {
+            final Long allowed = baselineRoutes.getLong(phase.route);
+            report.put(phase.route, phase.toJson().put("baselineBytesPerRequest", allowed));
+            if (allowed == null) {
+                regressions.add(phase.route + ": " + phase.bytesPerRequest() + " bytes per request, no baseline");
+            }
+            else if (phase.bytesPerRequest() > allowed * (1 + tolerance)) {
+                regressions.add(phase.route + ": " + phase.bytesPerRequest() + " bytes per request, baseline " + allowed);
+            }
+        }
+        Files.write(REPORT, report.encodePrettily().getBytes(StandardCharsets.UTF_8));
+        if (Boolean.getBoolean("allocation.updateBaseline")) {
+            writeBaseline(phases, tolerance);
+            return;
+        }
+        assertThat(regressions)
+            .as("Allocations per request above the baseline (+%d%%) or without baseline, see %s",
+                Math.round(tolerance * 100), REPORT)
+            .isEmpty();
+    }
+
+    /* Warm the route up then run the measured requests, counting what the server threads allocate meanwhile */
+    private static Phase measure(String route, Runnable request) {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            request.run();
+        }
+        final long[] serverThreads = serverThreadIds();
+        final Instant start = Instant.now();
+        final long before = allocatedBytes(serverThreads);
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            request.run();
+        }
+        final long allocated = allocatedBytes(serverThreads) - before;
+        return new Phase(route, start, Instant.now(), allocated);
+    }
+
+    /* The event loops and the consumer threads of the transfer ring, not the client threads of the test */
+    private static long[] serverThreadIds() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(TestAllocationGate::isServerThread)
+            .mapToLong(Thread::getId)
+            .toArray();
+    }
+
+    private static boolean isServerThread(String name) {
+        return name.startsWith("vert.x-eventloop-thread") || name.startsWith("transfer-");
+    }
+
+    private static boolean isServerThread(Thread thread) {
+        return isServerThread(thread.getName());
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        final long[] allocated = ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(threadIds);
+        long total = 0;
+        for (long bytes : allocated) {
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private static JsonObject readBaseline() throws IOException {
+        try (InputStream input = TestAllocationGate.class.getClassLoader().getResourceAsStream(BASELINE)) {
+            return input == null ? new JsonObject() : new JsonObject(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeBaseline(List<Phase> phases, double tolerance) throws IOException {
+        final JsonObject routes = new JsonObject();
+        for (Phase phase : phases) {
+            routes.put(phase.route, phase.bytesPerRequest());
+        }
+        Files.createDirectories(BASELINE_SOURCE.getParent());
+        Files.write(BASELINE_SOURCE, new JsonObject()
+            .put("tolerance", tolerance)
+            .put("routes", routes)
+            .encodePrettily().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Measured requests of one route and the JFR events recorded meanwhile */
+    private static final class Phase {
+        private final String route;
+        private final Instant start;
+        private final Instant end;
+        private final long allocatedBytes;
+        private long sampledBytes;
+        private int gcCount;
+        private long gcPauseNanos;
+        private long gcLongestPauseNanos;
+
+        Phase(String route, Instant start, Instant end, long allocatedBytes) {
+            this.route = route;
+            this.start = start;
+            this.end = end;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        boolean contains(Instant time) {
+            return !time.isBefore(start) && !time.isAfter(end);
+        }
+
+        void add(RecordedEvent event) {
+            switch (event.getEventType().getName()) {
+                case "jdk.GarbageCollection":
+                    gcCount++;
+                    gcPauseNanos += event.getDuration("sumOfPauses").toNanos();
+                    gcLongestPauseNanos = Math.max(gcLongestPauseNanos, event.getDuration("longestPause").toNanos());
+                    break;
+                case "jdk.ObjectAllocationSample":
+                    final RecordedThread thread = event.getThread("eventThread");
+                    if (thread != null && thread.getJavaName() != null && isServerThread(thread.getJavaName())) {
+                        sampledBytes += event.getLong("weight");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        long bytesPerRequest() {
+            return allocatedBytes / MEASURED_REQUESTS;
+        }
+
+        JsonObject toJson() {
+            return new JsonObject()
+                .put("requests", MEASURED_REQUESTS)
+                .put("bytesPerRequest", bytesPerRequest())
+                .put("jfrSampledBytesPerRequest", sampledBytes / MEASURED_REQUESTS)
+                .put("gcCount", gcCount)
+                .put("gcPauseMillis", gcPauseNanos / 1_000_000.0)
+                .put("gcLongestPauseMillis", gcLongestPauseNanos / 1_000_000.0);
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package com.moneytransfer.reactive;
 
 import com.jayway.restassured.RestAssured;
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.startup.LedgerImage;
+import com.moneytransfer.reactive.store.LedgerStore;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.*;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
 
 import static com.jayway.restassured.RestAssured.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,6 +35,7 @@ import static org.hamcrest.Matchers.*;
 public class TestMoneyTransfer {
 
     private Vertx vertx;
+    private String deploymentId;
 
     @Before
     public void setUp(TestContext context) throws IOException {
@@ -30,7 +46,19 @@ public class TestMoneyTransfer {
         DeploymentOptions options = new DeploymentOptions()
             .setConfig(new JsonObject().put("http.port", port)
             );
-        vertx.deployVerticle(MainVerticle.class.getName(), options, context.asyncAssertSuccess());
+        vertx.deployVerticle(MainVerticle.class.getName(), options, context.asyncAssertSuccess(id -> deploymentId = id));
+    }
+
+    /* Replace the verticle deployed by setUp with one using another configuration */
+    private void redeploy(TestContext context, JsonObject config) {
+        Async async = context.async();
+        vertx.undeploy(deploymentId)
+            .compose(v -> vertx.deployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(config)))
+            .onComplete(context.asyncAssertSuccess(id -> {
+                deploymentId = id;
+                async.complete();
+            }));
+        async.awaitSuccess(10_000);
     }
 
 
@@ -195,12 +223,12 @@ public class TestMoneyTransfer {
 
     @Test
     public void getAllTransactions_PickOneAndGetTransactionDetails() {
-        final int id = get("/transactions").then()
+        final long id = get("/transactions").then()
             .assertThat()
             .body("size()", is(2))
             .statusCode(200)
             .extract()
-            .jsonPath().getInt("find { it.amount==34 }.id");
+            .jsonPath().getLong("find { it.amount==34 }.id");
 
         get("/transactions/" + id).then()
             .assertThat()
@@ -278,6 +306,63 @@ public class TestMoneyTransfer {
             .statusCode(415);
     }
 
+    @Test
+    public void newTransactionWithTooLongDescription() {
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"10\",\n" +
+            "    \"currency\": \"USD\",\n" +
+            "    \"description\": \"" + repeat('x', 1025) + "\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(400);
+        get("/accounts/2222").then()
+            .assertThat()
+            .statusCode(200)
+            .body("balance", equalTo(200));
+    }
+
+    @Test
+    public void addNewAccountWithTooLongName() {
+        given().body("{\n" +
+            "    \"id\": \"4444\",\n" +
+            "    \"name\": \"" + repeat('x', 256) + "\",\n" +
+            "    \"balance\": \"10\",\n" +
+            "    \"currency\": \"EUR\"\n" +
+            "}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(400);
+        get("/accounts/4444").then()
+            .assertThat()
+            .statusCode(404);
+    }
+
+    @Test
+    public void addNewAccountWithoutBalanceOrCurrency() {
+        given().body("{\"id\": \"4444\", \"name\": \"account 4\", \"currency\": \"EUR\"}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(400);
+        given().body("{\"id\": \"4444\", \"name\": \"account 4\", \"balance\": \"10\"}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(400);
+        get("/accounts/4444").then()
+            .assertThat()
+            .statusCode(404);
+    }
+
     @Test
     public void newTransactionWithNonNumericAccount() {
         given().body("{\n" +
@@ -296,11 +381,11 @@ public class TestMoneyTransfer {
 
     @Test
     public void newTransactionWithIdAlreadyPresentInTheDB() {
-        final int id = get("/transactions").then()
+        final long id = get("/transactions").then()
             .assertThat()
             .statusCode(200)
             .extract()
-            .jsonPath().getInt("find { it.amount==34 }.id");
+            .jsonPath().getLong("find { it.amount==34 }.id");
 
         given().body("{\n" +
             "    \"id\": \"" + id + "\",\n" +
@@ -317,6 +402,26 @@ public class TestMoneyTransfer {
             .statusCode(409);
     }
 
+    @Test
+    public void newTransactionWithAnIdTheLedgerCouldNotHaveGenerated() {
+        given().body("{\n" +
+            "    \"id\": \"" + Long.MAX_VALUE + "\",\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"14.4\",\n" +
+            "    \"currency\": \"USD\",\n" +
+            "    \"description\": \"test transfer\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(415);
+        get("/transactions/" + Long.MAX_VALUE).then()
+            .assertThat()
+            .statusCode(404);
+    }
+
     @Test
     public void newTransactionWithSourceAccountThatDoesNotExist() {
         given().body("{\n" +
@@ -396,5 +501,639 @@ public class TestMoneyTransfer {
             .statusCode(409);
     }
 
+    @Test
+    public void reconciliationAfterTransfersAndCashOperations() {
+        put("/accounts/1111/deposit/1000").then()
+            .assertThat()
+            .statusCode(200);
+        put("/accounts/2222/withdraw/10").then()
+            .assertThat()
+            .statusCode(200);
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"3333\",\n" +
+            "    \"amount\": \"14.4\",\n" +
+            "    \"currency\": \"USD\",\n" +
+            "    \"description\": \"test transfer\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(201);
+
+        get("/admin/reconciliation").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accountsChecked", equalTo(3))
+            .body("mismatchCount", equalTo(0))
+            .body("currencies.EUR.externalFlow", equalTo(1000))
+            .body("currencies.USD.externalFlow", equalTo(-10))
+            .body("currencies.USD.moneyConserved", equalTo(true))
+            /* The sample transfers and this one are between accounts of different currencies */
+            .body("currencyMismatchAccounts", contains(1111, 2222, 3333))
+            .body("moneyConserved", equalTo(true))
+            .body("consistent", equalTo(true));
+    }
+
+    @Test
+    public void reconciliationAfterDeletingAnAccountWithTransactions() {
+        given().body("{\"id\": 4444, \"name\": \"account 4\", \"balance\": 10, \"currency\": \"EUR\"}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(201);
+        given().body("{\"fromAccount\": 4444, \"toAccount\": 1111, \"amount\": \"10\", \"currency\": \"EUR\"}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(201);
+        delete("/accounts/4444").then()
+            .assertThat()
+            .statusCode(204);
+
+        get("/admin/reconciliation").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accountsChecked", equalTo(3))
+            .body("orphanAccounts", equalTo(1))
+            .body("currencies.EUR.accounts", equalTo(1))
+            .body("currencies.EUR.closedAccountsFlow", equalTo(10))
+            .body("currencies.EUR.moneyConserved", equalTo(true))
+            .body("moneyConserved", equalTo(true))
+            .body("consistent", equalTo(true));
+    }
+
+    @Test
+    public void newTransactionWithZeroTransactionAmount() {
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": 0,\n" +
+            "    \"currency\": \"USD\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(409);
+    }
+
+    @Test
+    public void newTransactionWithOversizedBody() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            description.append('x');
+        }
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"14.4\",\n" +
+            "    \"currency\": \"USD\",\n" +
+            "    \"description\": \"" + description + "\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(413);
+    }
+
+    @Test
+    public void tracingExportsTheSpansOfARequest(TestContext context) throws IOException {
+        final File traces = traceFile();
+        redeploy(context, new JsonObject()
+            .put("tracing.enabled", true)
+            .put("tracing.file", traces.getPath()));
+        get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(200);
+        /* Undeploying closes the tracer, which exports the queued spans */
+        redeploy(context, new JsonObject());
+
+        final List<JsonObject> lines = readLines(traces);
+        assertThat(lines).isNotEmpty();
+        assertThat(lines.get(0).getJsonArray("resourceSpans").getJsonObject(0)
+            .getJsonObject("resource").getJsonArray("attributes").getJsonObject(0))
+            .isEqualTo(new JsonObject().put("key", "service.name")
+                .put("value", new JsonObject().put("stringValue", "reactive-money-transfer")));
+        final List<JsonObject> spans = spans(lines);
+        final JsonObject root = span(spans, "GET /accounts/1111");
+        assertThat(root.getString("traceId")).matches("[0-9a-f]{32}");
+        assertThat(root.getString("spanId")).matches("[0-9a-f]{16}");
+        assertThat(root.getInteger("kind")).isEqualTo(2);
+        assertThat(root.containsKey("parentSpanId")).isFalse();
+        assertThat(root.getJsonArray("attributes")).contains(new JsonObject().put("key", "http.status_code")
+            .put("value", new JsonObject().put("intValue", "200")));
+        for (String stage : new String[] {"account.lookup", "account.encode"}) {
+            final JsonObject span = span(spans, stage);
+            assertThat(span.getString("traceId")).isEqualTo(root.getString("traceId"));
+            assertThat(span.getString("parentSpanId")).isEqualTo(root.getString("spanId"));
+            assertThat(span.getInteger("kind")).isEqualTo(1);
+            assertThat(Long.parseLong(span.getString("startTimeUnixNano")))
+                .isGreaterThanOrEqualTo(Long.parseLong(root.getString("startTimeUnixNano")));
+            assertThat(Long.parseLong(span.getString("endTimeUnixNano")))
+                .isGreaterThanOrEqualTo(Long.parseLong(span.getString("startTimeUnixNano")))
+                .isLessThanOrEqualTo(Long.parseLong(root.getString("endTimeUnixNano")));
+        }
+    }
+
+    @Test
+    public void tracingSamplesRequests(TestContext context) throws IOException {
+        final File traces = traceFile();
+        redeploy(context, new JsonObject()
+            .put("tracing.enabled", true)
+            .put("tracing.sampleRatio", 0.5)
+            .put("tracing.file", traces.getPath()));
+        for (int i = 0; i < 200; i++) {
+            get("/health").then().assertThat().statusCode(200);
+        }
+        redeploy(context, new JsonObject());
+
+        final List<JsonObject> spans = spans(readLines(traces));
+        /* Sampled per request, a sampled request has its root span only as /health has no stage */
+        assertThat(spans).allMatch(span -> span.getString("name").equals("GET /health"));
+        assertThat(spans.size()).isBetween(50, 150);
+        assertThat(spans.stream().map(span -> span.getString("traceId")).distinct().count()).isEqualTo(spans.size());
+    }
+
+    private static String repeat(char c, int count) {
+        final char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static File traceFile() {
+        final File traces = new File("target", "traces-" + System.nanoTime() + ".jsonl");
+        traces.getParentFile().mkdirs();
+        traces.deleteOnExit();
+        return traces;
+    }
+
+    private static List<JsonObject> readLines(File file) throws IOException {
+        final List<JsonObject> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            lines.add(new JsonObject(line));
+        }
+        return lines;
+    }
+
+    /* The spans of every OTLP/JSON ExportTraceServiceRequest */
+    private static List<JsonObject> spans(List<JsonObject> lines) {
+        final List<JsonObject> spans = new ArrayList<>();
+        for (JsonObject line : lines) {
+            for (Object resourceSpans : line.getJsonArray("resourceSpans")) {
+                for (Object scopeSpans : ((JsonObject) resourceSpans).getJsonArray("scopeSpans")) {
+                    for (Object span : ((JsonObject) scopeSpans).getJsonArray("spans")) {
+                        spans.add((JsonObject) span);
+                    }
+                }
+            }
+        }
+        return spans;
+    }
+
+    private static JsonObject span(List<JsonObject> spans, String name) {
+        return spans.stream()
+            .filter(span -> name.equals(span.getString("name")))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No span " + name + " in " + spans));
+    }
+
+    @Test
+    public void eventLoopDiagnosticsReportsRouteHandlers() {
+        get("/accounts").then()
+            .assertThat()
+            .statusCode(200);
+        get("/admin/diagnostics/event-loop").then()
+            .assertThat()
+            .statusCode(200)
+            .body("routes.route", hasItem("GET /accounts"))
+            .body("lag.probes", greaterThanOrEqualTo(0));
+    }
 
+    @Test
+    public void searchAccounts() {
+        get("/accounts/search?maxBalance=250&order=desc").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accounts.id", contains(2222, 1111))
+            .body("hasMore", equalTo(false));
+        get("/accounts/search?namePrefix=ACCOUNT&currency=GBP").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accounts.id", contains(3333));
+        get("/accounts/search?limit=1").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accounts.id", contains(1111))
+            .body("hasMore", equalTo(true));
+    }
+
+    @Test
+    public void searchAccountsAfterTransfer() {
+        put("/accounts/1111/deposit/1000").then()
+            .assertThat()
+            .statusCode(200);
+        get("/accounts/search?minBalance=1000").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accounts.id", contains(1111));
+    }
+
+    @Test
+    public void searchAccountsWithInvalidParameter() {
+        get("/accounts/search?currency=XXXX").then()
+            .assertThat()
+            .statusCode(400);
+    }
+
+    @Test
+    public void transfersWithJdbcStore(TestContext context) {
+        redeploy(context, new JsonObject()
+            .put("store.type", "jdbc")
+            .put("store.url", "jdbc:h2:mem:transfers-" + System.nanoTime()));
+        get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(200)
+            .body("balance", equalTo(100));
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"14.4\",\n" +
+            "    \"currency\": \"USD\"\n" +
+            "}")
+            .when()
+            .post("/transactions")
+            .then()
+            .assertThat()
+            .statusCode(201);
+        put("/accounts/3333/withdraw/10").then()
+            .assertThat()
+            .statusCode(200);
+        get("/accounts/search?minBalance=110").then()
+            .assertThat()
+            .statusCode(200)
+            .body("accounts.id", contains(1111, 3333));
+        get("/transactions").then()
+            .assertThat()
+            .statusCode(200)
+            .body("size()", is(4));
+        get("/admin/reconciliation").then()
+            .assertThat()
+            .statusCode(200)
+            .body("mismatchCount", equalTo(0))
+            .body("consistent", equalTo(true));
+    }
+
+    @Test
+    public void accountCacheWithJdbcStore(TestContext context) {
+        get("/admin/diagnostics/account-cache").then()
+            .assertThat()
+            .statusCode(404);
+        redeploy(context, new JsonObject()
+            .put("store.type", "jdbc")
+            .put("store.url", "jdbc:h2:mem:cache-" + System.nanoTime())
+            .put("store.cacheSize", 2));
+        get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(200)
+            .body("balance", equalTo(100));
+        put("/accounts/2222/deposit/10").then()
+            .assertThat()
+            .statusCode(200);
+        get("/accounts/3333").then()
+            .assertThat()
+            .statusCode(200);
+        get("/accounts/2222").then()
+            .assertThat()
+            .statusCode(200)
+            .body("balance", equalTo(210));
+        get("/admin/diagnostics/account-cache").then()
+            .assertThat()
+            .statusCode(200)
+            .body("capacity", equalTo(2))
+            .body("size", lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void importAndExportAccounts() {
+        given().contentType("text/csv")
+            .body("id,name,balance,currency\n" +
+                "5001,\"Merchant, Inc.\",100,EUR\r\n" +
+                "5002,merchant 2,abc,EUR\n" +
+                "1111,account 1,10,EUR\n" +
+                "\n" +
+                "5003,merchant 3,0.5,USD")
+            .when()
+            .post("/accounts/import")
+            .then()
+            .assertThat()
+            .statusCode(200)
+            .body("imported", equalTo(2))
+            .body("failed", equalTo(2))
+            .body("errors.line", contains(3, 4));
+        given().contentType("application/x-ndjson")
+            .body("{\"id\": 5004, \"name\": \"merchant 4\", \"balance\": 7, \"currency\": \"GBP\"}\n{\"id\": 5005}\n")
+            .when()
+            .post("/accounts/import")
+            .then()
+            .assertThat()
+            .statusCode(200)
+            .body("imported", equalTo(1))
+            .body("errors.line", contains(2));
+        get("/accounts/5004").then()
+            .assertThat()
+            .statusCode(200)
+            .body("openingBalance", equalTo(7));
+        String csv = get("/accounts/export?format=csv").then()
+            .assertThat()
+            .statusCode(200)
+            .extract().asString();
+        assertThat(csv).isEqualTo("id,name,balance,currency\n" +
+            "1111,account 1,100,EUR\n" +
+            "2222,account 2,200,USD\n" +
+            "3333,account 3,300,GBP\n" +
+            "5001,\"Merchant, Inc.\",100,EUR\n" +
+            "5003,merchant 3,0.5,USD\n" +
+            "5004,merchant 4,7,GBP\n");
+        given().contentType("application/json")
+            .body("[]")
+            .when()
+            .post("/accounts/import")
+            .then()
+            .assertThat()
+            .statusCode(415);
+    }
+
+    @Test
+    public void accountNamesWithLineBreaksAreRejected() {
+        /* The CSV export could not be imported again */
+        given().contentType("application/x-ndjson")
+            .body("{\"id\": 5006, \"name\": \"merchant\\n6\", \"balance\": 7, \"currency\": \"GBP\"}\n")
+            .when()
+            .post("/accounts/import")
+            .then()
+            .assertThat()
+            .statusCode(200)
+            .body("imported", equalTo(0))
+            .body("errors.error", contains("Name contains a line break"));
+        given().body("{\n" +
+            "    \"id\": \"5007\",\n" +
+            "    \"name\": \"merchant\\r\\n7\",\n" +
+            "    \"balance\": \"10\",\n" +
+            "    \"currency\": \"EUR\"\n" +
+            "}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(400);
+    }
+
+    @Test
+    public void accountNumberOfTheExternalAccountIsRejected() {
+        /* Without id the account number decodes to 0, the external account */
+        given().body("{\n" +
+            "    \"name\": \"no number\",\n" +
+            "    \"balance\": \"10\",\n" +
+            "    \"currency\": \"EUR\"\n" +
+            "}")
+            .when()
+            .post("/accounts")
+            .then()
+            .assertThat()
+            .statusCode(400);
+        given().contentType("text/csv")
+            .body("0,external,10,EUR\n-1,negative,10,EUR\n")
+            .when()
+            .post("/accounts/import")
+            .then()
+            .assertThat()
+            .statusCode(200)
+            .body("imported", equalTo(0))
+            .body("errors.error", contains("Account number must be positive", "Account number must be positive"));
+        get("/admin/reconciliation").then().assertThat().statusCode(200).body("consistent", equalTo(true));
+    }
+
+    @Test
+    public void conditionalGetWithETags() {
+        final String accountTag = get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(200)
+            .extract().header("ETag");
+        final String ledgerTag = get("/accounts").then()
+            .assertThat()
+            .statusCode(200)
+            .extract().header("ETag");
+        given().header("If-None-Match", accountTag).when().get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(304)
+            .header("ETag", accountTag);
+        given().header("If-None-Match", ledgerTag).when().get("/accounts").then()
+            .assertThat()
+            .statusCode(304);
+        given().header("If-None-Match", ledgerTag).when().get("/transactions").then()
+            .assertThat()
+            .statusCode(304);
+        put("/accounts/2222/deposit/5").then()
+            .assertThat()
+            .statusCode(200);
+        given().header("If-None-Match", accountTag).when().get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(304);
+        given().header("If-None-Match", ledgerTag).when().get("/accounts").then()
+            .assertThat()
+            .statusCode(200)
+            .header("ETag", not(equalTo(ledgerTag)));
+        put("/accounts/1111/withdraw/5").then()
+            .assertThat()
+            .statusCode(200);
+        given().header("If-None-Match", accountTag).when().get("/accounts/1111").then()
+            .assertThat()
+            .statusCode(200)
+            .body("balance", equalTo(95));
+    }
+
+    @Test
+    public void transfersOverVelocityLimitAreRejected(TestContext context) {
+        redeploy(context, new JsonObject().put("limits", new JsonObject()
+            .put("default", new JsonArray().add(new JsonObject().put("windowSeconds", 60).put("maxCount", 2)))
+            .put("accounts", new JsonObject().put("3333", new JsonArray()
+                .add(new JsonObject().put("windowSeconds", 3600).put("maxAmount", 15))))));
+        final String transfer = "{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"1\",\n" +
+            "    \"currency\": \"USD\"\n" +
+            "}";
+        given().body(transfer).when().post("/transactions").then().assertThat().statusCode(201);
+        given().body(transfer).when().post("/transactions").then().assertThat().statusCode(201);
+        given().body(transfer).when().post("/transactions").then()
+            .assertThat()
+            .statusCode(429)
+            .body("error", containsString("at most 2 transfers per 60s"));
+        get("/accounts/2222").then()
+            .assertThat()
+            .body("balance", equalTo(198));
+        final String gbpTransfer = "{\n" +
+            "    \"fromAccount\": \"3333\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"10.5\",\n" +
+            "    \"currency\": \"GBP\"\n" +
+            "}";
+        given().body(gbpTransfer).when().post("/transactions").then().assertThat().statusCode(201);
+        given().body(gbpTransfer).when().post("/transactions").then()
+            .assertThat()
+            .statusCode(429)
+            .body("error", containsString("at most 15 per 3600s"));
+    }
+
+    @Test
+    public void holdsReserveCaptureAndRelease() {
+        final int holdId = given().body("{\"amount\": \"150\", \"toAccount\": 1111, \"description\": \"Hotel booking\"}")
+            .when().post("/accounts/2222/holds")
+            .then()
+            .assertThat()
+            .statusCode(201)
+            .body("status", equalTo("OPEN"))
+            .body("amount", equalTo(150))
+            .extract().path("id");
+        get("/accounts/2222/balance").then()
+            .assertThat()
+            .body("balance", equalTo(200))
+            .body("held", equalTo(150))
+            .body("available", equalTo(50));
+        /* The held amount can not be withdrawn, transferred nor held again */
+        put("/accounts/2222/withdraw/60").then().assertThat().statusCode(403);
+        given().body("{\"amount\": \"60\"}").when().post("/accounts/2222/holds").then().assertThat().statusCode(409);
+        delete("/accounts/2222").then().assertThat().statusCode(409);
+
+        given().body("{\"amount\": \"100\"}").when().post("/holds/" + holdId + "/capture")
+            .then()
+            .assertThat()
+            .statusCode(201)
+            .body("fromAccount", equalTo(2222))
+            .body("toAccount", equalTo(1111))
+            .body("amount", equalTo(100))
+            .body("description", equalTo("Hotel booking"));
+        get("/holds/" + holdId).then().assertThat().statusCode(404);
+        get("/accounts/2222/balance").then()
+            .assertThat()
+            .body("balance", equalTo(100))
+            .body("held", equalTo(0))
+            .body("available", equalTo(100));
+        get("/accounts/1111").then().assertThat().body("balance", equalTo(200));
+
+        final int releasedId = given().body("{\"amount\": \"40\"}").when().post("/accounts/3333/holds")
+            .then().assertThat().statusCode(201).extract().path("id");
+        post("/holds/" + releasedId + "/release").then().assertThat().statusCode(200).body("status", equalTo("RELEASED"));
+        get("/accounts/3333/balance").then().assertThat().body("available", equalTo(300));
+
+        /* The expiration is tested with an injected clock in TestHoldBook */
+        given().body("{\"amount\": \"40\", \"expiresInSeconds\": 1}").when().post("/accounts/3333/holds")
+            .then().assertThat().statusCode(201).body("expiresAt", notNullValue());
+        get("/accounts/3333/balance").then().assertThat().body("available", equalTo(260));
+    }
+
+    @Test
+    public void transactionIdsAreTimeOrdered64BitIds() {
+        final String transfer = "{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"1\",\n" +
+            "    \"currency\": \"USD\"\n" +
+            "}";
+        final long first = given().body(transfer).when().post("/transactions")
+            .then().assertThat().statusCode(201).extract().jsonPath().getLong("id");
+        final long second = given().body(transfer).when().post("/transactions")
+            .then().assertThat().statusCode(201).extract().jsonPath().getLong("id");
+        assertThat(first).isGreaterThan(Integer.MAX_VALUE);
+        assertThat(second).isGreaterThan(first);
+        get("/transactions/" + second).then()
+            .assertThat()
+            .statusCode(200)
+            .body("id", equalTo(second));
+    }
+
+    @Test
+    public void statsAreUpdatedByEveryTransaction() {
+        get("/stats").then()
+            .assertThat()
+            .statusCode(200)
+            .body("currencies.EUR.accounts", equalTo(1))
+            .body("currencies.EUR.balance", equalTo(100))
+            .body("currencies.USD.balance", equalTo(200))
+            .body("currencies.GBP.balance", equalTo(300));
+
+        put("/accounts/1111/deposit/10").then().assertThat().statusCode(200);
+        given().body("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"5.5\",\n" +
+            "    \"currency\": \"USD\"\n" +
+            "}").when().post("/transactions").then().assertThat().statusCode(201);
+
+        get("/stats").then()
+            .assertThat()
+            .body("currencies.EUR.balance", equalTo(115.5f))
+            .body("currencies.EUR.today.transactions", equalTo(1))
+            .body("currencies.EUR.today.volume", equalTo(10))
+            .body("currencies.USD.balance", equalTo(194.5f))
+            .body("currencies.USD.last24Hours.transactions", equalTo(1))
+            .body("currencies.USD.lastDays.volume", equalTo(5.5f));
+        get("/stats/accounts/1111").then()
+            .assertThat()
+            .statusCode(200)
+            .body("currency", equalTo("EUR"))
+            .body("today.inflow", equalTo(15.5f))
+            .body("today.inflowCount", equalTo(2))
+            .body("lastDays.outflowCount", equalTo(0));
+        get("/stats/accounts/2222").then()
+            .assertThat()
+            .body("today.outflow", equalTo(5.5f))
+            .body("today.outflowCount", equalTo(1));
+        get("/stats/accounts/999").then().assertThat().statusCode(404);
+    }
+
+    @Test
+    public void fastStartLoadsTheLedgerImage(TestContext context) throws IOException {
+        final File image = File.createTempFile("ledger", ".img");
+        image.deleteOnExit();
+        final LedgerStore store = LedgerStore.create(vertx, new JsonObject());
+        store.accounts().insert(Account.builder()
+            .id(4444)
+            .name("account 4")
+            .balance(new BigDecimal("90.25"))
+            .openingBalance(new BigDecimal("100.25"))
+            .currency(Currency.getInstance("CHF"))
+            .build());
+        final Transaction withdrawal = new Transaction(4444, Account.EXTERNAL_ACCOUNT, BigDecimal.TEN, Currency.getInstance("CHF"));
+        withdrawal.setStatus(TransactionStatus.SUCCESSFUL);
+        withdrawal.setDescription("Withdraw");
+        store.transactions().record(withdrawal);
+        final Async written = context.async();
+        LedgerImage.write(vertx, image.getPath(), store).onComplete(context.asyncAssertSuccess(v -> written.complete()));
+        written.awaitSuccess(10_000);
+
+        redeploy(context, new JsonObject().put("startup.ledgerImage", image.getPath()).put("startup.warmup", true));
+        get("/accounts").then()
+            .assertThat()
+            .statusCode(200)
+            .body("id", contains(4444))
+            .body("[0].balance", equalTo(90.25f))
+            .body("[0].currency", equalTo("CHF"));
+        get("/transactions").then()
+            .assertThat()
+            .body("id", contains(withdrawal.getId()))
+            .body("[0].description", equalTo("Withdraw"));
+        get("/admin/reconciliation").then().assertThat().statusCode(200).body("consistent", equalTo(true));
+        get("/admin/diagnostics/startup").then()
+            .assertThat()
+            .statusCode(200)
+            .body("timeToReadyMillis", notNullValue())
+            .body("timeToFirstResponseMillis", notNullValue());
+    }
 }
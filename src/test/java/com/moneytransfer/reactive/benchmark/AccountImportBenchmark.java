@@ -0,0 +1,76 @@
+package com.moneytransfer.reactive.benchmark;
+
+import com.moneytransfer.reactive.MainVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a million accounts with one POST /accounts/import CSV request, with the in-memory store and the JDBC store.
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.moneytransfer.reactive.benchmark.AccountImportBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AccountImportBenchmark {
+    private static final int ACCOUNTS = 1_000_000;
+
+    @Param({"memory", "jdbc"})
+    private String store;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private Buffer body;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        vertx = Vertx.vertx();
+        vertx.deployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(new JsonObject()
+            .put("store.type", store)
+            .put("store.url", "jdbc:h2:mem:import-" + System.nanoTime())))
+            .toCompletionStage().toCompletableFuture().join();
+        client = vertx.createHttpClient();
+        body = Buffer.buffer(ACCOUNTS * 32);
+        body.appendString("id,name,balance,currency\n");
+        for (int id = 1_000_000; id < 1_000_000 + ACCOUNTS; id++) {
+            body.appendString(id + ",merchant " + id + ",100.50,EUR\n");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public String importAccounts() {
+        return client.request(HttpMethod.POST, 8080, "localhost", "/accounts/import")
+            .compose(request -> request
+                .putHeader("Content-Type", "text/csv")
+                .send(body))
+            .compose(response -> response.body())
+            .map(Buffer::toString)
+            .toCompletionStage().toCompletableFuture().join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(AccountImportBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,132 @@
+package com.moneytransfer.reactive.benchmark;
+
+import com.moneytransfer.reactive.enums.TransactionStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.AccountQuery;
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.store.LedgerStore;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the in-memory store with the JDBC store (embedded H2) for concurrent transfers, which the JDBC store
+ * coalesces into batched commits, and for account searches, served by the balance index or by SQL.
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.moneytransfer.reactive.benchmark.LedgerStoreBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LedgerStoreBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int OPERATIONS = 1000;
+
+    @Param({"memory", "jdbc"})
+    private String store;
+
+    private Vertx vertx;
+    private Context context;
+    private LedgerStore ledgerStore;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        ledgerStore = LedgerStore.create(vertx, new JsonObject()
+            .put("store.type", store)
+            .put("store.url", "jdbc:h2:mem:benchmark-" + System.nanoTime()));
+        onContext(() -> ledgerStore.open().compose(v -> {
+            List<Future<Boolean>> inserts = new ArrayList<>();
+            for (int id = 1; id <= ACCOUNTS; id++) {
+                inserts.add(ledgerStore.accounts().insert(Account.builder()
+                    .id(id)
+                    .name("account " + id)
+                    .balance(BigDecimal.valueOf(1_000_000))
+                    .openingBalance(BigDecimal.valueOf(1_000_000))
+                    .currency(Currency.getInstance("EUR"))
+                    .build()));
+            }
+            return Future.all(inserts).mapEmpty();
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ledgerStore.close();
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void concurrentTransfers() {
+        onContext(() -> {
+            List<Future<Void>> recorded = new ArrayList<>(OPERATIONS);
+            for (int i = 0; i < OPERATIONS; i++) {
+                final int from = 1 + next++ % ACCOUNTS;
+                final int to = 1 + (from + 7) % ACCOUNTS;
+                recorded.add(Future.all(ledgerStore.accounts().get(from), ledgerStore.accounts().get(to))
+                    .compose(accounts -> {
+                        final Account fromAccount = accounts.resultAt(0);
+                        final Account toAccount = accounts.resultAt(1);
+                        final BigDecimal amount = BigDecimal.ONE;
+                        fromAccount.withdraw(amount);
+                        toAccount.deposit(amount);
+                        Transaction transaction = new Transaction(from, to, amount, fromAccount.getCurrency());
+                        transaction.setStatus(TransactionStatus.SUCCESSFUL);
+                        return ledgerStore.transactions().record(transaction);
+                    }));
+            }
+            return Future.all(recorded).mapEmpty();
+        });
+    }
+
+    @Benchmark
+    public void accountSearch() {
+        onContext(() -> ledgerStore.accounts().search(AccountQuery.builder()
+            .currency(Currency.getInstance("EUR"))
+            .minBalance(BigDecimal.valueOf(999_000))
+            .offset(0)
+            .limit(50)
+            .build()).mapEmpty());
+    }
+
+    /* The stores must be called on the event loop, run the operations there and wait for them */
+    private void onContext(Supplier<Future<Void>> operations) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        context.runOnContext(v -> operations.get().onComplete(result -> {
+            if (result.succeeded()) {
+                done.complete(null);
+            }
+            else {
+                done.completeExceptionally(result.cause());
+            }
+        }));
+        done.join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(LedgerStoreBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,46 @@
+package com.moneytransfer.reactive.benchmark;
+
+import com.moneytransfer.reactive.ids.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of a transaction id on 4 threads: the time-ordered generator with its per-thread blocks
+ * against a single shared counter.
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.moneytransfer.reactive.benchmark.TransactionIdBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class TransactionIdBenchmark {
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1);
+    private final AtomicLong counter = new AtomicLong();
+
+    @Benchmark
+    public long timeOrdered() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public long sharedCounter() {
+        return counter.getAndIncrement();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TransactionIdBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.moneytransfer.reactive.benchmark;
+
+import com.moneytransfer.reactive.model.Transaction;
+import com.moneytransfer.reactive.model.TransferRequest;
+import com.moneytransfer.reactive.parser.TransferRequestParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming transfer parser with the previous getBodyAsString + Json.decodeValue path.
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.moneytransfer.reactive.benchmark.TransferParserBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferParserBenchmark {
+    private final TransferRequestParser parser = new TransferRequestParser();
+    private final TransferRequest request = new TransferRequest();
+    private Buffer body;
+
+    @Setup
+    public void setUp() {
+        body = Buffer.buffer("{\n" +
+            "    \"fromAccount\": \"2222\",\n" +
+            "    \"toAccount\": \"1111\",\n" +
+            "    \"amount\": \"14.4\",\n" +
+            "    \"currency\": \"USD\",\n" +
+            "    \"description\": \"test transfer\"\n" +
+            "}");
+    }
+
+    @Benchmark
+    public Transaction decodeValue() {
+        return Json.decodeValue(body.toString(), Transaction.class);
+    }
+
+    @Benchmark
+    public TransferRequest streamingParser() {
+        parser.parse(body, request);
+        return request;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TransferParserBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
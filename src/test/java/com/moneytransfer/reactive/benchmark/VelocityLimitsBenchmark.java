@@ -0,0 +1,62 @@
+package com.moneytransfer.reactive.benchmark;
+
+import com.moneytransfer.reactive.limits.VelocityLimits;
+import com.moneytransfer.reactive.model.Account;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the velocity limit check of a transfer, a minute and a day window, over many accounts.
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath com.moneytransfer.reactive.benchmark.VelocityLimitsBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VelocityLimitsBenchmark {
+    private static final int ACCOUNTS = 100_000;
+
+    private final BigDecimal amount = new BigDecimal("12.50");
+    private VelocityLimits velocityLimits;
+    private Account[] accounts;
+    private int next;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        velocityLimits = VelocityLimits.create(new JsonObject().put("limits", new JsonObject()
+            .put("default", new JsonArray()
+                .add(new JsonObject().put("windowSeconds", 60).put("maxCount", Long.MAX_VALUE / 2))
+                .add(new JsonObject().put("windowSeconds", 86400).put("buckets", 96).put("maxAmount", "1000000000000")))));
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Account.builder().id(i + 1).currency(Currency.getInstance("EUR")).build();
+        }
+        now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public String tryDebit() {
+        /* The clock moves 1ms per check so the windows keep sliding */
+        return velocityLimits.tryDebit(accounts[next++ % ACCOUNTS], amount, now++);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(VelocityLimitsBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
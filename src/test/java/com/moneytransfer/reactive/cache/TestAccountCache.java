@@ -0,0 +1,141 @@
+package com.moneytransfer.reactive.cache;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.CacheStats;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * W-TinyLFU account cache: admission, segmented LRU, pinning and resurrection of the evicted accounts
+ *
+ * @author Julian Vasa
+ */
+public class TestAccountCache {
+
+    @Test
+    public void hotAccountsStayCachedUnderAScanOfColdAccounts() {
+        AccountCache cache = new AccountCache(100);
+        int cold = 10_000;
+        /* Skewed traffic: 50 hot accounts read on every round, and a long tail of accounts read once */
+        for (int round = 0; round < 200; round++) {
+            for (int id = 1; id <= 50; id++) {
+                load(cache, id);
+            }
+            for (int i = 0; i < 20; i++) {
+                load(cache, cold++);
+            }
+        }
+        final CacheStats before = cache.stats();
+
+        for (int id = 1; id <= 50; id++) {
+            load(cache, id);
+        }
+
+        final CacheStats after = cache.stats();
+        assertThat(after.getHits() - before.getHits()).isEqualTo(50);
+        assertThat(after.getResurrections()).isEqualTo(before.getResurrections());
+        assertThat(after.getRejections()).isGreaterThan(0);
+        assertThat(after.getSize()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void accountsReadTwiceAreProtectedFromTheEvictionOfProbation() {
+        AccountCache cache = new AccountCache(10);
+        for (int id = 1; id <= 10; id++) {
+            load(cache, id);
+        }
+        /* A second hit moves 1 to 3 from probation to protected */
+        for (int id = 1; id <= 3; id++) {
+            load(cache, id);
+        }
+        /* New accounts popular enough to be admitted over the probation accounts */
+        for (int id = 100; id < 110; id++) {
+            for (int i = 0; i < 5; i++) {
+                cache.get(id);
+            }
+            cache.putIfAbsent(account(id));
+        }
+        final CacheStats before = cache.stats();
+
+        for (int id = 1; id <= 3; id++) {
+            load(cache, id);
+        }
+        final CacheStats protectedHits = cache.stats();
+        load(cache, 4);
+
+        assertThat(protectedHits.getHits() - before.getHits()).isEqualTo(3);
+        assertThat(protectedHits.getResurrections()).isEqualTo(before.getResurrections());
+        final CacheStats after = cache.stats();
+        assertThat(after.getMisses() + after.getResurrections())
+            .isEqualTo(protectedHits.getMisses() + protectedHits.getResurrections() + 1);
+    }
+
+    @Test
+    public void pinnedAccountsAreNeverEvicted() {
+        AccountCache cache = new AccountCache(10);
+        for (int id = 1; id <= 10; id++) {
+            load(cache, id);
+        }
+        assertThat(cache.pin(1)).isTrue();
+        for (int id = 100; id < 200; id++) {
+            for (int i = 0; i < 5; i++) {
+                cache.get(id);
+            }
+            cache.putIfAbsent(account(id));
+        }
+        final CacheStats before = cache.stats();
+
+        load(cache, 1);
+
+        final CacheStats after = cache.stats();
+        assertThat(after.getHits() - before.getHits()).isEqualTo(1);
+        assertThat(after.getResurrections()).isEqualTo(before.getResurrections());
+        assertThat(after.getPinned()).isEqualTo(1);
+        assertThat(after.getSize()).isEqualTo(11);
+
+        cache.unpin(1);
+
+        assertThat(cache.stats().getPinned()).isEqualTo(0);
+        assertThat(cache.stats().getSize()).isEqualTo(10);
+    }
+
+    @Test
+    public void anEvictedAccountStillInUseIsTakenBack() {
+        AccountCache cache = new AccountCache(10);
+        /* Held like an operation in progress holds its account */
+        final Account inUse = load(cache, 1);
+        for (int id = 100; id < 200; id++) {
+            for (int i = 0; i < 5; i++) {
+                cache.get(id);
+            }
+            cache.putIfAbsent(account(id));
+        }
+        assertThat(cache.stats().getEvictions()).isGreaterThan(0);
+        final CacheStats before = cache.stats();
+
+        assertThat(cache.peek(1)).isSameAs(inUse);
+        assertThat(cache.putIfAbsent(account(1))).isSameAs(inUse);
+        assertThat(cache.get(1)).isSameAs(inUse);
+
+        final CacheStats after = cache.stats();
+        assertThat(after.getResurrections()).isEqualTo(before.getResurrections() + 1);
+        assertThat(after.getHits()).isEqualTo(before.getHits() + 1);
+    }
+
+    /* Read through the cache like the store does */
+    private static Account load(AccountCache cache, int id) {
+        final Account cached = cache.get(id);
+        return cached != null ? cached : cache.putIfAbsent(account(id));
+    }
+
+    private static Account account(int id) {
+        return Account.builder()
+            .id(id)
+            .name("account " + id)
+            .balance(BigDecimal.TEN)
+            .build();
+    }
+}
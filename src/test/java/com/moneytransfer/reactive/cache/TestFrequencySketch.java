@@ -0,0 +1,54 @@
+package com.moneytransfer.reactive.cache;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Count-min sketch of the account cache: counting, saturation and aging
+ *
+ * @author Julian Vasa
+ */
+public class TestFrequencySketch {
+
+    @Test
+    public void frequencyCountsTheAccesses() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(7);
+        }
+        sketch.increment(8);
+
+        assertThat(sketch.frequency(7)).isEqualTo(5);
+        assertThat(sketch.frequency(8)).isEqualTo(1);
+        assertThat(sketch.frequency(9)).isEqualTo(0);
+    }
+
+    @Test
+    public void countersSaturateAt15() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(7);
+        }
+
+        assertThat(sketch.frequency(7)).isEqualTo(15);
+    }
+
+    @Test
+    public void countersAreHalvedAfterTheSamplePeriod() {
+        /* The counters are halved after 10 * 16 increments */
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(7);
+        }
+        for (int key = 1000; key < 1149; key++) {
+            sketch.increment(key);
+        }
+        final int before = sketch.frequency(7);
+        assertThat(before).isGreaterThanOrEqualTo(10);
+
+        sketch.increment(7);
+
+        assertThat(sketch.frequency(7)).isEqualTo((before + 1) / 2);
+    }
+}
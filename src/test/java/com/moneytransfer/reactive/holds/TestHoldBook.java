@@ -0,0 +1,96 @@
+package com.moneytransfer.reactive.holds;
+
+import com.moneytransfer.reactive.enums.HoldStatus;
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Hold;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds of the accounts, expired with an injected clock
+ *
+ * @author Julian Vasa
+ */
+public class TestHoldBook {
+    private static final long START = 1_000_000L;
+    private static final long TICK = 100;
+    private static final long DAY = 86_400_000L;
+
+    private final HoldBook holdBook = new HoldBook(TICK, 2, DAY, 30 * DAY, START);
+    private final Account account = Account.builder()
+        .id(3333)
+        .balance(new BigDecimal("300"))
+        .currency(Currency.getInstance("GBP"))
+        .build();
+
+    @Test
+    public void aHoldExpiresOnceItsTimeToLivePassed() {
+        final Hold hold = holdBook.reserve(account, Account.EXTERNAL_ACCOUNT, new BigDecimal("40"), 1000, "", START);
+        assertThat(holdBook.available(account)).isEqualByComparingTo("260");
+
+        holdBook.expire(START + 999);
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.OPEN);
+        assertThat(holdBook.held(3333)).isEqualByComparingTo("40");
+
+        holdBook.expire(START + 1000);
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(holdBook.get(hold.getId())).isNull();
+        assertThat(holdBook.available(account)).isEqualByComparingTo("300");
+        assertThat(holdBook.expiredHolds()).isEqualTo(1);
+    }
+
+    @Test
+    public void aClosedHoldDoesNotExpire() {
+        final Hold hold = holdBook.reserve(account, 1111, new BigDecimal("40"), 1000, "", START);
+
+        assertThat(holdBook.close(hold, HoldStatus.RELEASED)).isTrue();
+        holdBook.expire(START + 1000);
+
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.RELEASED);
+        assertThat(holdBook.expiredHolds()).isEqualTo(0);
+        assertThat(holdBook.close(hold, HoldStatus.CAPTURED)).isFalse();
+    }
+
+    @Test
+    public void aReopenedHoldIsHeldAgainAndKeepsItsExpiration() {
+        final Hold hold = holdBook.reserve(account, 1111, new BigDecimal("40"), 1000, "", START);
+        assertThat(holdBook.reopen(hold)).isFalse();
+
+        assertThat(holdBook.close(hold, HoldStatus.CAPTURED)).isTrue();
+        assertThat(holdBook.reopen(hold)).isTrue();
+
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.OPEN);
+        assertThat(holdBook.get(hold.getId())).isSameAs(hold);
+        assertThat(holdBook.available(account)).isEqualByComparingTo("260");
+        holdBook.expire(START + 1000);
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(holdBook.held(3333)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void expirationsBeyondTheBudgetWaitForTheNextTick() {
+        for (int i = 0; i < 3; i++) {
+            holdBook.reserve(account, Account.EXTERNAL_ACCOUNT, new BigDecimal("10"), 1000, "", START);
+        }
+
+        holdBook.expire(START + 1000);
+        assertThat(holdBook.openHolds()).isEqualTo(1);
+        assertThat(holdBook.held(3333)).isEqualByComparingTo("10");
+
+        holdBook.expire(START + 1000 + TICK);
+        assertThat(holdBook.openHolds()).isEqualTo(0);
+        assertThat(holdBook.held(3333)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void aHoldNeedsTheAvailableBalance() {
+        assertThat(holdBook.reserve(account, 1111, new BigDecimal("250"), 0, "", START)).isNotNull();
+
+        assertThat(holdBook.reserve(account, 1111, new BigDecimal("60"), 0, "", START)).isNull();
+        assertThat(holdBook.available(account)).isEqualByComparingTo("50");
+    }
+}
@@ -0,0 +1,83 @@
+package com.moneytransfer.reactive.holds;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hashed timing wheel driven by an injected clock
+ *
+ * @author Julian Vasa
+ */
+public class TestTimingWheel {
+    private static final long START = 1_000_000L;
+
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    public void itemsExpireOnTheFirstTickAtOrAfterTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 100, START);
+        wheel.schedule("a", START + 250);
+        wheel.schedule("b", START + 300);
+
+        assertThat(wheel.expire(START + 299, 10, expired::add)).isEqualTo(0);
+        assertThat(wheel.expire(START + 300, 10, expired::add)).isEqualTo(2);
+
+        assertThat(expired).containsExactly("a", "b");
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void deadlinesBeyondOneTurnOfTheWheelWaitForTheirTurn() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 100, START);
+        /* Same slot as the tick 2, eight ticks later */
+        wheel.schedule("late", START + 1000);
+
+        wheel.expire(START + 200, 10, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.expire(START + 1000, 10, expired::add);
+        assertThat(expired).containsExactly("late");
+    }
+
+    @Test
+    public void cancelledItemsDoNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 100, START);
+        TimingWheel.Timeout<String> timeout = wheel.schedule("cancelled", START + 100);
+        wheel.schedule("kept", START + 100);
+
+        wheel.cancel(timeout);
+        wheel.cancel(timeout);
+        wheel.expire(START + 100, 10, expired::add);
+
+        assertThat(expired).containsExactly("kept");
+    }
+
+    @Test
+    public void aBurstIsExpiredWithinTheBudgetOverSeveralCalls() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 100, START);
+        for (int i = 0; i < 5; i++) {
+            wheel.schedule("item " + i, START + 100);
+        }
+
+        assertThat(wheel.expire(START + 100, 2, expired::add)).isEqualTo(2);
+        assertThat(wheel.expire(START + 100, 2, expired::add)).isEqualTo(2);
+        assertThat(wheel.expire(START + 100, 2, expired::add)).isEqualTo(1);
+
+        assertThat(expired).containsExactly("item 0", "item 1", "item 2", "item 3", "item 4");
+    }
+
+    @Test
+    public void pastDeadlinesExpireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 100, START);
+        wheel.expire(START + 500, 10, expired::add);
+        wheel.schedule("past", START + 100);
+
+        wheel.expire(START + 500, 10, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.expire(START + 600, 10, expired::add);
+        assertThat(expired).containsExactly("past");
+    }
+}
@@ -0,0 +1,257 @@
+package com.moneytransfer.reactive.ring;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ring buffer of the transfers with a stub processor: back pressure, ordering and consumer failures
+ *
+ * @author Julian Vasa
+ */
+@RunWith(VertxUnitRunner.class)
+public class TestTransferRingBuffer {
+    private Vertx vertx;
+    private Context eventLoop;
+    private TransferRingBuffer ring;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        eventLoop = vertx.getOrCreateContext();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        release.countDown();
+        if (ring != null) {
+            ring.stop();
+        }
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void fullRingRejectsClaimsUntilTheConsumersCatchUp(TestContext context) {
+        ring = new TransferRingBuffer(4, processor(command -> Future.succeededFuture()), (command, sequence, endOfBatch) -> { });
+        ring.addConsumer("blocked", (command, sequence, endOfBatch) -> awaitRelease(), false);
+        ring.start(eventLoop);
+        Async async = context.async();
+        eventLoop.runOnContext(v -> {
+            for (int i = 0; i < 4; i++) {
+                context.assertTrue(publish(ring, i) >= 0);
+            }
+            context.assertEquals(-1L, ring.tryClaim());
+            release.countDown();
+            awaitOnEventLoop(() -> ring.tryClaim() >= 0, async);
+        });
+    }
+
+    @Test
+    public void commandsAreProcessedAndConsumedInOrderAcrossBatches(TestContext context) {
+        List<Integer> processed = new ArrayList<>();
+        List<Integer> dispatched = new ArrayList<>();
+        List<Integer> consumed = new CopyOnWriteArrayList<>();
+        /* Every third command waits for the store, the next ones must wait for it */
+        ring = new TransferRingBuffer(16, processor(command -> {
+            processed.add(command.getRequest().getFromAccount());
+            if (command.getRequest().getFromAccount() % 3 != 0) {
+                return Future.succeededFuture();
+            }
+            Promise<Void> loaded = Promise.promise();
+            vertx.setTimer(2, timer -> loaded.complete());
+            return loaded.future();
+        }), (command, sequence, endOfBatch) -> dispatched.add(command.getRequest().getFromAccount()));
+        ring.addConsumer("journal", (command, sequence, endOfBatch) -> consumed.add(command.getRequest().getFromAccount()), true);
+        ring.start(eventLoop);
+        Async async = context.async();
+        eventLoop.runOnContext(v -> {
+            for (int i = 0; i < 5; i++) {
+                publish(ring, i);
+            }
+            vertx.setTimer(1, timer -> {
+                for (int i = 5; i < 10; i++) {
+                    publish(ring, i);
+                }
+                awaitOnEventLoop(() -> consumed.size() == 10, async);
+            });
+        });
+        async.awaitSuccess(5000);
+        List<Integer> expected = List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(processed).isEqualTo(expected);
+        assertThat(dispatched).isEqualTo(expected);
+        assertThat(consumed).isEqualTo(expected);
+    }
+
+    @Test
+    public void backgroundConsumersOnlyGetTheTransfersOnceRecorded(TestContext context) {
+        Promise<Void> slowRecord = Promise.promise();
+        List<Boolean> journaled = new CopyOnWriteArrayList<>();
+        ring = new TransferRingBuffer(8, processor(command -> {
+            command.setRecorded(command.getRequest().getFromAccount() == 0 ? slowRecord.future() : Future.succeededFuture());
+            return Future.succeededFuture();
+        }), (command, sequence, endOfBatch) -> { });
+        ring.addConsumer("journal", (command, sequence, endOfBatch) -> journaled.add(command.isRecordedSuccessfully()), true);
+        ring.start(eventLoop);
+        Async async = context.async();
+        eventLoop.runOnContext(v -> {
+            for (int i = 0; i < 3; i++) {
+                publish(ring, i);
+            }
+            vertx.setTimer(50, timer -> {
+                /* The later transfers wait for the first one */
+                context.assertTrue(journaled.isEmpty());
+                context.assertEquals(-1L, ring.report().getLong("recorded"));
+                slowRecord.fail("store failure");
+                awaitOnEventLoop(() -> journaled.size() == 3, async);
+            });
+        });
+        async.awaitSuccess(5000);
+        assertThat(journaled).containsExactly(false, true, true);
+    }
+
+    @Test
+    public void failingConsumersAreCountedAndAFailingRequiredConsumerStopsTheRing(TestContext context) {
+        List<Integer> dispatched = new ArrayList<>();
+        List<Integer> replicated = new CopyOnWriteArrayList<>();
+        ring = new TransferRingBuffer(8, processor(command -> Future.succeededFuture()), (command, sequence, endOfBatch) -> {
+            dispatched.add(command.getRequest().getFromAccount());
+            failOn(command, 2);
+        });
+        ring.addConsumer("journal", (command, sequence, endOfBatch) -> failOn(command, 3), true);
+        ring.addConsumer("replication", (command, sequence, endOfBatch) -> {
+            failOn(command, 1);
+            replicated.add(command.getRequest().getFromAccount());
+        }, false);
+        ring.start(eventLoop);
+        Async async = context.async();
+        eventLoop.runOnContext(v -> {
+            for (int i = 0; i < 5; i++) {
+                publish(ring, i);
+            }
+            awaitOnEventLoop(() -> ring.getHaltCause() != null && replicated.size() == 4, async);
+        });
+        async.awaitSuccess(5000);
+
+        JsonObject report = ring.report();
+        assertThat(dispatched).containsExactly(0, 1, 2, 3, 4);
+        assertThat(report.getLong("dispatched")).isEqualTo(4);
+        assertThat(report.getLong("dispatchFailures")).isEqualTo(1);
+        assertThat(replicated).containsExactly(0, 2, 3, 4);
+        JsonObject journal = report.getJsonArray("consumers").getJsonObject(0);
+        assertThat(journal.getLong("failures")).isEqualTo(1);
+        assertThat(journal.getLong("sequence")).isEqualTo(-1);
+        JsonObject replication = report.getJsonArray("consumers").getJsonObject(1);
+        assertThat(replication.getLong("failures")).isEqualTo(1);
+        assertThat(replication.getString("lastFailure")).startsWith("Sequence 1: ");
+        assertThat(ring.getHaltCause()).startsWith("journal failed: ");
+        assertThat(ring.tryClaim()).isEqualTo(-1);
+    }
+
+    @Test
+    public void ledgerOperationsAreAppliedAndConsumedInPublishOrder(TestContext context) {
+        List<Integer> applied = new ArrayList<>();
+        List<Integer> journaled = new CopyOnWriteArrayList<>();
+        /* The real processor, it hands the operations over without touching the stores */
+        ring = new TransferRingBuffer(8, new TransferProcessor(null, null, null, null, null, null),
+            (command, sequence, endOfBatch) -> command.setOperation(null));
+        ring.addConsumer("journal", (command, sequence, endOfBatch) -> {
+            if (command.isRecordedSuccessfully()) {
+                journaled.add(command.getTransaction().getFromAccount());
+            }
+        }, true);
+        ring.start(eventLoop);
+        Async async = context.async();
+        eventLoop.runOnContext(v -> {
+            for (int i = 0; i < 4; i++) {
+                final int account = i;
+                context.assertTrue(ring.publish(null, new LedgerOperation() {
+                    @Override
+                    public Future<Void> apply(TransferCommand command) {
+                        applied.add(account);
+                        if (account == 2) {
+                            command.setStatusCode(409);
+                            command.setError("rejected");
+                            return Future.succeededFuture();
+                        }
+                        command.setTransaction(new Transaction(account, Account.EXTERNAL_ACCOUNT, BigDecimal.ONE, null));
+                        command.setRecorded(Future.succeededFuture());
+                        return Future.succeededFuture();
+                    }
+
+                    @Override
+                    public void respond(RoutingContext routingContext, TransferCommand command) {
+                    }
+                }));
+            }
+            awaitOnEventLoop(() -> ring.report().getJsonArray("consumers").getJsonObject(0).getLong("sequence") == 3, async);
+        });
+        async.awaitSuccess(5000);
+        assertThat(applied).containsExactly(0, 1, 2, 3);
+        assertThat(journaled).containsExactly(0, 1, 3);
+    }
+
+    private static TransferProcessor processor(Function<TransferCommand, Future<Void>> process) {
+        return new TransferProcessor(null, null, null, null, null, null) {
+            @Override
+            public Future<Void> process(TransferCommand command) {
+                return process.apply(command);
+            }
+        };
+    }
+
+    private static long publish(TransferRingBuffer ring, int fromAccount) {
+        final long sequence = ring.tryClaim();
+        if (sequence >= 0) {
+            ring.get(sequence).getRequest().setFromAccount(fromAccount);
+            ring.publish(sequence);
+        }
+        return sequence;
+    }
+
+    private static void failOn(TransferCommand command, int fromAccount) {
+        if (command.getRequest().getFromAccount() == fromAccount) {
+            throw new IllegalStateException("failure on " + fromAccount);
+        }
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Poll the condition on the event loop, where the ring is used */
+    private void awaitOnEventLoop(BooleanSupplier condition, Async async) {
+        vertx.setPeriodic(1, timer -> {
+            if (condition.getAsBoolean()) {
+                vertx.cancelTimer(timer);
+                async.complete();
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.moneytransfer.reactive.store.impl;
+
+import com.moneytransfer.reactive.model.Account;
+import com.moneytransfer.reactive.model.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Batch of writes of the JDBC store against an in-memory H2 database
+ *
+ * @author Julian Vasa
+ */
+public class TestWriteBatch {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:write-batch-" + System.nanoTime());
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : JdbcLedgerStore.SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        WriteBatch accounts = new WriteBatch();
+        accounts.add(WriteBatch.insertAccount(account(1, 100)));
+        accounts.add(WriteBatch.insertAccount(account(2, 0)));
+        accounts.add(WriteBatch.insertAccount(account(3, 0)));
+        accounts.add(WriteBatch.insertAccount(account(4, 10)));
+        accounts.execute(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void laterWritesOfTheAccountsOfAFailedWriteFailWithIt() throws SQLException {
+        final Transaction tooLong = transfer(1, 2, 100);
+        tooLong.setDescription(new String(new char[Transaction.MAX_DESCRIPTION_LENGTH + 1]).replace('\0', 'x'));
+        /* Applied in memory with the money of the failed transfer */
+        final Transaction dependent = transfer(2, 3, 100);
+        final Transaction independent = transfer(4, Account.EXTERNAL_ACCOUNT, 10);
+        WriteBatch batch = new WriteBatch();
+        batch.add(WriteBatch.record(tooLong));
+        batch.add(WriteBatch.record(dependent));
+        batch.add(WriteBatch.record(independent));
+
+        batch.execute(connection);
+
+        assertThat(batch.writes().get(0).failure).isNotNull();
+        assertThat(batch.writes().get(1).failure).hasMessageContaining("account 2");
+        assertThat(batch.writes().get(2).failure).isNull();
+        assertThat(balance(1)).isEqualByComparingTo("100");
+        assertThat(balance(2)).isEqualByComparingTo("0");
+        assertThat(balance(3)).isEqualByComparingTo("0");
+        assertThat(balance(4)).isEqualByComparingTo("0");
+        assertThat(connection.getAutoCommit()).isTrue();
+    }
+
+    @Test
+    public void writesOfTheAccountsOfAFailedWriteQueuedInTheNextBatchFailWithIt() throws SQLException {
+        final Transaction tooLong = transfer(1, 2, 100);
+        tooLong.setDescription(new String(new char[Transaction.MAX_DESCRIPTION_LENGTH + 1]).replace('\0', 'x'));
+        WriteBatch first = new WriteBatch();
+        first.add(WriteBatch.record(tooLong));
+        /* Collected while the first batch was written, applied in memory with the money of the failed transfer */
+        WriteBatch second = new WriteBatch();
+        second.add(WriteBatch.record(transfer(2, 3, 100)));
+        second.add(WriteBatch.record(transfer(4, Account.EXTERNAL_ACCOUNT, 10)));
+
+        first.execute(connection);
+        second.failAccounts(first.failedAccounts(null));
+        second.execute(connection);
+
+        assertThat(first.failedAccounts(null)).containsExactlyInAnyOrder(1, 2);
+        assertThat(second.writes().get(0).failure).hasMessageContaining("account 2");
+        assertThat(second.writes().get(1).failure).isNull();
+        assertThat(second.failedAccounts(null)).containsExactlyInAnyOrder(2, 3);
+        assertThat(balance(2)).isEqualByComparingTo("0");
+        assertThat(balance(3)).isEqualByComparingTo("0");
+        assertThat(balance(4)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void aFailedBatchFailsAllTheAccountsOfItsWrites() {
+        WriteBatch batch = new WriteBatch();
+        batch.add(WriteBatch.record(transfer(1, 2, 40)));
+        batch.add(WriteBatch.record(transfer(4, Account.EXTERNAL_ACCOUNT, 10)));
+        batch.add(WriteBatch.deleteAccount(3));
+
+        assertThat(batch.failedAccounts(new SQLException("connection lost"))).containsExactlyInAnyOrder(1, 2, 4);
+    }
+
+    @Test
+    public void autoCommitIsRestoredAfterASuccessfulBatch() throws SQLException {
+        WriteBatch batch = new WriteBatch();
+        batch.add(WriteBatch.record(transfer(1, 2, 40)));
+        batch.add(WriteBatch.record(transfer(2, 3, 40)));
+
+        batch.execute(connection);
+
+        assertThat(batch.writes()).allSatisfy(write -> assertThat(write.failure).isNull());
+        assertThat(balance(1)).isEqualByComparingTo("60");
+        assertThat(balance(3)).isEqualByComparingTo("40");
+        assertThat(connection.getAutoCommit()).isTrue();
+    }
+
+    @Test
+    public void restoredTransactionsDoNotChangeTheBalances() throws SQLException {
+        WriteBatch.insertTransactions(connection, Arrays.asList(transfer(1, 2, 40), transfer(2, 3, 40)));
+
+        assertThat(balance(1)).isEqualByComparingTo("100");
+        assertThat(balance(2)).isEqualByComparingTo("0");
+        assertThat(balance(3)).isEqualByComparingTo("0");
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM ledger_transaction")) {
+            resultSet.next();
+            assertThat(resultSet.getInt(1)).isEqualTo(2);
+        }
+        assertThat(connection.getAutoCommit()).isTrue();
+    }
+
+    private static Account account(int id, int balance) {
+        return Account.builder()
+            .id(id)
+            .name("account " + id)
+            .balance(BigDecimal.valueOf(balance))
+            .openingBalance(BigDecimal.valueOf(balance))
+            .currency(EUR)
+            .build();
+    }
+
+    private static Transaction transfer(int fromAccount, int toAccount, int amount) {
+        final Transaction transaction = new Transaction();
+        transaction.setFromAccount(fromAccount);
+        transaction.setToAccount(toAccount);
+        transaction.setAmount(BigDecimal.valueOf(amount));
+        transaction.setCurrency(EUR);
+        return transaction;
+    }
+
+    private BigDecimal balance(int id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT balance FROM account WHERE id = ?")) {
+            statement.setInt(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBigDecimal(1);
+            }
+        }
+    }
+}